@@ -9,10 +9,13 @@ package com.nec.baas.core;
 import android.content.Context;
 import android.os.Build;
 
+import com.nec.baas.apigw.*;
 import com.nec.baas.core.internal.*;
+import com.nec.baas.file.*;
 import com.nec.baas.offline.internal.*;
 import com.nec.baas.util.NbLogger;
 
+import java.io.File;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.Collections;
@@ -30,6 +33,13 @@ public class NbAndroidServiceBuilder extends NbServiceBuilder<NbAndroidServiceBu
 
     private boolean mUseOfflineService = false;
     private String mOfflinePassword;
+    private int mOfflineDocumentCompressThreshold = NbDatabaseManager.DEFAULT_DOCUMENT_COMPRESS_THRESHOLD;
+
+    /** ファイルキャッシュディレクトリ名 (アプリのキャッシュディレクトリ配下) */
+    private static final String FILE_CACHE_DIR_NAME = "nebula_file_cache";
+
+    /** APIゲートウェイのレスポンスキャッシュディレクトリ名 (アプリのキャッシュディレクトリ配下) */
+    private static final String APIGW_CACHE_DIR_NAME = "nebula_apigw_cache";
 
     /**
      * コンストラクタ。
@@ -75,17 +85,43 @@ public class NbAndroidServiceBuilder extends NbServiceBuilder<NbAndroidServiceBu
         return myself;
     }
 
+    /**
+     * オフラインモードのローカルDBで、オブジェクトを圧縮して格納するサイズの閾値を設定する。
+     * JSON サイズがこの値以上のオブジェクトは deflate 圧縮して格納される。
+     * 既定値は 16KB。
+     * @param threshold 閾値(バイト)。0 以下の場合は圧縮しない。
+     * @since 7.5.2
+     */
+    public NbAndroidServiceBuilder offlineDocumentCompressThreshold(int threshold) {
+        mOfflineDocumentCompressThreshold = threshold;
+        return myself;
+    }
+
     /** {@inheritDoc} */
     @Override
     public NbService build() {
+        NbFileCacheConfig fileCacheConfig = fileCacheConfig();
+        if (fileCacheConfig != null && fileCacheConfig.directory() == null) {
+            fileCacheConfig.directory(new File(mContext.getCacheDir(), FILE_CACHE_DIR_NAME));
+        }
+        if (apigwCacheConfig() == null) {
+            apigwCache(new NbApigwCacheConfig());
+        }
+        if (apigwCacheConfig().directory() == null) {
+            apigwCacheConfig().directory(new File(mContext.getCacheDir(), APIGW_CACHE_DIR_NAME));
+        }
+
         NbAndroidService service = (NbAndroidService)super.build();
 
         if (mUseOfflineService) {
+            NbDatabaseManager databaseManager = new NbAndroidDatabaseManager(mOfflinePassword, mContext);
+            databaseManager.setDocumentCompressThreshold(mOfflineDocumentCompressThreshold);
+
             NbOfflineService offlineService = new NbOfflineServiceImpl(
                     new NbAndroidObjectSyncManager(mContext),
                     //new NbAndroidFileSyncManager(mContext),
                     new NbAndroidNetworkMonitor(mContext),
-                    new NbAndroidDatabaseManager(mOfflinePassword, mContext),
+                    databaseManager,
                     new NbAndroidSystemManager(mContext),
                     service.getRestExecutorFactory(),
                     getMachineId(),
@@ -105,7 +141,7 @@ public class NbAndroidServiceBuilder extends NbServiceBuilder<NbAndroidServiceBu
 
     @Override
     public NbRestExecutorFactory createRestExecutorFactory() {
-        return new NbAndroidRestExecutorFactory(mContext);
+        return new NbAndroidRestExecutorFactory(mContext, getRequestLimiter());
     }
 
     @Override
@@ -34,6 +34,8 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
     private SharedPreferences mPreference;
     private int mResult;
     private Request mRequest;
+    private NbCallCanceller mCanceller;
+    private NbRequestLimiter mRequestLimiter;
 
     private static final String PREFERENCE_NAME = "apicounter_pref";
     private static final String API_COUNTER_KEY = "apicounter";
@@ -42,9 +44,11 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
     /**
      * コンストラクタ
      * @param context コンテキスト
+     * @param requestLimiter サービスの流量制限
      */
-    NbAndroidAsyncRestExecutor(Context context) {
+    NbAndroidAsyncRestExecutor(Context context, NbRequestLimiter requestLimiter) {
         mContext = context;
+        mRequestLimiter = requestLimiter;
         mResult = NbStatus.INTERNAL_SERVER_ERROR;
         mPreference = mContext.getSharedPreferences(PREFERENCE_NAME, Context.MODE_PRIVATE);
     }
@@ -65,7 +69,22 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
             throw new IllegalArgumentException("null request");
         }
         mHandler = handler;
-        executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, request);
+        // API 呼び出し時の Canceller を、リクエスト実行時およびハンドラ呼び出し時に引き継ぐ
+        mCanceller = NbCallCanceller.current();
+
+        // 流量制限の上限に達している場合は、スレッドを占有せずに待機する
+        final Request req = request;
+        mRequestLimiter.submit(NbRequestPriority.of(request), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, req);
+                } catch (RuntimeException e) {
+                    mRequestLimiter.release();
+                    throw e;
+                }
+            }
+        });
     }
 
     /**
@@ -73,6 +92,16 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
      */
     @Override
     public Response executeRequestSync(Request request) throws IOException {
+        NbRequestLimiter limiter = mRequestLimiter;
+        limiter.acquire(NbRequestPriority.of(request));
+        try {
+            return doExecuteRequestSync(request);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private Response doExecuteRequestSync(Request request) throws IOException {
         incrementCount();
         Response response = NbHttpClient.getInstance().executeRequest(request);
         return response;
@@ -88,9 +117,10 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
         mRequest = request; // save request
         Response response = null;
         String errMsg = "Execute Error";
+        NbCallCanceller prev = NbCallCanceller.enter(mCanceller);
         try {
             log.fine("doInBackground() {0} {1}", request.method() ,request.url().toString());
-            response = executeRequestSync(request);
+            response = doExecuteRequestSync(request);
         } catch (IOException e) {
             //e.printStackTrace();
             log.severe("doInBackground() executeRequestSync() IOException : {0}", e.getMessage());
@@ -99,6 +129,10 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
             //e.printStackTrace();
             log.severe("doInBackground() executeRequestSync() Exception : {0}", e.getMessage());
             errMsg = "Execute Error : " + e.getMessage();
+        } finally {
+            NbCallCanceller.exit(prev);
+            // レスポンス受信時に実行枠を解放する
+            mRequestLimiter.release();
         }
 
         if (response == null) {
@@ -126,6 +160,7 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
         String errMsg = "Execute Error";
         //アプリ側コールバック呼び出し中含み、handleResponseで例外が発生する
         //可能性があるため、ここでもtry-catch句で受ける。
+        NbCallCanceller prev = NbCallCanceller.enter(mCanceller);
         try {
             if (response != null) {
                 mHandler.handleResponse(response, mResult);
@@ -145,6 +180,7 @@ public class NbAndroidAsyncRestExecutor extends AsyncTask<Request, Void, Respons
         } catch (AssertionError e) {
             NbJunitErrorNotifier.notify(e);
         } finally {
+            NbCallCanceller.exit(prev);
             mRequest = null;
             if (response != null) {
                 try {
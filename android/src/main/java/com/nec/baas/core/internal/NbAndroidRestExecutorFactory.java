@@ -14,17 +14,29 @@ import android.content.Context;
  */
 public class NbAndroidRestExecutorFactory implements NbRestExecutorFactory {
     private Context mContext;
+    private NbRequestLimiter mRequestLimiter;
 
     /**
      * コンストラクタ
      */
     public NbAndroidRestExecutorFactory(Context context) {
+        this(context, NbRequestLimiter.getInstance());
+    }
+
+    /**
+     * コンストラクタ
+     * @param context コンテキスト
+     * @param requestLimiter サービスの流量制限
+     * @since 7.5.2
+     */
+    public NbAndroidRestExecutorFactory(Context context, NbRequestLimiter requestLimiter) {
         mContext = context;
+        mRequestLimiter = requestLimiter;
     }
 
     @Override
     public com.nec.baas.core.NbRestExecutor create() {
-        return new NbAndroidAsyncRestExecutor(mContext);
+        return new NbAndroidAsyncRestExecutor(mContext, mRequestLimiter);
     }
 
 }
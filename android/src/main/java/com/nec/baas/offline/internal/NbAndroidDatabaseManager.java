@@ -11,7 +11,6 @@ import android.content.Context;
 import android.database.Cursor;
 
 import com.nec.baas.json.NbJSONObject;
-import com.nec.baas.json.NbJSONParser;
 import com.nec.baas.object.NbIndexType;
 import com.nec.baas.util.*;
 import com.nec.jp.sde4sd.commons.db.SDEDatabaseException;
@@ -124,7 +123,8 @@ public class NbAndroidDatabaseManager extends NbDatabaseManager {
             Map<String, String> data = new HashMap<>();
             for (int i = 0; i < columnCount; i++) {
                 String key = cursor.getColumnName(i);
-                data.put(key, cursor.getString(i));
+                // BLOB カラムは文字列として取得できないため、null とする
+                data.put(key, cursor.getType(i) == Cursor.FIELD_TYPE_BLOB ? null : cursor.getString(i));
             }
             if (!data.isEmpty()) {
                 result.add(data);
@@ -192,12 +192,27 @@ public class NbAndroidDatabaseManager extends NbDatabaseManager {
         public int getInt(int idx) {
             return cursor.getInt(idx);
         }
+
+        @Override
+        public boolean isBlob(int idx) {
+            return cursor.getType(idx) == Cursor.FIELD_TYPE_BLOB;
+        }
+
+        @Override
+        public byte[] getBlob(int idx) {
+            return cursor.getBlob(idx);
+        }
     }
 
     @Override
     public long insert(String table, Map<String, String> values) {
+        return insert(table, values, null);
+    }
+
+    @Override
+    public long insert(String table, Map<String, String> values, Map<String, byte[]> blobValues) {
         try {
-            ContentValues contentValues = makeContentValues(table, values);
+            ContentValues contentValues = makeContentValues(table, values, blobValues);
             return mDatabase.insert(table, contentValues);
         } catch (SDEDatabaseException ex) {
             throw new NbDatabaseException(ex);
@@ -207,8 +222,14 @@ public class NbAndroidDatabaseManager extends NbDatabaseManager {
     @Override
     public int update(String table, Map<String, String> values, String where,
             String[] whereArgs) {
+        return update(table, values, null, where, whereArgs);
+    }
+
+    @Override
+    public int update(String table, Map<String, String> values, Map<String, byte[]> blobValues,
+            String where, String[] whereArgs) {
         try {
-            ContentValues contentValues = makeContentValues(table, values);
+            ContentValues contentValues = makeContentValues(table, values, blobValues);
             return mDatabase.update(table, contentValues, where, whereArgs);
         } catch (SDEDatabaseException ex) {
             throw new NbDatabaseException(ex);
@@ -216,70 +237,80 @@ public class NbAndroidDatabaseManager extends NbDatabaseManager {
     }
 
     protected ContentValues makeContentValues(String table, Map<String, String> values) {
+        return makeContentValues(table, values, null);
+    }
+
+    protected ContentValues makeContentValues(String table, Map<String, String> values,
+            Map<String, byte[]> blobValues) {
         ContentValues contentValues = new ContentValues();
         for (Map.Entry<String, String> entry : values.entrySet()) {
             // indexカラム以外はStringのままputする
             contentValues.put(entry.getKey(), entry.getValue());
+        }
+        if (blobValues != null) {
+            for (Map.Entry<String, byte[]> entry : blobValues.entrySet()) {
+                contentValues.put(entry.getKey(), entry.getValue());
+            }
+        }
 
-            // JSONドキュメントを見つけたら、パースしてindexカラムの値を抽出する
-            // indexカラムは型を判別して保存する
-            if (entry.getKey().equals(DOCUMENT_COLUMN)) {
-                // JSONをパースする
-                //log.fine("jsonString: " + values.get(DOCUMENT_COLUMN));
-                NbJSONObject jsonObject = NbJSONParser.parse(values.get(DOCUMENT_COLUMN));
-
-                // 現在のindexキーを取得する
-                Map<String, NbIndexType> currentIndexes = getIndexWithTable(table);
-                //log.fine("currentIndexes: " + currentIndexes);
-
-                // indexキーをループしてJSONドキュメント(トップレベルのみ)に存在するものを探す
-                for (Map.Entry<String, NbIndexType> indexEntry : currentIndexes.entrySet()) {
-                    String indexKey = indexEntry.getKey();
-                    NbIndexType indexType = indexEntry.getValue();
-                    //log.fine("indexEntry: " + indexKey + ": " + indexType);
-
-                    // 現状トップレベルのキーのみをインデックス可能とする
-                    Object jsonValue = jsonObject.get(indexKey);
-                    //log.fine("| jsonEntry: " + indexKey + ": " + jsonValue);
-
-                    // DB上の型つきのキー名に変換する
-                    String indexKeyOnColumn = getIndexKeyForColumn(indexKey, indexType);
-
-                    // index用カラムは型を判別して適切な型のputを呼び出す
-                    if (jsonValue == null) {
-                        // 値がnullの場合とキーが存在しない場合(MongoDB上でも2つは同等とみなしている)
-                        contentValues.put(indexKeyOnColumn, "null");
-                        log.fine("null: " + indexKeyOnColumn);
-                    } else if (jsonValue instanceof String) {
-                        if (indexType.equals(NbIndexType.STRING)) {
-                            contentValues.put(indexKeyOnColumn, (String) jsonValue);
-                        } else {
-                            log.warning("Don't create index for key: " + indexKeyOnColumn + " value: " + jsonValue);
-                        }
-                        log.fine("String: " + jsonValue);
-                    } else if (jsonValue instanceof Boolean) {
-                        if (indexType.equals(NbIndexType.BOOLEAN)) {
-                            // DB側にBoolean型がないので文字列としてDBへ保存する
-                            contentValues.put(indexKeyOnColumn, (Boolean) jsonValue ? "true" : "false");
-                        } else {
-                            log.warning("Don't create index for key: " + indexKeyOnColumn + " value: " + jsonValue);
-                        }
-                        log.fine("Boolean: " + jsonValue);
-                    } else if (jsonValue instanceof Number) {
-                        if (indexType.equals(NbIndexType.NUMBER)) {
-                            contentValues.put(indexKeyOnColumn, ((Number) jsonValue).doubleValue());
-                        } else {
-                            log.warning("Don't create index for key: " + indexKeyOnColumn + " value: " + jsonValue);
-                        }
-                        log.fine("Number: " + jsonValue);
+        // JSONドキュメントを見つけたら、パースしてindexカラムの値を抽出する
+        // indexカラムは型を判別して保存する
+        if (values.containsKey(DOCUMENT_COLUMN)
+                || (blobValues != null && blobValues.containsKey(DOCUMENT_COLUMN))) {
+            // JSONをパースする (BLOB の場合はデコードする)
+            //log.fine("jsonString: " + values.get(DOCUMENT_COLUMN));
+            NbJSONObject jsonObject = parseDocumentColumn(values, blobValues);
+
+            // 現在のindexキーを取得する
+            Map<String, NbIndexType> currentIndexes = getIndexWithTable(table);
+            //log.fine("currentIndexes: " + currentIndexes);
+
+            // indexキーをループしてJSONドキュメント(トップレベルのみ)に存在するものを探す
+            for (Map.Entry<String, NbIndexType> indexEntry : currentIndexes.entrySet()) {
+                String indexKey = indexEntry.getKey();
+                NbIndexType indexType = indexEntry.getValue();
+                //log.fine("indexEntry: " + indexKey + ": " + indexType);
+
+                // 現状トップレベルのキーのみをインデックス可能とする
+                Object jsonValue = jsonObject.get(indexKey);
+                //log.fine("| jsonEntry: " + indexKey + ": " + jsonValue);
+
+                // DB上の型つきのキー名に変換する
+                String indexKeyOnColumn = getIndexKeyForColumn(indexKey, indexType);
+
+                // index用カラムは型を判別して適切な型のputを呼び出す
+                if (jsonValue == null) {
+                    // 値がnullの場合とキーが存在しない場合(MongoDB上でも2つは同等とみなしている)
+                    contentValues.put(indexKeyOnColumn, "null");
+                    log.fine("null: " + indexKeyOnColumn);
+                } else if (jsonValue instanceof String) {
+                    if (indexType.equals(NbIndexType.STRING)) {
+                        contentValues.put(indexKeyOnColumn, (String) jsonValue);
                     } else {
-                        // JSONObject, JSONArrayなどはインデックス対象外のため、何もしない
                         log.warning("Don't create index for key: " + indexKeyOnColumn + " value: " + jsonValue);
                     }
-
+                    log.fine("String: " + jsonValue);
+                } else if (jsonValue instanceof Boolean) {
+                    if (indexType.equals(NbIndexType.BOOLEAN)) {
+                        // DB側にBoolean型がないので文字列としてDBへ保存する
+                        contentValues.put(indexKeyOnColumn, (Boolean) jsonValue ? "true" : "false");
+                    } else {
+                        log.warning("Don't create index for key: " + indexKeyOnColumn + " value: " + jsonValue);
+                    }
+                    log.fine("Boolean: " + jsonValue);
+                } else if (jsonValue instanceof Number) {
+                    if (indexType.equals(NbIndexType.NUMBER)) {
+                        contentValues.put(indexKeyOnColumn, ((Number) jsonValue).doubleValue());
+                    } else {
+                        log.warning("Don't create index for key: " + indexKeyOnColumn + " value: " + jsonValue);
+                    }
+                    log.fine("Number: " + jsonValue);
+                } else {
+                    // JSONObject, JSONArrayなどはインデックス対象外のため、何もしない
+                    log.warning("Don't create index for key: " + indexKeyOnColumn + " value: " + jsonValue);
                 }
-            }
 
+            }
         }
         return contentValues;
     }
@@ -6,22 +6,29 @@
 package com.nec.baas.apigw;
 
 import com.nec.baas.core.NbCallback2;
+import com.nec.baas.core.NbErrorInfo;
 import com.nec.baas.core.NbRestResponseHandler;
 import com.nec.baas.core.NbService;
+import com.nec.baas.core.NbStatus;
 import com.nec.baas.core.internal.NbServiceImpl;
 import com.nec.baas.core.internal.NbSimpleRestResponseHandler;
 import com.nec.baas.http.NbHttpRequestFactory;
 import com.nec.baas.json.NbJSONObject;
+import com.nec.baas.json.internal.NbJSONStreamReader;
 import com.nec.baas.util.NbLogger;
+import com.nec.baas.util.NbUtil;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import okhttp3.Request;
 import okhttp3.Response;
+import okio.Source;
 
 /**
  * APIゲートウェイ
@@ -33,6 +40,12 @@ public class NbApigw {
     private NbServiceImpl mService = null;
     private Request mRequest = null;
 
+    /** キャッシュの有効期間(ミリ秒)。0 の場合はキャッシュを使用しない。 */
+    @Getter(AccessLevel.NONE)
+    private long mCacheTtl = 0;
+    @Getter(AccessLevel.NONE)
+    private long mCacheStaleWhileRevalidate = 0;
+
     /**
      * コンストラクタ
      * @param service NbService
@@ -43,6 +56,18 @@ public class NbApigw {
         mRequest = request;
     }
 
+    /**
+     * リクエストを実行する。キャッシュが指定されている場合はキャッシュを使用する。
+     * @param handler ハンドラ
+     */
+    private void execute(NbRestResponseHandler handler) {
+        if (mCacheTtl > 0) {
+            mService.getApigwCache().execute(mService, mRequest, mCacheTtl, mCacheStaleWhileRevalidate, handler);
+        } else {
+            mService.createRestExecutor().executeRequest(mRequest, handler);
+        }
+    }
+
     /**
      * リクエスト builder を生成する
      * @param apiname API名
@@ -80,11 +105,99 @@ public class NbApigw {
             }
         };
 
-        mService.createRestExecutor().executeRequest(mRequest, handler);
+        execute(handler);
 
         log.fine("executeJSON() <end>");
     }
 
+    /**
+     * 結果の JSON 配列を、要素毎にストリーミングで取得するAPIを実行する。
+     * <p>
+     * レスポンス全体をメモリに読み込まずに、配列の要素を読み込み側の要求に応じて1件ずつパースする。
+     * 要素の読み込みは {@link NbApigwJSONStreamCallback#onStream} 内でサブスレッド上で行う。
+     * 要素は JSON Object であること。
+     * @param arrayField 配列のフィールド名。レスポンスのトップレベルが配列の場合は null。
+     * @param callback コールバック
+     * @since 7.5.2
+     */
+    public void executeJSONStream(final String arrayField, @NonNull final NbApigwJSONStreamCallback callback) {
+        log.fine("executeJSONStream() <start>");
+
+        if (!isContentType()) {
+            throw new IllegalStateException("ContentType is null");
+        }
+
+        NbRestResponseHandler handler = new NbSimpleRestResponseHandler(callback, "NbApigw.executeJSONStream") {
+            private volatile int mCount = 0;
+            private volatile String mError = null;
+
+            @Override
+            public int preHandleResponse(Response response) {
+                int statusCode = response.code();
+                if (NbStatus.isNotSuccessful(statusCode)) {
+                    // エラー情報の JSON を復元しておく
+                    this.setJson(NbUtil.restoreResponse(response));
+                    return statusCode;
+                }
+                if (response.body() == null) {
+                    mError = "Null body.";
+                    return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                }
+
+                NbJSONStreamReader reader = null;
+                try {
+                    reader = new NbJSONStreamReader(response.body().byteStream());
+                    if (arrayField == null) {
+                        reader.beginArray();
+                    } else if (!reader.beginArray(arrayField)) {
+                        mError = "No array field: " + arrayField;
+                        return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                    }
+
+                    NbApigwJSONIterator elements = new NbApigwJSONIterator(reader);
+                    callback.onStream(elements, response);
+                    mCount = elements.getCount();
+                    if (elements.getError() != null) {
+                        mError = String.valueOf(elements.getError().getMessage());
+                        return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                    }
+                    return NbStatus.OK;
+                } catch (IOException | IllegalArgumentException e) {
+                    log.severe("executeJSONStream() ERR {0}", e.getMessage());
+                    mError = String.valueOf(e.getMessage());
+                    return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                } finally {
+                    if (reader != null) {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            log.warning(e.getMessage());
+                        }
+                    }
+                    response.close();
+                }
+            }
+
+            @Override
+            public void onSuccess(Response response) {
+                callback.onSuccess(mCount, response);
+            }
+
+            @Override
+            public void onFailure(int statusCode, Response response) {
+                if (mError != null) {
+                    callback.onFailure(statusCode, new NbErrorInfo(mError));
+                } else {
+                    super.onFailure(statusCode, response);
+                }
+            }
+        };
+
+        execute(handler);
+
+        log.fine("executeJSONStream() <end>");
+    }
+
     /**
      * 結果をStreamで取得するAPIを実行する。
      * @param callback コールバック
@@ -103,7 +216,7 @@ public class NbApigw {
             }
         };
 
-        mService.createRestExecutor().executeRequest(mRequest, handler);
+        execute(handler);
 
         log.fine("executeStream() <end>");
     }
@@ -141,10 +254,14 @@ public class NbApigw {
         private String mBodyString = null;
         private NbJSONObject mBodyJson = null;
         private InputStream mBodyStream = null;
+        private Source mBodySource = null;
         private long mContentLength = 0;
         private String mContentType = null;
 
-        private enum BodyType { NONE, JSON, STRING, STREAM }
+        private long mCacheTtl = 0;
+        private long mCacheStaleWhileRevalidate = 0;
+
+        private enum BodyType { NONE, JSON, STRING, STREAM, SOURCE }
 
         /**
          * コンストラクタ
@@ -294,6 +411,63 @@ public class NbApigw {
             return this;
         }
 
+        /**
+         * okio の Source で body を指定する。
+         * Source はリクエストの送信時に読み込まれ、送信後にクローズされる。
+         * 送信するデータ全体をメモリに保持する必要はない。
+         * @param source Source
+         * @param contentLength Content-Length。不明時は -1。この場合は chunked encoding となる。
+         * @param contentType Content-Type
+         * @return this
+         * @since 7.5.2
+         */
+        public Builder body(Source source, long contentLength, String contentType) {
+            if (contentType != null) {
+                mBodyType = BodyType.SOURCE;
+                mBodySource = source;
+                mContentLength = contentLength;
+                mContentType = contentType;
+
+                this.contentType(contentType);
+            }
+            return this;
+        }
+
+        /**
+         * レスポンスをキャッシュする。GET メソッドでのみ使用可能。
+         * <p>
+         * stale-while-revalidate 期間は有効期間と同じ値とする。
+         * @param ttl 有効期間(ミリ秒)
+         * @return this
+         * @see #cache(long, long)
+         * @since 7.5.2
+         */
+        public Builder cache(long ttl) {
+            return cache(ttl, ttl);
+        }
+
+        /**
+         * レスポンスをキャッシュする。GET メソッドでのみ使用可能。
+         * <p>
+         * 有効期間内はサーバに問い合わせずにキャッシュから応答する。
+         * 有効期間経過後、stale-while-revalidate 期間内はキャッシュから応答し、
+         * バックグラウンドでサーバに問い合わせてキャッシュを更新する。
+         * それ以降はサーバに問い合わせる。ETag がある場合は条件付きリクエストとなる。
+         * <p>
+         * キャッシュのサイズ・ディスクキャッシュのディレクトリは
+         * {@link com.nec.baas.core.NbServiceBuilder#apigwCache(NbApigwCacheConfig)} で設定する。
+         * @param ttl 有効期間(ミリ秒)。0 以下の場合はキャッシュしない。
+         * @param staleWhileRevalidate stale-while-revalidate 期間(ミリ秒)
+         * @return this
+         * @see NbApigwCache
+         * @since 7.5.2
+         */
+        public Builder cache(long ttl, long staleWhileRevalidate) {
+            mCacheTtl = Math.max(ttl, 0);
+            mCacheStaleWhileRevalidate = Math.max(staleWhileRevalidate, 0);
+            return this;
+        }
+
         /**
          * NbApigw を build する。
          * @return NbApigw
@@ -303,6 +477,9 @@ public class NbApigw {
             if (mMethod == null) {
                 throw new IllegalStateException("Method is null");
             }
+            if (mCacheTtl > 0 && !mMethod.equals("GET")) {
+                throw new IllegalStateException("Cache is only available for GET");
+            }
 
             NbHttpRequestFactory.Builder requestBuilder = mService.getHttpRequestFactory()
                                       .request(mMethod, APIGW_PATH)
@@ -327,6 +504,9 @@ public class NbApigw {
                     case STREAM:
                         requestBuilder.body(mBodyStream, mContentLength, mContentType);
                         break;
+                    case SOURCE:
+                        requestBuilder.body(mBodySource, mContentLength, mContentType);
+                        break;
                     default:
                         break;
                 }
@@ -350,7 +530,10 @@ public class NbApigw {
 
             Request request = requestBuilder.build();
 
-            return new NbApigw(mService, request);
+            NbApigw apigw = new NbApigw(mService, request);
+            apigw.mCacheTtl = mCacheTtl;
+            apigw.mCacheStaleWhileRevalidate = mCacheStaleWhileRevalidate;
+            return apigw;
         }
     }
 }
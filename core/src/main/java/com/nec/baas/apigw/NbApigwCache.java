@@ -0,0 +1,674 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+package com.nec.baas.apigw;
+
+import com.nec.baas.core.NbRestResponseHandler;
+import com.nec.baas.core.NbStatus;
+import com.nec.baas.core.internal.NbPreRestResponseHandler;
+import com.nec.baas.core.internal.NbRestResponseHandlerUtil;
+import com.nec.baas.core.internal.NbServiceImpl;
+import com.nec.baas.http.NbCallCanceller;
+import com.nec.baas.offline.internal.NbOfflineUtil;
+import com.nec.baas.util.NbConsts;
+import com.nec.baas.util.NbLogger;
+import com.nec.baas.util.NbUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * APIゲートウェイのレスポンスキャッシュ (メモリ + ディスク)。
+ *
+ * <p>{@link NbApigw.Builder#cache(long, long)} を指定した GET リクエストのレスポンスを、
+ * メソッド・URL (サブパス・パラメータ)・リクエストヘッダ (アプリID・セッショントークン等) を
+ * キーとして保持する。キャッシュの経過時間に応じて以下のように動作する。</p>
+ * <ul>
+ *     <li>有効期間内: サーバに問い合わせずにキャッシュから応答する。</li>
+ *     <li>有効期間経過後、stale-while-revalidate 期間内: キャッシュから応答し、
+ *     バックグラウンドでサーバに問い合わせてキャッシュを更新する。
+ *     同じキーの更新は同時に1つしか実行しない。</li>
+ *     <li>それ以外: サーバに問い合わせる。ETag がある場合は If-None-Match を付与し、
+ *     304 Not Modified が返却された場合はキャッシュしたボディで 200 OK のレスポンスを生成する。</li>
+ * </ul>
+ *
+ * <p>Cache-Control: no-store が指定されたレスポンスはキャッシュしない。
+ * メモリ・ディスクはそれぞれ合計サイズで上限管理され、超過時は最も長く参照されていない
+ * エントリから破棄される。ディスクキャッシュはアプリの再起動後も有効である。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @see NbApigwCacheConfig
+ * @since 7.5.2
+ */
+public class NbApigwCache {
+    private static final NbLogger log = NbLogger.getLogger(NbApigwCache.class);
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_USER_AGENT = "User-Agent";
+    private static final String NO_STORE = "no-store";
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /** 1エントリの最大サイズの、メモリキャッシュ全体サイズに対する比 */
+    private static final int MAX_ENTRY_SIZE_RATIO = 8;
+
+    /** ディスクキャッシュのファイルフォーマットのバージョン */
+    private static final int FILE_VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final long mMemorySize;
+    private final long mMaxEntrySize;
+    private final long mDiskSize;
+    private final File mDirectory;
+
+    private long mSize = 0;
+    private long mDiskUsage = 0;
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    /** ディスクキャッシュのインデックス (ファイル名 → サイズ)。初回参照時にロードする。 */
+    private LinkedHashMap<String, Long> mDiskIndex = null;
+
+    /** バックグラウンド更新中のキー */
+    private final Set<String> mRefreshing = new HashSet<>();
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mStaleHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mRevalidatedCount = new AtomicLong();
+    private final AtomicLong mBytesSaved = new AtomicLong();
+
+    /**
+     * キャッシュエントリ
+     */
+    private static class Entry {
+        final String etag;
+        final long storedAt;
+        final Headers headers;
+        final MediaType contentType;
+        final byte[] body;
+
+        Entry(String etag, long storedAt, Headers headers, MediaType contentType, byte[] body) {
+            this.etag = etag;
+            this.storedAt = storedAt;
+            this.headers = headers;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        Response toResponse(Request request) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(NbStatus.OK)
+                    .message("OK")
+                    .headers(headers)
+                    .body(ResponseBody.create(contentType, body))
+                    .build();
+        }
+    }
+
+    /**
+     * コンストラクタ
+     * @param config キャッシュの設定。directory が null の場合はメモリキャッシュのみを使用する。
+     */
+    public NbApigwCache(@NonNull NbApigwCacheConfig config) {
+        if (config.memorySize() <= 0) {
+            throw new IllegalArgumentException("memorySize must be positive");
+        }
+        mMemorySize = config.memorySize();
+        mMaxEntrySize = mMemorySize / MAX_ENTRY_SIZE_RATIO;
+        mDiskSize = config.diskSize();
+        mDirectory = (mDiskSize > 0) ? config.directory() : null;
+    }
+
+    /**
+     * キャッシュを使用してリクエストを実行する。
+     * @param service NbServiceImpl
+     * @param request GET リクエスト
+     * @param ttl 有効期間(ミリ秒)
+     * @param staleWhileRevalidate 有効期間経過後に、キャッシュから応答しつつ更新する期間(ミリ秒)
+     * @param handler ハンドラ
+     */
+    /*package*/ void execute(final NbServiceImpl service, final Request request, final long ttl,
+                             final long staleWhileRevalidate, final NbRestResponseHandler handler) {
+        // ディスクの読み込みを呼び出し元 (UI) スレッドで行わないよう、サブスレッドで実行する
+        final NbCallCanceller canceller = NbCallCanceller.current();
+        NbUtil.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                NbCallCanceller prev = NbCallCanceller.enter(canceller);
+                try {
+                    executeInBackground(service, request, ttl, staleWhileRevalidate, handler);
+                } finally {
+                    NbCallCanceller.exit(prev);
+                }
+            }
+        });
+    }
+
+    private void executeInBackground(NbServiceImpl service, Request request, long ttl,
+                                     long staleWhileRevalidate, NbRestResponseHandler handler) {
+        mRequestCount.incrementAndGet();
+
+        String key = makeKey(request);
+        Entry entry = get(key);
+        if (entry != null) {
+            long age = System.currentTimeMillis() - entry.storedAt;
+            if (age >= 0 && age < ttl) {
+                log.fine("apigw cache hit: {0}", request.url());
+                mHitCount.incrementAndGet();
+                mBytesSaved.addAndGet(entry.body.length);
+                deliver(service, request, entry, handler);
+                return;
+            }
+            if (age >= 0 && age < ttl + staleWhileRevalidate) {
+                log.fine("apigw cache stale hit: {0}", request.url());
+                mStaleHitCount.incrementAndGet();
+                mBytesSaved.addAndGet(entry.body.length);
+                deliver(service, request, entry, handler);
+                revalidate(service, request, key, entry, null);
+                return;
+            }
+        }
+
+        mMissCount.incrementAndGet();
+        revalidate(service, request, key, entry, handler);
+    }
+
+    /**
+     * キャッシュから応答する。
+     */
+    private void deliver(NbServiceImpl service, Request request, Entry entry, final NbRestResponseHandler handler) {
+        final Response response = entry.toResponse(request);
+        final int status = NbRestResponseHandlerUtil.preHandleResponse(response, handler);
+        service.runOnUiThreadInstance(new Runnable() {
+            @Override
+            public void run() {
+                handler.handleResponse(response, status);
+            }
+        });
+    }
+
+    /**
+     * サーバに問い合わせる。ETag がある場合は条件付きリクエストとする。
+     * @param handler 応答先のハンドラ。バックグラウンド更新の場合は null。
+     */
+    private void revalidate(NbServiceImpl service, Request request, String key, Entry entry,
+                            NbRestResponseHandler handler) {
+        if (handler == null) {
+            synchronized (mRefreshing) {
+                if (!mRefreshing.add(key)) {
+                    return;
+                }
+            }
+        }
+
+        Request networkRequest = request;
+        if (entry != null && entry.etag != null) {
+            networkRequest = request.newBuilder().header(HEADER_IF_NONE_MATCH, entry.etag).build();
+        }
+        service.createRestExecutor().executeRequest(networkRequest, new CacheResponseHandler(request, key, entry, handler));
+    }
+
+    /**
+     * サーバからのレスポンスでキャッシュを更新し、元のハンドラに引き渡すハンドラ
+     */
+    private class CacheResponseHandler implements NbPreRestResponseHandler {
+        private final Request mRequest;
+        private final String mKey;
+        private final Entry mEntry;
+        private final NbRestResponseHandler mHandler;
+
+        /** ハンドラに引き渡すレスポンス。null の場合は受信したレスポンスを引き渡す。 */
+        private volatile Response mResponse = null;
+
+        CacheResponseHandler(Request request, String key, Entry entry, NbRestResponseHandler handler) {
+            mRequest = request;
+            mKey = key;
+            mEntry = entry;
+            mHandler = handler;
+        }
+
+        @Override
+        public int preHandleResponse(Response response) {
+            try {
+                update(response);
+            } finally {
+                if (mHandler == null) {
+                    synchronized (mRefreshing) {
+                        mRefreshing.remove(mKey);
+                    }
+                }
+            }
+
+            if (mHandler == null) {
+                return response.code();
+            }
+            return NbRestResponseHandlerUtil.preHandleResponse(
+                    mResponse != null ? mResponse : response, mHandler);
+        }
+
+        private void update(Response response) {
+            if (response.code() == HTTP_NOT_MODIFIED && mEntry != null) {
+                log.fine("apigw cache revalidated: {0}", mRequest.url());
+                mRevalidatedCount.incrementAndGet();
+                mBytesSaved.addAndGet(mEntry.body.length);
+
+                String etag = response.header(HEADER_ETAG);
+                Entry entry = new Entry(etag != null ? etag : mEntry.etag, System.currentTimeMillis(),
+                        mEntry.headers, mEntry.contentType, mEntry.body);
+                put(mKey, entry);
+                mResponse = entry.toResponse(mRequest);
+                return;
+            }
+
+            if (response.code() != NbStatus.OK || response.body() == null) {
+                return;
+            }
+            String cacheControl = response.header(HEADER_CACHE_CONTROL);
+            if (cacheControl != null && cacheControl.toLowerCase().contains(NO_STORE)) {
+                remove(mKey);
+                return;
+            }
+
+            try {
+                store(response);
+            } catch (IOException e) {
+                log.warning("apigw cache store failed: {0}", e.getMessage());
+            }
+        }
+
+        private void store(Response response) throws IOException {
+            ResponseBody body = response.body();
+            if (body.contentLength() > mMaxEntrySize) {
+                remove(mKey);
+                return;
+            }
+
+            // 元のレスポンスボディのストリームは消費しないよう、コピーを取得する
+            byte[] bytes = response.peekBody(mMaxEntrySize + 1).bytes();
+            if (bytes.length > mMaxEntrySize) {
+                remove(mKey);
+                return;
+            }
+            put(mKey, new Entry(response.header(HEADER_ETAG), System.currentTimeMillis(),
+                    response.headers(), body.contentType(), bytes));
+        }
+
+        @Override
+        public void handleResponse(Response response, int status) {
+            if (mHandler != null) {
+                mHandler.handleResponse(mResponse != null ? mResponse : response, status);
+            }
+        }
+    }
+
+    /**
+     * キャッシュキーを生成する。
+     * パラメータ・ヘッダの指定順序によらず同じキーとなるよう、名前でソートする。
+     * ディスクキャッシュのファイル名を兼ねるため、ハッシュ値とする。
+     */
+    private static String makeKey(Request request) {
+        HttpUrl url = request.url();
+        List<String> params = new ArrayList<>();
+        for (int i = 0; i < url.querySize(); i++) {
+            params.add(url.queryParameterName(i) + "=" + url.queryParameterValue(i));
+        }
+        Collections.sort(params);
+
+        // 同じ URL でもユーザによって応答が異なるため、セッショントークン等のヘッダをキーに含める
+        Map<String, List<String>> headers = new TreeMap<>();
+        for (String name : request.headers().names()) {
+            if (!name.equalsIgnoreCase(HEADER_USER_AGENT)) {
+                headers.put(name.toLowerCase(), request.headers(name));
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.method()).append('\n')
+                .append(url.newBuilder().query(null).build()).append('\n')
+                .append(params).append('\n')
+                .append(headers);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return NbOfflineUtil.bin2hex(digest.digest(sb.toString().getBytes(NbConsts.DEFAULT_ENCODING)));
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Entry get(String key) {
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry != null || mDirectory == null) {
+                return entry;
+            }
+            ensureDiskIndex();
+            if (mDiskIndex.get(key) == null) {
+                return null;
+            }
+        }
+
+        File file = new File(mDirectory, key);
+        Entry entry = readEntry(file);
+        if (entry == null) {
+            synchronized (this) {
+                removeDisk(key);
+            }
+            return null;
+        }
+        // 再起動後も参照順序を保持するため、更新日時を参照日時とする
+        file.setLastModified(System.currentTimeMillis());
+        synchronized (this) {
+            putMemory(key, entry);
+        }
+        return entry;
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (this) {
+            putMemory(key, entry);
+        }
+        if (mDirectory == null) {
+            return;
+        }
+
+        File file = new File(mDirectory, key);
+        long length = writeEntry(file, entry);
+        synchronized (this) {
+            ensureDiskIndex();
+            if (length < 0) {
+                removeDisk(key);
+                return;
+            }
+            Long old = mDiskIndex.put(key, length);
+            if (old != null) {
+                mDiskUsage -= old;
+            }
+            mDiskUsage += length;
+
+            Iterator<Map.Entry<String, Long>> it = mDiskIndex.entrySet().iterator();
+            while (mDiskUsage > mDiskSize && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                mDiskUsage -= eldest.getValue();
+                new File(mDirectory, eldest.getKey()).delete();
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry old = mEntries.remove(key);
+        if (old != null) {
+            mSize -= old.body.length;
+        }
+        if (mDirectory != null) {
+            ensureDiskIndex();
+            removeDisk(key);
+        }
+    }
+
+    private void putMemory(String key, Entry entry) {
+        Entry old = mEntries.put(key, entry);
+        if (old != null) {
+            mSize -= old.body.length;
+        }
+        mSize += entry.body.length;
+
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mSize > mMemorySize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            mSize -= eldest.body.length;
+            it.remove();
+        }
+    }
+
+    private void removeDisk(String key) {
+        Long old = mDiskIndex.remove(key);
+        if (old != null) {
+            mDiskUsage -= old;
+        }
+        new File(mDirectory, key).delete();
+    }
+
+    /**
+     * ディスクキャッシュのインデックスを、ディレクトリ内のファイルからロードする。
+     * 参照順序はファイルの更新日時とする。
+     */
+    private void ensureDiskIndex() {
+        if (mDiskIndex != null) {
+            return;
+        }
+        mDiskIndex = new LinkedHashMap<>(16, 0.75f, true);
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            log.warning("apigw cache: can't create directory {0}", mDirectory);
+            return;
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long t1 = f1.lastModified();
+                long t2 = f2.lastModified();
+                return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // 書き込み途中で終了した一時ファイル
+                file.delete();
+                continue;
+            }
+            mDiskIndex.put(file.getName(), file.length());
+            mDiskUsage += file.length();
+        }
+    }
+
+    /**
+     * エントリをファイルに書き込む。
+     * 読み込み中のファイルに影響しないよう、一時ファイルに書き込んでからリネームする。
+     * @return ファイルサイズ。失敗した場合は -1。
+     */
+    private long writeEntry(File file, Entry entry) {
+        File temp = null;
+        try {
+            temp = File.createTempFile(file.getName(), TEMP_SUFFIX, mDirectory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(FILE_VERSION);
+                out.writeLong(entry.storedAt);
+                out.writeUTF(entry.etag != null ? entry.etag : "");
+                out.writeUTF(entry.contentType != null ? entry.contentType.toString() : "");
+                out.writeInt(entry.headers.size());
+                for (int i = 0; i < entry.headers.size(); i++) {
+                    out.writeUTF(entry.headers.name(i));
+                    out.writeUTF(entry.headers.value(i));
+                }
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+            } finally {
+                out.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("rename failed: " + file);
+                }
+            }
+            return file.length();
+        } catch (IOException e) {
+            log.warning("apigw cache write failed: {0}", e.getMessage());
+            if (temp != null) {
+                temp.delete();
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * ファイルからエントリを読み込む。
+     * @return エントリ。ファイルが存在しないか、壊れている場合は null。
+     */
+    private Entry readEntry(File file) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != FILE_VERSION) {
+                    return null;
+                }
+                long storedAt = in.readLong();
+                String etag = in.readUTF();
+                String contentType = in.readUTF();
+                Headers.Builder headers = new Headers.Builder();
+                int headerCount = in.readInt();
+                for (int i = 0; i < headerCount; i++) {
+                    headers.add(in.readUTF(), in.readUTF());
+                }
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+
+                return new Entry(etag.isEmpty() ? null : etag, storedAt, headers.build(),
+                        contentType.isEmpty() ? null : MediaType.parse(contentType), body);
+            } finally {
+                in.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warning("apigw cache read failed: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * キャッシュを全クリアする。ディスクキャッシュのファイルも削除される。
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mSize = 0;
+        if (mDirectory != null) {
+            ensureDiskIndex();
+            for (String name : mDiskIndex.keySet()) {
+                new File(mDirectory, name).delete();
+            }
+            mDiskIndex.clear();
+            mDiskUsage = 0;
+        }
+    }
+
+    /**
+     * メモリキャッシュ中のボディの合計サイズ(バイト)を返す
+     * @return サイズ
+     */
+    public synchronized long getMemorySize() {
+        return mSize;
+    }
+
+    /**
+     * ディスクキャッシュの合計サイズ(バイト)を返す
+     * @return サイズ。ディスクキャッシュを使用しない場合は 0。
+     */
+    public synchronized long getDiskSize() {
+        if (mDirectory == null) {
+            return 0;
+        }
+        ensureDiskIndex();
+        return mDiskUsage;
+    }
+
+    /**
+     * キャッシュ対象となったリクエストの数を返す
+     * @return リクエスト数
+     */
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * 有効期間内のキャッシュから応答した数を返す
+     * @return ヒット数
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * 有効期間経過後 (stale-while-revalidate 期間内) のキャッシュから応答した数を返す
+     * @return ヒット数
+     */
+    public long getStaleHitCount() {
+        return mStaleHitCount.get();
+    }
+
+    /**
+     * サーバへの問い合わせを待って応答した数を返す。
+     * 条件付きリクエストで 304 Not Modified が返却された場合も含む。
+     * @return ミス数
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * 条件付きリクエストで 304 Not Modified が返却された数を返す。
+     * バックグラウンドでの更新を含む。
+     * @return 再検証数
+     */
+    public long getRevalidatedCount() {
+        return mRevalidatedCount.get();
+    }
+
+    /**
+     * サーバに問い合わせずに応答した割合を返す
+     * @return ヒット率 (0.0 - 1.0)。リクエストがない場合は 0。
+     */
+    public double getHitRatio() {
+        long requests = mRequestCount.get();
+        return requests == 0 ? 0 : (double) (mHitCount.get() + mStaleHitCount.get()) / requests;
+    }
+
+    /**
+     * キャッシュからの応答、および 304 Not Modified により転送を省略したレスポンスボディの合計バイト数を返す
+     * @return バイト数
+     */
+    public long getBytesSaved() {
+        return mBytesSaved.get();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+package com.nec.baas.apigw;
+
+import java.io.File;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * APIゲートウェイのレスポンスキャッシュの設定。
+ *
+ * <p>キャッシュはメモリとディスクの2段構成で、それぞれ合計サイズで上限管理される。
+ * 超過時は最も長く参照されていないエントリから破棄される。
+ * 1 エントリの最大サイズはメモリキャッシュの上限の 1/8 とする。</p>
+ *
+ * <p>キャッシュを使用するかどうか、および有効期間はリクエスト毎に
+ * {@link NbApigw.Builder#cache(long)} で指定する。</p>
+ *
+ * <pre>
+ *     NbService service = new NbGenericServiceBuilder()
+ *             ...
+ *             .apigwCache(new NbApigwCacheConfig().directory(dir))
+ *             .build();
+ * </pre>
+ * @see com.nec.baas.core.NbServiceBuilder#apigwCache(NbApigwCacheConfig)
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class NbApigwCacheConfig {
+    /**
+     * ディスクキャッシュのディレクトリ。キャッシュ専用のディレクトリを指定すること。
+     * Android 版で未設定の場合は、アプリのキャッシュディレクトリ配下を使用する。
+     * それ以外で未設定の場合は、メモリキャッシュのみを使用する。
+     */
+    private File directory;
+
+    /** メモリキャッシュの最大サイズ(バイト) */
+    private long memorySize = 1024 * 1024;
+
+    /** ディスクキャッシュの最大サイズ(バイト) */
+    private long diskSize = 16 * 1024 * 1024;
+}
@@ -0,0 +1,76 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+package com.nec.baas.apigw;
+
+import com.nec.baas.json.NbJSONObject;
+import com.nec.baas.json.internal.NbJSONStreamReader;
+import com.nec.baas.util.NbLogger;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * レスポンスの JSON 配列の要素を、要求毎に1件ずつ読み込む Iterator。
+ * エラー発生時は例外をスローせずに終端とし、エラーを保持する。
+ */
+@Accessors(prefix = "m")
+/*package*/ class NbApigwJSONIterator implements Iterator<NbJSONObject> {
+    private static final NbLogger log = NbLogger.getLogger(NbApigwJSONIterator.class);
+
+    private final NbJSONStreamReader mReader;
+    private NbJSONObject mNext = null;
+    private boolean mDone = false;
+
+    /** 読み込んだ要素数 */
+    @Getter
+    private int mCount = 0;
+
+    /** 受信エラー・パースエラー。エラーがない場合は null。 */
+    @Getter
+    private Exception mError = null;
+
+    /**
+     * コンストラクタ
+     * @param reader 配列の先頭まで読み進めたリーダ
+     */
+    /*package*/ NbApigwJSONIterator(NbJSONStreamReader reader) {
+        mReader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mNext == null && !mDone) {
+            try {
+                mNext = mReader.nextObject();
+            } catch (IOException | IllegalArgumentException e) {
+                log.severe("NbApigwJSONIterator: {0}", e.getMessage());
+                mError = e;
+            }
+            mDone = (mNext == null);
+        }
+        return mNext != null;
+    }
+
+    @Override
+    public NbJSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        NbJSONObject next = mNext;
+        mNext = null;
+        mCount++;
+        return next;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+package com.nec.baas.apigw;
+
+import com.nec.baas.core.NbBaseCallback;
+import com.nec.baas.json.NbJSONObject;
+
+import java.util.Iterator;
+
+import okhttp3.Response;
+
+/**
+ * APIゲートウェイの JSON 配列のストリーミング受信用コールバック。
+ * @see NbApigw#executeJSONStream(String, NbApigwJSONStreamCallback)
+ * @since 7.5.2
+ */
+public interface NbApigwJSONStreamCallback extends NbBaseCallback {
+    /**
+     * レスポンスの受信開始時に呼び出される。サブスレッド上で呼び出される。
+     * <p>
+     * 配列の要素は elements の hasNext() / next() の呼び出し毎に、必要な分だけ受信・パースされる。
+     * 要素の読み込みを止めている間はレスポンスの受信も止まる(TCP のフロー制御によりサーバ側の送信も止まる)。
+     * 本メソッドから戻るとレスポンスはクローズされ、残りの要素は受信しない。
+     * <p>
+     * 受信エラー・パースエラーが発生した場合、hasNext() は false を返し、
+     * 本メソッドから戻った後に {@link #onFailure} が呼び出される。
+     * @param elements 配列の要素 (JSON Object)
+     * @param response レスポンス
+     */
+    void onStream(Iterator<NbJSONObject> elements, Response response);
+
+    /**
+     * 受信が完了した(または {@link #onStream} から戻って中断した)場合に呼び出される。
+     * @param count 読み込んだ要素数
+     * @param response レスポンス (ボディはクローズ済み)
+     */
+    void onSuccess(int count, Response response);
+}
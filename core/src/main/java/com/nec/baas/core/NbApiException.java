@@ -0,0 +1,40 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.core;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * API の実行失敗を表す例外。
+ * {@link NbFutures} が返却する CompletableFuture の失敗原因として使用される。
+ * @see NbBaseCallback#onFailure(int, NbErrorInfo)
+ * @since 7.5.2
+ */
+@Accessors(prefix = "m")
+public class NbApiException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /** ステータスコード ({@link NbStatus}) */
+    @Getter
+    private final int mStatusCode;
+
+    /** エラー詳細情報 */
+    @Getter
+    private final NbErrorInfo mErrorInfo;
+
+    /**
+     * コンストラクタ
+     * @param statusCode ステータスコード
+     * @param errorInfo エラー詳細情報
+     */
+    public NbApiException(int statusCode, NbErrorInfo errorInfo) {
+        super(statusCode + ": " + (errorInfo != null ? errorInfo.getReason() : ""));
+        mStatusCode = statusCode;
+        mErrorInfo = errorInfo;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.core;
+
+import com.nec.baas.http.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * コールバック形式の API を CompletableFuture 形式で呼び出すためのユーティリティ。
+ *
+ * <pre>
+ *     CompletableFuture&lt;NbObject&gt; future = NbFutures.call(cb -&gt; bucket.getObject(objectId, cb));
+ *     future.thenAccept(object -&gt; { ... });
+ * </pre>
+ *
+ * <p>Future はコールバックが呼び出されるスレッド(レスポンスハンドラのスレッド)上で完了する。
+ * 非同期用のメソッド (thenApplyAsync 等) を使用しない限り、後続の処理もそのスレッド上で実行され、
+ * スレッドの切り替えは発生しない。失敗時は {@link NbApiException} で例外完了する。</p>
+ *
+ * <p>Future を {@link CompletableFuture#cancel(boolean)} した場合、API が実行中の HTTP リクエストを
+ * キャンセルする (コールバック内から続けて実行されるリクエストを含む)。
+ * ただし、同一 GET リクエストの合流
+ * ({@link com.nec.baas.generic.NbGenericServiceBuilder#coalesceRequests(boolean)}) が有効な場合、
+ * 他の呼び出しと共有されるリクエストはキャンセルしない。</p>
+ *
+ * <p>Java SE 8 以降 (Android の場合は API Level 24 以降) で使用可能である。</p>
+ * @since 7.5.2
+ */
+public final class NbFutures {
+    private NbFutures() {
+    }
+
+    /**
+     * API 呼び出しに対応する CompletableFuture。
+     * HTTP リクエストのキャンセルに対応する。
+     */
+    private static class CallFuture<T> extends CompletableFuture<T> {
+        private final NbCallCanceller mCanceller = new NbCallCanceller();
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                mCanceller.cancel();
+            }
+            return cancelled;
+        }
+
+        void start(Runnable operation) {
+            NbCallCanceller prev = NbCallCanceller.enter(mCanceller);
+            try {
+                operation.run();
+            } catch (RuntimeException e) {
+                completeExceptionally(e);
+            } finally {
+                NbCallCanceller.exit(prev);
+            }
+        }
+
+        void fail(int statusCode, NbErrorInfo errorInfo) {
+            completeExceptionally(new NbApiException(statusCode, errorInfo));
+        }
+    }
+
+    /**
+     * {@link NbCallback} 形式の API を呼び出す。
+     * @param operation API 呼び出し。引数のコールバックを API に渡すこと。
+     * @param <T> 実行結果の型
+     * @return 実行結果の Future
+     */
+    public static <T> CompletableFuture<T> call(final Consumer<NbCallback<T>> operation) {
+        final CallFuture<T> future = new CallFuture<>();
+        final NbCallback<T> callback = new NbCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
+                future.fail(statusCode, errorInfo);
+            }
+        };
+        future.start(new Runnable() {
+            @Override
+            public void run() {
+                operation.accept(callback);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * {@link NbCallback2} 形式の API を呼び出す。Future は 1 番目の引数で完了する。
+     * (API ゲートウェイの JSON 呼び出し等、2 番目の引数が付加情報である API 向け)
+     * @param operation API 呼び出し。引数のコールバックを API に渡すこと。
+     * @param <T> 実行結果の型
+     * @param <U> 付加情報の型
+     * @return 実行結果の Future
+     */
+    public static <T, U> CompletableFuture<T> call2(final Consumer<NbCallback2<T, U>> operation) {
+        final CallFuture<T> future = new CallFuture<>();
+        final NbCallback2<T, U> callback = new NbCallback2<T, U>() {
+            @Override
+            public void onSuccess(T t, U u) {
+                future.complete(t);
+            }
+
+            @Override
+            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
+                future.fail(statusCode, errorInfo);
+            }
+        };
+        future.start(new Runnable() {
+            @Override
+            public void run() {
+                operation.accept(callback);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * {@link NbResultCallback} 形式の API を呼び出す。
+     * @param operation API 呼び出し。引数のコールバックを API に渡すこと。
+     * @return 完了を表す Future
+     */
+    public static CompletableFuture<Void> run(final Consumer<NbResultCallback> operation) {
+        final CallFuture<Void> future = new CallFuture<>();
+        final NbResultCallback callback = new NbResultCallback() {
+            @Override
+            public void onSuccess() {
+                future.complete(null);
+            }
+
+            @Override
+            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
+                future.fail(statusCode, errorInfo);
+            }
+        };
+        future.start(new Runnable() {
+            @Override
+            public void run() {
+                operation.accept(callback);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.core;
+
+/**
+ * データ転送の進捗を通知するコールバック。
+ * <p>
+ * 転送を行うスレッド(UIスレッドではない)上で、一定量の転送毎および転送完了時に呼び出される。
+ * 時間のかかる処理は行わないこと。リトライ等で再送する場合は、0 から再度通知される。
+ * @since 7.5.2
+ */
+public interface NbProgressCallback {
+    /**
+     * 転送が進んだ場合に呼び出される。
+     * @param bytesTransferred 転送済みのバイト数
+     * @param contentLength 全体のバイト数。不明時は -1。
+     */
+    void onProgress(long bytesTransferred, long contentLength);
+}
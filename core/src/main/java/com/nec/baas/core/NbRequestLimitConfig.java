@@ -0,0 +1,40 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.core;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * REST API リクエストの流量制限の設定。
+ *
+ * <p>同時実行数の上限とトークンバケットによる送信レートの上限を設定する。
+ * 上限を超えたリクエストはスレッドを占有せずにキューで待機し、
+ * 優先度 ({@link NbRequestPriority}) 順に実行される。</p>
+ * <pre>
+ *     NbService service = new NbGenericServiceBuilder()
+ *             ...
+ *             .requestLimit(new NbRequestLimitConfig().maxConcurrentRequests(8).requestsPerSecond(20))
+ *             .build();
+ * </pre>
+ * @see NbServiceBuilder#requestLimit(NbRequestLimitConfig)
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class NbRequestLimitConfig {
+    /** 同時実行リクエスト数の上限。0 の場合は制限しない。 */
+    private int maxConcurrentRequests = 0;
+
+    /** 1秒あたりのリクエスト数の上限。0 の場合は制限しない。 */
+    private double requestsPerSecond = 0;
+
+    /** 連続して送信可能なリクエスト数(トークンバケットの容量)。0 の場合は requestsPerSecond (最低1)。 */
+    private int burst = 0;
+}
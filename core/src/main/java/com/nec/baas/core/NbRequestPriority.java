@@ -0,0 +1,39 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.core;
+
+/**
+ * REST API リクエストの優先度。
+ *
+ * <p>{@link NbRequestLimitConfig} による流量制限時、待機中のリクエストは優先度順に実行される。
+ * 優先度は Request のタグで指定する。タグが指定されていないリクエストは {@link #INTERACTIVE} となる。</p>
+ * <pre>
+ *     request = request.newBuilder().tag(NbRequestPriority.class, NbRequestPriority.BACKGROUND).build();
+ * </pre>
+ * @since 7.5.2
+ */
+public enum NbRequestPriority {
+    /**
+     * 対話的なリクエスト (画面表示等)。優先して実行される。
+     */
+    INTERACTIVE,
+    /**
+     * バックグラウンドのリクエスト (オフライン同期、一括処理等)。
+     * 対話的なリクエストが待機している間も、一定の割合で実行される。
+     */
+    BACKGROUND;
+
+    /**
+     * リクエストの優先度を取得する
+     * @param request リクエスト
+     * @return 優先度
+     */
+    public static NbRequestPriority of(okhttp3.Request request) {
+        NbRequestPriority priority = request.tag(NbRequestPriority.class);
+        return priority != null ? priority : INTERACTIVE;
+    }
+}
@@ -6,9 +6,14 @@
 
 package com.nec.baas.core;
 
+import com.nec.baas.apigw.*;
 import com.nec.baas.core.internal.*;
+import com.nec.baas.file.*;
+import com.nec.baas.http.*;
 import com.nec.baas.util.*;
 
+import java.util.concurrent.ExecutorService;
+
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -47,6 +52,34 @@ public abstract class NbServiceBuilder<SELF extends NbServiceBuilder<SELF>> {
     @Getter @Setter
     private String deviceId;
 
+    /**
+     * バックグラウンド処理に使用する ExecutorService
+     */
+    @Getter
+    private ExecutorService executorService;
+
+    /**
+     * HTTP クライアントの設定
+     */
+    @Getter
+    private NbHttpClientConfig httpClientConfig;
+    private NbRequestLimitConfig requestLimitConfig;
+
+    /** build() 中のサービスの流量制限 */
+    private NbRequestLimiter requestLimiter;
+
+    /**
+     * ファイルキャッシュの設定
+     */
+    @Getter
+    private NbFileCacheConfig fileCacheConfig;
+
+    /**
+     * APIゲートウェイのレスポンスキャッシュの設定
+     */
+    @Getter
+    private NbApigwCacheConfig apigwCacheConfig;
+
     protected SELF myself;
 
     /**
@@ -98,6 +131,75 @@ public abstract class NbServiceBuilder<SELF extends NbServiceBuilder<SELF>> {
         return myself;
     }
 
+    /**
+     * バックグラウンド処理(API の非同期実行等)に使用する ExecutorService をセットする。
+     * <p>
+     * 未設定の場合は SDK 内蔵のスレッドプールが使用される。
+     * ExecutorService は SDK 全体で共有されるため、最後に build() したものが有効となる。
+     * 上限付きスレッドプールや仮想スレッドを使用する ExecutorService は
+     * {@link NbExecutors} で生成できる。
+     * @param executorService ExecutorService
+     * @since 7.5.2
+     */
+    public SELF executorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return myself;
+    }
+
+    /**
+     * HTTP クライアントの設定(タイムアウト、コネクションプール、同時実行数、プロトコル)をセットする。
+     * <p>
+     * HTTP クライアントは SDK 全体で共有されるため、最後に build() したものが有効となる。
+     * 未設定の場合は既定値が使用される。
+     * @param httpClientConfig HTTP クライアントの設定
+     * @since 7.5.2
+     */
+    public SELF httpClientConfig(NbHttpClientConfig httpClientConfig) {
+        this.httpClientConfig = httpClientConfig;
+        return myself;
+    }
+
+    /**
+     * REST API リクエストの流量制限(同時実行数、送信レート)をセットする。
+     * <p>
+     * 上限を超えたリクエストはスレッドを占有せずに待機し、優先度 ({@link NbRequestPriority}) 順に実行される。
+     * オフライン同期のリクエストは {@link NbRequestPriority#BACKGROUND} として扱われる。
+     * 流量制限は build() したサービス (テナント・アプリ) 毎に適用される。
+     * 未設定の場合は制限しない。
+     * @param requestLimitConfig 流量制限の設定
+     * @since 7.5.2
+     */
+    public SELF requestLimit(NbRequestLimitConfig requestLimitConfig) {
+        this.requestLimitConfig = requestLimitConfig;
+        return myself;
+    }
+
+    /**
+     * ダウンロードしたファイル本体のディスクキャッシュを使用する。
+     * <p>
+     * キャッシュ済みのファイルは If-None-Match で再検証し、更新されていなければキャッシュから読み込む。
+     * 未設定の場合はキャッシュしない。
+     * @param fileCacheConfig ファイルキャッシュの設定
+     * @since 7.5.2
+     */
+    public SELF fileCache(NbFileCacheConfig fileCacheConfig) {
+        this.fileCacheConfig = fileCacheConfig;
+        return myself;
+    }
+
+    /**
+     * APIゲートウェイのレスポンスキャッシュを設定する。
+     * <p>
+     * キャッシュはリクエスト毎に {@link com.nec.baas.apigw.NbApigw.Builder#cache(long)} で指定した場合のみ使用される。
+     * 未設定の場合は、既定の設定のメモリキャッシュのみを使用する。
+     * @param apigwCacheConfig レスポンスキャッシュの設定
+     * @since 7.5.2
+     */
+    public SELF apigwCache(NbApigwCacheConfig apigwCacheConfig) {
+        this.apigwCacheConfig = apigwCacheConfig;
+        return myself;
+    }
+
     /**
      * Endpoint URI を設定する
      * @param argEndPointUri Endpoint URI
@@ -131,15 +233,33 @@ public abstract class NbServiceBuilder<SELF extends NbServiceBuilder<SELF>> {
      * @return NbService
      */
     public NbService build() {
+        if (executorService != null) {
+            NbUtil.setExecutorService(executorService);
+        }
+        if (httpClientConfig != null) {
+            NbHttpClient.getInstance().setConfig(httpClientConfig);
+        }
+        requestLimiter = new NbRequestLimiter();
+        if (requestLimitConfig != null) {
+            requestLimiter.configure(requestLimitConfig);
+        }
+        if (fileCacheConfig != null && fileCacheConfig.directory() == null) {
+            throw new IllegalArgumentException("file cache directory is not set");
+        }
+
         NbServiceImpl service = createNebulaService();
 
 
         service.initialize(tenantId, appId, appKey, endPointUri,
                 createSessionToken(), createRestExecutorFactory());
+        service.setRequestLimiter(requestLimiter);
 
         //DataSecurity
         service.setDeviceId(deviceId);
 
+        service.setFileCacheConfig(fileCacheConfig);
+        service.setApigwCacheConfig(apigwCacheConfig);
+
         return service;
     }
 
@@ -158,6 +278,16 @@ public abstract class NbServiceBuilder<SELF extends NbServiceBuilder<SELF>> {
      */
     abstract protected NbRestExecutorFactory createRestExecutorFactory();
 
+    /**
+     * build() 中のサービスの流量制限を取得する。
+     * {@link #createRestExecutorFactory()} で生成する RestExecutor に設定すること。
+     * @return 流量制限
+     * @since 7.5.2
+     */
+    protected NbRequestLimiter getRequestLimiter() {
+        return requestLimiter;
+    }
+
     /**
      * NbSessionToken を生成する。
      * @return NbSessionToken
@@ -13,6 +13,11 @@ package com.nec.baas.core;
 public class NbStatus {
     /** 200 OK */
     public static final int OK = 200;
+    /**
+     * 304 Not Modified
+     * @since 7.5.2
+     */
+    public static final int NOT_MODIFIED = 304;
 
     /** 400 Bad Request */
     public static final int REQUEST_PARAMETER_ERROR = 400;
@@ -26,6 +31,11 @@ public class NbStatus {
     public static final int REQUEST_TIMEOUT = 408;
     /** 409 Conflict */
     public static final int CONFLICT = 409;
+    /**
+     * 416 Requested range not satisfiable
+     * @since 7.5.2
+     */
+    public static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
 
     /** 422 Uprocessable entity error */
     public static final int UNPROCESSABLE_ENTITY_ERROR = 422;
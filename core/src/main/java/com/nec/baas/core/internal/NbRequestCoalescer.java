@@ -0,0 +1,204 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.core.internal;
+
+import com.nec.baas.core.*;
+import com.nec.baas.json.*;
+import com.nec.baas.util.*;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 同一リクエストの合流 (single-flight) を行う。
+ *
+ * <p>URL およびヘッダ(セッショントークン含む)が同一の GET リクエストが実行中の場合、
+ * 後続のリクエストは HTTP リクエストを発行せず、実行中のリクエストの完了を待つ。
+ * 完了時は、レスポンスボディを一度だけ読み込み・パースし、合流した全ハンドラに通知する。
+ * {@link NbSimpleRestResponseHandler} には、パース済みの JSON (Copy-on-write コピー) が渡される。</p>
+ *
+ * <p>合流したハンドラへの通知は、実行したリクエストの完了スレッド上で順に行われる。
+ * レスポンスボディが {@link #MAX_SHARED_BODY_SIZE} を超える場合(ファイルダウンロード等)は、
+ * 最初のハンドラにのみレスポンスを通知し、後続のハンドラのリクエストは個別に実行する。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @since 7.5.2
+ */
+public class NbRequestCoalescer {
+    private static final NbLogger log = NbLogger.getLogger(NbRequestCoalescer.class);
+
+    private static final NbRequestCoalescer sInstance = new NbRequestCoalescer();
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** 合流したハンドラ間で共有するレスポンスボディの最大サイズ */
+    /*package*/ static final int MAX_SHARED_BODY_SIZE = 4 * 1024 * 1024;
+
+    /** 実行中のリクエスト(キー)と、その完了を待つハンドラのリスト */
+    private final Map<String, List<NbRestResponseHandler>> mInFlight = new HashMap<>();
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+
+    /**
+     * レスポンスの通知先
+     */
+    public interface Dispatcher {
+        /**
+         * レスポンスをハンドラに通知する。通知後、レスポンスはクローズすること。
+         * @param response レスポンス
+         * @param handler ハンドラ
+         */
+        void dispatch(Response response, NbRestResponseHandler handler);
+
+        /**
+         * リクエストを合流せずに個別に実行する。
+         * @param request リクエスト
+         * @param handler ハンドラ
+         */
+        void execute(Request request, NbRestResponseHandler handler);
+    }
+
+    /**
+     * インスタンスを取得する
+     * @return NbRequestCoalescer
+     */
+    public static NbRequestCoalescer getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * リクエストの実行開始を登録する。
+     * @param request リクエスト
+     * @param handler ハンドラ
+     * @return リクエストを実行すべき場合は true。
+     * 実行中の同一リクエストに合流した場合は false (ハンドラには実行中のリクエストの結果が通知される)。
+     */
+    public boolean begin(Request request, NbRestResponseHandler handler) {
+        String key = makeKey(request);
+        if (key == null) {
+            return true;
+        }
+        mRequestCount.incrementAndGet();
+
+        synchronized (mInFlight) {
+            List<NbRestResponseHandler> handlers = mInFlight.get(key);
+            if (handlers == null) {
+                handlers = new ArrayList<>(1);
+                handlers.add(handler);
+                mInFlight.put(key, handlers);
+                return true;
+            }
+            handlers.add(handler);
+        }
+        mCoalescedCount.incrementAndGet();
+        log.fine("request coalesced: {0}", request.url());
+        return false;
+    }
+
+    /**
+     * リクエストの実行完了を通知する。合流した全ハンドラにレスポンスが通知される。
+     * @param request リクエスト ({@link #begin} に渡したもの)
+     * @param handler ハンドラ ({@link #begin} に渡したもの)
+     * @param response レスポンス
+     * @param dispatcher 通知先
+     */
+    public void complete(Request request, NbRestResponseHandler handler, Response response, Dispatcher dispatcher) {
+        String key = makeKey(request);
+        List<NbRestResponseHandler> handlers = null;
+        if (key != null) {
+            synchronized (mInFlight) {
+                // 個別に実行したリクエストの場合は、他のリクエストの登録を消さないようにする
+                handlers = mInFlight.get(key);
+                if (handlers != null && handlers.get(0) == handler) {
+                    mInFlight.remove(key);
+                } else {
+                    handlers = null;
+                }
+            }
+        }
+        if (handlers == null || handlers.size() <= 1) {
+            dispatcher.dispatch(response, handler);
+            return;
+        }
+
+        byte[] body = null;
+        ResponseBody responseBody = response.body();
+        if (responseBody != null) {
+            try {
+                body = response.peekBody(MAX_SHARED_BODY_SIZE + 1).bytes();
+            } catch (IOException e) {
+                log.warning("NbRequestCoalescer.complete: {0}", e.getMessage());
+            }
+            if (body == null || body.length > MAX_SHARED_BODY_SIZE) {
+                // 共有できないため、後続のハンドラは個別に実行する
+                dispatcher.dispatch(response, handler);
+                for (NbRestResponseHandler follower : handlers.subList(1, handlers.size())) {
+                    dispatcher.execute(request, follower);
+                }
+                return;
+            }
+            response.close();
+        }
+
+        NbJSONObject json = null;
+        boolean parsed = false;
+        for (NbRestResponseHandler h : handlers) {
+            Response.Builder builder = response.newBuilder();
+            if (body != null) {
+                builder.body(ResponseBody.create(responseBody.contentType(), body));
+
+                if (h instanceof NbSimpleRestResponseHandler) {
+                    if (!parsed) {
+                        // JSON でない場合は null となり、各ハンドラでボディを読み込む
+                        json = NbJSONParser.parse(new String(body, UTF8));
+                        if (json != null) {
+                            json.setImmutable();
+                        }
+                        parsed = true;
+                    }
+                    if (json != null) {
+                        ((NbSimpleRestResponseHandler) h).setParsedJson(json.getMutableInstance());
+                    }
+                }
+            }
+            dispatcher.dispatch(builder.build(), h);
+        }
+    }
+
+    private String makeKey(Request request) {
+        if (!request.method().equals("GET")) {
+            return null;
+        }
+        return request.url() + "\n" + request.headers();
+    }
+
+    /**
+     * 合流対象となったリクエスト (GET) の数を返す
+     * @return リクエスト数
+     */
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * 実行中の同一リクエストに合流し、HTTP リクエストの発行を省略したリクエストの数を返す
+     * @return 合流したリクエスト数
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+}
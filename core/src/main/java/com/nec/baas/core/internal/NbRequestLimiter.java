@@ -0,0 +1,275 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.core.internal;
+
+import com.nec.baas.core.*;
+import com.nec.baas.util.*;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * REST API リクエストの流量制限 (同時実行数およびトークンバケットによるレート制限)。
+ *
+ * <p>インスタンスはサービス (テナント・アプリ) 毎に {@link com.nec.baas.core.NbServiceBuilder#build()} で生成され、
+ * そのサービスの RestExecutor で共有される。</p>
+ *
+ * <p>{@link #submit} されたリクエストの実行タスクは、上限に達していなければ即時に、
+ * 達していればキューに格納され、{@link #release} またはトークンの補充時に実行される。
+ * 待機中のタスクはスレッドを占有しない。</p>
+ *
+ * <p>キューは優先度毎に分かれており、{@link NbRequestPriority#INTERACTIVE} を優先する。
+ * ただし {@link NbRequestPriority#BACKGROUND} が飢餓状態とならないよう、
+ * 対話的なリクエストを {@link #BACKGROUND_INTERVAL} - 1 件実行する毎に 1 件実行する。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @since 7.5.2
+ */
+public class NbRequestLimiter {
+    private static final NbLogger log = NbLogger.getLogger(NbRequestLimiter.class);
+
+    /** サービスに属さない RestExecutor 用の既定インスタンス (制限なし) */
+    private static final NbRequestLimiter sInstance = new NbRequestLimiter();
+
+    /** バックグラウンドのリクエストを実行する間隔 */
+    /*package*/ static final int BACKGROUND_INTERVAL = 4;
+
+    private NbRequestLimitConfig mConfig = new NbRequestLimitConfig();
+
+    private final ArrayDeque<Runnable> mInteractiveQueue = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> mBackgroundQueue = new ArrayDeque<>();
+
+    /** 実行中のリクエスト数 */
+    private int mActive = 0;
+
+    /** 連続して実行した対話的リクエストの数 */
+    private int mInteractiveStreak = 0;
+
+    /** トークンバケットの残トークン数 */
+    private double mTokens = 0;
+    private long mLastRefill = 0;
+
+    /** トークン補充待ちのタイマを設定済みであれば true */
+    private boolean mDrainScheduled = false;
+    private ScheduledExecutorService mTimer;
+
+    private final AtomicLong mThrottledCount = new AtomicLong();
+
+    /**
+     * サービスに属さない RestExecutor 用の既定インスタンスを取得する。
+     * サービスの流量制限には {@link NbServiceImpl#getRequestLimiter()} を使用すること。
+     * @return NbRequestLimiter
+     */
+    public static NbRequestLimiter getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * 流量制限を設定する
+     * @param config 設定
+     */
+    public void configure(NbRequestLimitConfig config) {
+        List<Runnable> ready;
+        synchronized (this) {
+            mConfig = config;
+            mTokens = burst();
+            mLastRefill = System.nanoTime();
+            ready = pollReady();
+        }
+        runAll(ready);
+    }
+
+    /**
+     * リクエストの実行タスクを登録する。
+     * 上限に達していない場合は、呼び出しスレッドで即時にタスクを実行する。
+     * タスクの実行したリクエストの完了時は、必ず {@link #release()} を呼び出すこと。
+     * @param priority 優先度
+     * @param task 実行タスク。ブロックしないこと。
+     */
+    public void submit(NbRequestPriority priority, Runnable task) {
+        List<Runnable> ready;
+        synchronized (this) {
+            (priority == NbRequestPriority.BACKGROUND ? mBackgroundQueue : mInteractiveQueue).add(task);
+            ready = pollReady();
+            if (!ready.contains(task)) {
+                mThrottledCount.incrementAndGet();
+            }
+        }
+        runAll(ready);
+    }
+
+    /**
+     * 実行枠を獲得するまで呼び出しスレッドをブロックする (同期 API 用)。
+     * 完了時は、必ず {@link #release()} を呼び出すこと。
+     * @param priority 優先度
+     * @throws InterruptedIOException 割り込み発生
+     */
+    public void acquire(NbRequestPriority priority) throws InterruptedIOException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        submit(priority, task);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            boolean removed;
+            synchronized (this) {
+                removed = mInteractiveQueue.remove(task) || mBackgroundQueue.remove(task);
+            }
+            if (!removed) {
+                // 実行枠を獲得済みのため解放する
+                release();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for request slot");
+        }
+    }
+
+    /**
+     * リクエストの完了を通知する。待機中のリクエストがあれば実行する。
+     */
+    public void release() {
+        List<Runnable> ready;
+        synchronized (this) {
+            mActive--;
+            ready = pollReady();
+        }
+        runAll(ready);
+    }
+
+    private void runAll(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.severe("NbRequestLimiter: task failed: {0}", e.getMessage());
+            }
+        }
+    }
+
+    private int burst() {
+        if (mConfig.burst() > 0) {
+            return mConfig.burst();
+        }
+        return (int) Math.max(1, Math.ceil(mConfig.requestsPerSecond()));
+    }
+
+    /**
+     * 実行可能なタスクをキューから取り出す。同期済みであること。
+     * @return 実行可能なタスク
+     */
+    private List<Runnable> pollReady() {
+        List<Runnable> ready = new ArrayList<>(1);
+        int maxConcurrent = mConfig.maxConcurrentRequests();
+        double rate = mConfig.requestsPerSecond();
+
+        while (!mInteractiveQueue.isEmpty() || !mBackgroundQueue.isEmpty()) {
+            if (maxConcurrent > 0 && mActive >= maxConcurrent) {
+                break;
+            }
+            if (rate > 0 && !tryTakeToken(rate)) {
+                scheduleDrain(rate);
+                break;
+            }
+            ready.add(pollNext());
+            mActive++;
+        }
+        return ready;
+    }
+
+    private Runnable pollNext() {
+        if (mBackgroundQueue.isEmpty()
+                || (!mInteractiveQueue.isEmpty() && mInteractiveStreak < BACKGROUND_INTERVAL - 1)) {
+            mInteractiveStreak = mBackgroundQueue.isEmpty() ? 0 : mInteractiveStreak + 1;
+            return mInteractiveQueue.poll();
+        }
+        mInteractiveStreak = 0;
+        return mBackgroundQueue.poll();
+    }
+
+    private boolean tryTakeToken(double rate) {
+        long now = System.nanoTime();
+        mTokens = Math.min(burst(), mTokens + (now - mLastRefill) / 1e9 * rate);
+        mLastRefill = now;
+        if (mTokens >= 1) {
+            mTokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 次のトークンが補充される時刻にキューを処理するタイマを設定する。同期済みであること。
+     */
+    private void scheduleDrain(double rate) {
+        if (mDrainScheduled) {
+            return;
+        }
+        mDrainScheduled = true;
+        long delayMicros = (long) Math.ceil((1 - mTokens) / rate * 1e6);
+
+        if (mTimer == null) {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "NbRequestLimiter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            mTimer = timer;
+        }
+        mTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                List<Runnable> ready;
+                synchronized (NbRequestLimiter.this) {
+                    mDrainScheduled = false;
+                    ready = pollReady();
+                }
+                runAll(ready);
+            }
+        }, delayMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * 実行中のリクエスト数を返す
+     * @return リクエスト数
+     */
+    public synchronized int getActiveCount() {
+        return mActive;
+    }
+
+    /**
+     * 待機中のリクエスト数を返す
+     * @return リクエスト数
+     */
+    public synchronized int getQueuedCount() {
+        return mInteractiveQueue.size() + mBackgroundQueue.size();
+    }
+
+    /**
+     * 流量制限により待機したリクエストの数を返す
+     * @return リクエスト数
+     */
+    public long getThrottledCount() {
+        return mThrottledCount.get();
+    }
+}
@@ -6,6 +6,7 @@
 
 package com.nec.baas.core.internal;
 
+import com.nec.baas.apigw.*;
 import com.nec.baas.core.*;
 import com.nec.baas.file.*;
 import com.nec.baas.file.internal.*;
@@ -50,6 +51,20 @@ public class NbServiceImpl extends NbService {
     @Getter
     private NbOfflineService mOfflineService;
 
+    /** ファイルキャッシュの設定 */
+    @Setter
+    private NbFileCacheConfig mFileCacheConfig;
+    private NbFileCache mFileCache;
+
+    /** APIゲートウェイのレスポンスキャッシュの設定 */
+    @Setter
+    private NbApigwCacheConfig mApigwCacheConfig;
+    private NbApigwCache mApigwCache;
+
+    /** 流量制限 */
+    @Setter
+    private NbRequestLimiter mRequestLimiter;
+
     /** セッショントークン */
     @Getter
     @Setter // for test
@@ -215,6 +230,42 @@ public class NbServiceImpl extends NbService {
         return mOfflineService.loginService().getLoginCacheValidTime();
     }
 
+    /**
+     * ファイルキャッシュを取得する。初回呼び出し時に生成する。
+     * オフラインモードが有効な場合、キャッシュのインデックスはローカルDBに格納される。
+     * @return ファイルキャッシュ。設定されていない場合は null。
+     * @since 7.5.2
+     */
+    public synchronized NbFileCache getFileCache() {
+        if (mFileCache == null && mFileCacheConfig != null) {
+            mFileCache = NbFileCache.create(mFileCacheConfig, mTenantId, mAppId,
+                    (mOfflineService != null) ? mOfflineService.databaseManager() : null);
+        }
+        return mFileCache;
+    }
+
+    /**
+     * 流量制限を取得する
+     * @return 流量制限。NbServiceBuilder を使用せずに生成した場合は既定のインスタンス。
+     * @since 7.5.2
+     */
+    public NbRequestLimiter getRequestLimiter() {
+        return (mRequestLimiter != null) ? mRequestLimiter : NbRequestLimiter.getInstance();
+    }
+
+    /**
+     * APIゲートウェイのレスポンスキャッシュを取得する。初回呼び出し時に生成する。
+     * @return レスポンスキャッシュ。設定されていない場合は、既定の設定のメモリキャッシュ。
+     * @since 7.5.2
+     */
+    public synchronized NbApigwCache getApigwCache() {
+        if (mApigwCache == null) {
+            mApigwCache = new NbApigwCache(
+                    (mApigwCacheConfig != null) ? mApigwCacheConfig : new NbApigwCacheConfig());
+        }
+        return mApigwCache;
+    }
+
     /**
      * OfflineService をセットする。関連する情報も合わせて設定する。
      * @param offlineService OfflineService
@@ -10,6 +10,7 @@ import com.nec.baas.core.*;
 import com.nec.baas.json.*;
 import com.nec.baas.util.*;
 
+import lombok.AccessLevel;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import okhttp3.Response;
@@ -30,6 +31,14 @@ public abstract class NbSimpleRestResponseHandler implements NbPreRestResponseHa
     @Setter
     volatile private NbJSONObject mJson = null;
 
+    /**
+     * パース済みのレスポンスボディ。
+     * 同一リクエストの合流時({@link NbRequestCoalescer})に設定され、
+     * 設定されている場合はレスポンスボディのパースを省略する。
+     */
+    @Setter(AccessLevel.PACKAGE)
+    volatile private NbJSONObject mParsedJson = null;
+
     /**
      * コンストラクタ
      * @param callback コールバック
@@ -57,7 +66,13 @@ public abstract class NbSimpleRestResponseHandler implements NbPreRestResponseHa
     @Override
     public int preHandleResponse(Response response) {
         int status = response.code();
-        mJson = NbUtil.restoreResponse(response);
+        NbJSONObject parsedJson = mParsedJson;
+        if (parsedJson != null) {
+            mJson = parsedJson;
+            mParsedJson = null;
+        } else {
+            mJson = NbUtil.restoreResponse(response);
+        }
 
         if (NbStatus.isSuccessful(status)) {
             status = preHandleResponse(mJson);
@@ -55,6 +55,13 @@ public interface NbFileBucket extends NbBaseBucket<NbFileBucket> {
         @Setter
         NbJSONObject options;
 
+        /**
+         * アップロードの進捗コールバック
+         * @since 7.5.2
+         */
+        @Setter
+        NbProgressCallback progressCallback;
+
         public NewFileParam(String filename, String contentType, String filepath) {
             this.filename = filename;
             this.contentType = contentType;
@@ -90,6 +97,13 @@ public interface NbFileBucket extends NbBaseBucket<NbFileBucket> {
         @Setter
         long contentLength;
 
+        /**
+         * アップロードの進捗コールバック
+         * @since 7.5.2
+         */
+        @Setter
+        NbProgressCallback progressCallback;
+
         public UpdateFileParam(String filename, String contentType, String filepath) {
             this.filename = filename;
             this.contentType = contentType;
@@ -339,6 +353,25 @@ Nb     * ファイルの更新アップロードを行う(InputStream指定, Con
      */
     void downloadFile(final String fileName, final File downloadFile, final NbCallback<String> callback);
 
+    /**
+     * ファイルのダウンロードを行う(保存先ファイル指定、オプション指定)。
+     * <p>
+     * 受信途中で失敗した場合の再開、複数範囲の並列取得を行う。
+     * 受信中のデータは一時ファイルへ書き込まれ、完了時に保存先へリネームされる。
+     * <p>
+     * バケットおよび対象ファイルのread権限が必要となる。
+     * ダウンロードしたファイルの保存先の書き込み権限が必要となる。
+     * downloadFileにファイルが存在する場合上書き保存となる。
+     * @param fileName ダウンロードするファイルの名前
+     * @param downloadFile ダウンロードしたファイルの保存先
+     * @param options オプション
+     * @param callback ダウンロード結果を受け取るコールバック。保存先のファイルパスが渡される。
+     * @see NbFileDownloadOptions
+     * @since 7.5.2
+     */
+    void downloadFile(final String fileName, final File downloadFile, final NbFileDownloadOptions options,
+                      final NbCallback<String> callback);
+
     /**
      * ファイルのダウンロードを行う(OutputStream指定)。
      * <p>
@@ -351,6 +384,46 @@ Nb     * ファイルの更新アップロードを行う(InputStream指定, Con
      */
     void downloadFile(final String fileName, final OutputStream outputStream, final NbResultCallback callback);
 
+    /**
+     * 複数ファイルの一括アップロードを行う。
+     * <p>
+     * 同時転送数を制限して並列にアップロードし、失敗したファイルはリトライする。
+     * サーバに存在しないファイルは新規アップロード、存在するファイルは更新アップロードとなる。
+     * 未変更ファイルのスキップを指定しない場合は新規アップロードを試行し、
+     * 既に存在する(CONFLICT)場合に更新アップロードする(InputStream 指定時は CONFLICT のまま失敗となる)。
+     * バケットのcreate権限、および既存ファイルのupdate権限が必要となる。
+     * <p>
+     * 一部のファイルが失敗した場合もコールバックの onSuccess が呼び出される。
+     * ファイル毎の結果を確認すること。
+     * onFailure は、未変更ファイルのスキップのためのメタデータ一覧取得に失敗した場合に呼び出される。
+     * @param items アップロードするファイルのリスト
+     * @param options オプション
+     * @param callback ファイル毎の結果 (items と同じ順序) を受け取るコールバック
+     * @see NbFileBulkOptions
+     * @since 7.5.2
+     */
+    void uploadFiles(final List<NbFileTransferItem> items, final NbFileBulkOptions options,
+                     final NbCallback<List<NbFileTransferResult>> callback);
+
+    /**
+     * 複数ファイルの一括ダウンロードを行う。
+     * <p>
+     * 同時転送数を制限して並列にダウンロードし、失敗したファイルはリトライする。
+     * 各ファイルは {@link #downloadFile(String, File, NbFileDownloadOptions, NbCallback)} と同様に
+     * 一時ファイルへ受信し、リトライ時は受信済みの位置から再開する。
+     * バケットおよび対象ファイルのread権限が必要となる。
+     * <p>
+     * 一部のファイルが失敗した場合もコールバックの onSuccess が呼び出される。
+     * ファイル毎の結果を確認すること。
+     * @param items ダウンロードするファイルと保存先のリスト
+     * @param options オプション
+     * @param callback ファイル毎の結果 (items と同じ順序) を受け取るコールバック
+     * @see NbFileBulkOptions
+     * @since 7.5.2
+     */
+    void downloadFiles(final List<NbFileTransferItem> items, final NbFileBulkOptions options,
+                       final NbCallback<List<NbFileTransferResult>> callback);
+
     /**
      * ファイルの削除を行う。<br>
      * バケットおよび対象ファイルのdelete権限が必要となる。<br>
@@ -382,6 +455,21 @@ Nb     * ファイルの更新アップロードを行う(InputStream指定, Con
      */
     void getFileMetadataList(boolean isPublished, final NbCallback<List<NbFileMetadata>> callback);
 
+    /**
+     * ファイルのメタデータの一覧をページ単位で取得する。<p/>
+     *
+     * レスポンスを受信しながら逐次パースし、pageSize 件毎に
+     * {@link NbFileMetadataPageCallback#onPage(List)} を呼び出す。
+     * 一覧全体をメモリ上に保持しないため、ファイル数の多いバケットで使用する。<br>
+     * サーバへのリクエストは1回であり、ページ分割はクライアント側で行う。<br>
+     * バケットおよび対象ファイルのread権限が必要となる。
+     * @param isPublished trueの場合公開済みメタデータの一覧を取得する。
+     * @param pageSize 1ページあたりのメタデータ件数 (1以上)
+     * @param callback メタデータの一覧を受け取るコールバック。
+     * @since 7.5.2
+     */
+    void getFileMetadataList(boolean isPublished, int pageSize, final NbFileMetadataPageCallback callback);
+
     /**
      * 内部API: ファイルメタデータ一覧を取得する
      * @param isPublished 公開済みデータ一覧取得
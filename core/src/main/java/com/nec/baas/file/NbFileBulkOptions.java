@@ -0,0 +1,64 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file;
+
+import com.nec.baas.core.*;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * ファイル一括転送のオプション。
+ *
+ * <p>同時に転送するファイル数は {@link #maxConcurrency} 以下に制限される
+ * (ホスト毎の同時転送数の制限 {@link com.nec.baas.http.NbHttpClientConfig#maxTransfersPerHost()} も適用される)。
+ * 通信エラー・サーバエラーで失敗したファイルは {@link #maxRetries} 回まで再転送する。
+ * 権限エラー等のクライアントエラーは再転送しない。</p>
+ *
+ * <p>{@link #skipUnchanged} を指定した場合は、転送前にメタデータ一覧を取得し、
+ * サイズとチェックサム (MD5) がローカルファイルと一致するファイルの転送を省略する。
+ * チェックサムは一括アップロード時にメタデータの options ({@link #CHECKSUM_KEY}) に記録されたものを使用する。
+ * チェックサムが記録されていないファイルは省略しない。</p>
+ *
+ * <pre>
+ *     NbFileBulkOptions options = new NbFileBulkOptions()
+ *             .maxConcurrency(4)
+ *             .skipUnchanged(true)
+ *             .progressCallback(progress);
+ *     bucket.uploadFiles(items, options, callback);
+ * </pre>
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class NbFileBulkOptions {
+    /** チェックサム (MD5 の16進文字列) を記録するメタデータ options のキー */
+    public static final String CHECKSUM_KEY = "md5";
+
+    /** 同時に転送するファイル数の上限 */
+    private int maxConcurrency = 4;
+
+    /** ファイル毎の最大リトライ回数 */
+    private int maxRetries = 2;
+
+    /** リトライ時の待ち時間(ms)。リトライ毎に倍にする。 */
+    private long retryBackoff = 1000;
+
+    /** サイズ・チェックサムが一致するファイルの転送を省略する場合は true */
+    private boolean skipUnchanged = false;
+
+    /**
+     * 全ファイル合計の転送の進捗コールバック。転送スレッド上で呼び出される。
+     * 全体のサイズが不明なファイルを含む場合、contentLength は -1 となる。
+     */
+    private NbProgressCallback progressCallback;
+
+    /** ダウンロード時のオプション (再開可否・範囲並列数)。進捗コールバックは使用されない。 */
+    private NbFileDownloadOptions downloadOptions = new NbFileDownloadOptions();
+}
@@ -0,0 +1,49 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file;
+
+import java.io.File;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * ダウンロードしたファイル本体のディスクキャッシュの設定。
+ *
+ * <p>キャッシュを有効にすると、{@link NbFileBucket#downloadFile(String, File, com.nec.baas.core.NbCallback)}
+ * および {@link NbFileBucket#downloadFile(String, java.io.OutputStream, com.nec.baas.core.NbResultCallback)}
+ * で受信したファイルをキャッシュディレクトリに保存する。同じファイルを再度ダウンロードする際は
+ * If-None-Match (fileETag) を付与してサーバに問い合わせ、304 Not Modified が返却された場合は
+ * キャッシュから読み込む。メタデータの cacheDisable が設定されたファイルはキャッシュしない。</p>
+ *
+ * <p>キャッシュは合計サイズで上限管理され、超過時は最も長く参照されていないファイルから破棄される。
+ * 1 ファイルの最大サイズは上限の 1/8 とする。</p>
+ *
+ * <pre>
+ *     NbService service = new NbGenericServiceBuilder()
+ *             ...
+ *             .fileCache(new NbFileCacheConfig().directory(dir).maxSize(100 * 1024 * 1024))
+ *             .build();
+ * </pre>
+ * @see com.nec.baas.core.NbServiceBuilder#fileCache(NbFileCacheConfig)
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class NbFileCacheConfig {
+    /**
+     * キャッシュディレクトリ。キャッシュ専用のディレクトリを指定すること。
+     * ファイルはテナント・アプリ毎のサブディレクトリ (tenantId_appId) に格納される。
+     * Android 版で未設定の場合は、アプリのキャッシュディレクトリ配下を使用する。
+     */
+    private File directory;
+
+    /** キャッシュの最大サイズ(バイト)。テナント・アプリ毎に適用される。 */
+    private long maxSize = 64 * 1024 * 1024;
+}
@@ -0,0 +1,55 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file;
+
+import com.nec.baas.core.*;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * ファイルダウンロードのオプション。
+ *
+ * <p>再開可能なダウンロードでは、保存先と同じディレクトリに受信途中のファイル
+ * (保存先ファイル名 + {@code ".download"}) と状態ファイル ({@code ".download.state"}) を作成する。
+ * 通信断等で失敗した場合、同じ保存先へ再度ダウンロードすると、HTTP の Range / If-Range
+ * (ファイルの ETag) を使用して受信済みの位置から再開する。サーバ上のファイルが更新されていた場合は
+ * 先頭からダウンロードし直す。</p>
+ *
+ * <p>並列数に 2 以上を指定した場合は、ファイルを分割した範囲を並列に取得し、
+ * 受信途中のファイルの該当位置へ直接書き込む。サーバが Range に対応していない場合は
+ * 1 ストリームでダウンロードする。</p>
+ *
+ * <pre>
+ *     NbFileDownloadOptions options = new NbFileDownloadOptions()
+ *             .resumable(true)
+ *             .parallelRanges(4);
+ *     bucket.downloadFile(fileName, file, options, callback);
+ * </pre>
+ * @see NbFileBucket#downloadFile(String, java.io.File, NbFileDownloadOptions, com.nec.baas.core.NbCallback)
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class NbFileDownloadOptions {
+    /** 失敗時に受信途中のファイルを残し、次回のダウンロードで再開する場合は true */
+    private boolean resumable = true;
+
+    /** 並列に取得する範囲の数。1 の場合は 1 ストリームでダウンロードする。 */
+    private int parallelRanges = 1;
+
+    /** 分割する範囲の最小サイズ(バイト)。ファイルサイズが小さい場合は並列数を減らす。 */
+    private long minRangeSize = 4 * 1024 * 1024;
+
+    /**
+     * 受信の進捗コールバック。受信スレッド上で呼び出される。
+     * 再開時は受信済みのサイズから通知する。
+     */
+    private NbProgressCallback progressCallback;
+}
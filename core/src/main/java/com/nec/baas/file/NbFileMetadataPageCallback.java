@@ -0,0 +1,35 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file;
+
+import com.nec.baas.core.*;
+
+import java.util.List;
+
+/**
+ * ファイルのメタデータ一覧をページ単位で受け取るコールバック。
+ * @see NbFileBucket#getFileMetadataList(boolean, int, NbFileMetadataPageCallback)
+ * @since 7.5.2
+ */
+public interface NbFileMetadataPageCallback extends NbBaseCallback {
+    /**
+     * メタデータ一覧の1ページ分を受信した場合に呼び出される。
+     * <p>
+     * レスポンスの受信中にサブスレッド上で呼び出される。
+     * 本メソッドから戻るまで次のページの受信は行われない。
+     * @param page メタデータのリスト (最大でページサイズ分)
+     * @return 一覧の取得を継続する場合は true。false を返すと受信を中断し、
+     * {@link #onSuccess(int)} が呼び出される。
+     */
+    boolean onPage(List<NbFileMetadata> page);
+
+    /**
+     * メタデータ一覧の取得が完了した(または中断した)場合に呼び出される。
+     * @param count {@link #onPage(List)} に渡したメタデータの総数
+     */
+    void onSuccess(int count);
+}
@@ -0,0 +1,89 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file;
+
+import com.nec.baas.core.*;
+import com.nec.baas.json.*;
+
+import java.io.File;
+import java.io.InputStream;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * 一括転送の対象ファイル。
+ * <p>
+ * アップロードではローカルファイルまたは InputStream を、
+ * ダウンロードでは保存先のローカルファイルを指定する。
+ * InputStream を指定した場合は再送できないため、リトライおよび未変更ファイルのスキップは行わない。
+ * @see NbFileBucket#uploadFiles(java.util.List, NbFileBulkOptions, NbCallback)
+ * @see NbFileBucket#downloadFiles(java.util.List, NbFileBulkOptions, NbCallback)
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+public class NbFileTransferItem {
+    /** ファイル名(必須) */
+    String filename;
+
+    /** Content-Type (アップロード時は必須) */
+    String contentType;
+
+    /** ローカルファイル (アップロード元またはダウンロード先) */
+    File file;
+
+    /** アップロードするファイルデータを読み取る InputStream */
+    InputStream filedata;
+
+    /** InputStream の Content-Length (不明時は -1) */
+    @Setter
+    long contentLength = -1;
+
+    /** 新規アップロード時の ACL */
+    @Setter
+    NbAcl acl;
+
+    /** 新規アップロード時の Option情報 */
+    @Setter
+    NbJSONObject options;
+
+    /**
+     * ダウンロード用のコンストラクタ
+     * @param filename ファイル名
+     * @param file 保存先ファイル
+     */
+    public NbFileTransferItem(String filename, File file) {
+        this.filename = filename;
+        this.file = file;
+    }
+
+    /**
+     * ローカルファイルのアップロード用のコンストラクタ
+     * @param filename ファイル名
+     * @param contentType Content-Type
+     * @param file アップロードするファイル
+     */
+    public NbFileTransferItem(String filename, String contentType, File file) {
+        this.filename = filename;
+        this.contentType = contentType;
+        this.file = file;
+    }
+
+    /**
+     * InputStream のアップロード用のコンストラクタ
+     * @param filename ファイル名
+     * @param contentType Content-Type
+     * @param filedata ファイルデータを読み取る InputStream。転送後にクローズされる。
+     */
+    public NbFileTransferItem(String filename, String contentType, InputStream filedata) {
+        this.filename = filename;
+        this.contentType = contentType;
+        this.filedata = filedata;
+    }
+}
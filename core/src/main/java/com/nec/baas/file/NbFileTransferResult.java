@@ -0,0 +1,59 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file;
+
+import com.nec.baas.core.*;
+
+import lombok.Getter;
+
+/**
+ * 一括転送のファイル毎の結果。
+ * @see NbFileBucket#uploadFiles(java.util.List, NbFileBulkOptions, NbCallback)
+ * @see NbFileBucket#downloadFiles(java.util.List, NbFileBulkOptions, NbCallback)
+ * @since 7.5.2
+ */
+@Getter
+public class NbFileTransferResult {
+    /** 転送対象 */
+    private final NbFileTransferItem item;
+
+    /** ステータスコード。成功時(スキップ時を含む)は {@link NbStatus#OK}。 */
+    private final int statusCode;
+
+    /** エラー詳細情報。成功時は null。 */
+    private final NbErrorInfo errorInfo;
+
+    /** サイズ・チェックサムが一致したため転送を省略した場合は true */
+    private final boolean skipped;
+
+    /** 転送を試行した回数 (スキップ時は 0) */
+    private final int attempts;
+
+    /** ファイルのメタデータ。アップロード成功時、およびスキップ時に設定される。 */
+    private final NbFileMetadata metadata;
+
+    /**
+     * コンストラクタ(内部IF)
+     */
+    public NbFileTransferResult(NbFileTransferItem item, int statusCode, NbErrorInfo errorInfo,
+                                boolean skipped, int attempts, NbFileMetadata metadata) {
+        this.item = item;
+        this.statusCode = statusCode;
+        this.errorInfo = errorInfo;
+        this.skipped = skipped;
+        this.attempts = attempts;
+        this.metadata = metadata;
+    }
+
+    /**
+     * 転送に成功した(またはスキップした)かを返す
+     * @return 成功時は true
+     */
+    public boolean isSuccessful() {
+        return NbStatus.isSuccessful(statusCode);
+    }
+}
@@ -9,13 +9,12 @@ package com.nec.baas.file.internal;
 import com.nec.baas.core.*;
 import com.nec.baas.core.internal.*;
 import com.nec.baas.file.*;
+import com.nec.baas.http.*;
 import com.nec.baas.json.*;
+import com.nec.baas.json.internal.*;
 import com.nec.baas.util.*;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -23,10 +22,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import lombok.NonNull;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
+import okio.BufferedSource;
+import okio.Okio;
 
 /**
  * NbFileBucket 実装
@@ -36,6 +39,7 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
 
     private static final String HEADER_ACL = NbConsts.HEADER_ACL;
     private static final String HEADER_META_OPTIONS = NbConsts.HEADER_META_OPTIONS;
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
 
     private static final String PUBLISH_PATH_COMPONENT = "publish";
 
@@ -121,17 +125,15 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
             throw new IllegalArgumentException("contentType is null");
         }
 
+        File file = null;
         if (fileData == null) {
-            fileData = loadFromFilepath(filePath, callback);
-            if (fileData == null) {
+            file = loadFromFilepath(filePath, callback);
+            if (file == null) {
                 return; // failed
             }
-
-            contentLength = new File(filePath).length();
-            callback = getFileMetadataCallback(callback, fileData);
         }
 
-        uploadNewFileOnline(param, fileData, contentLength, callback);
+        uploadNewFileOnline(param, fileData, file, contentLength, callback);
 
         log.fine("uploadNewFile(path) <end>");
     }
@@ -139,7 +141,8 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
     /**
      * ファイルの新規アップロード（オンライン）
      */
-    private void uploadNewFileOnline(NewFileParam param, InputStream in, long contentLength, final NbCallback<NbFileMetadata> callback) {
+    private void uploadNewFileOnline(NewFileParam param, InputStream in, File file, long contentLength,
+                                     final NbCallback<NbFileMetadata> callback) {
         final String filename = param.filename();
         final String contentType = param.contentType();
         final NbAcl acl = param.acl();
@@ -161,23 +164,25 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
 
         log.fine("uploadNewFile(stream) mApiUrl=" + mApiUrl);
 
-        Request request = getHttpRequestFactory()
-                .post(mApiUrl).addPathComponent(filename)
-                .body(in, contentLength, contentType)
-                .headers(headers)
-                .build();
+        NbHttpRequestFactory.Builder builder = getHttpRequestFactory().post(mApiUrl).addPathComponent(filename);
+        if (file != null) {
+            builder.body(file, contentType, param.progressCallback());
+        } else {
+            builder.body(in, contentLength, contentType, param.progressCallback());
+        }
+        Request request = builder.headers(headers).build();
 
         NbRestResponseHandler handler = makeMetadataResponseHandler(callback, "NbFileBucket.uploadNewFile(stream)");
         execUploadNewFile(request, handler, filename, contentType, in, acl);
     }
 
     /**
-     * 指定 filePath からファイルをロードする
+     * 指定 filePath のファイルを取得する。読み込めない場合は callback にエラーを通知する。
      * @param filePath
      * @param callback
-     * @return
+     * @return ファイル。読み込めない場合は null。
      */
-    private InputStream loadFromFilepath(@NonNull String filePath, @NonNull NbCallback<NbFileMetadata> callback) {
+    private File loadFromFilepath(@NonNull String filePath, @NonNull NbCallback<NbFileMetadata> callback) {
 
         File file = new File(filePath);
         if (!file.exists()) {
@@ -185,50 +190,12 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
             callback.onFailure(NbStatus.REQUEST_PARAMETER_ERROR, new NbErrorInfo(String.format("%s does not exist.", filePath)));
             return null;
         }
-
-        try {
-            return new FileInputStream(file);
-        } catch (FileNotFoundException e1) {
-            log.warning("File not found: {0}", e1.getMessage());
+        if (!file.isFile() || !file.canRead()) {
+            log.warning("File not found: {0}", filePath);
             callback.onFailure(NbStatus.REQUEST_PARAMETER_ERROR, new NbErrorInfo("File not found."));
             return null;
         }
-    }
-
-    /**
-     * NbCallback を wrap し、API完了時に InputStream を close する
-     * @param callback callback
-     * @param fis close する InputStream
-     * @return wrap された callback
-     */
-    private NbCallback<NbFileMetadata> getFileMetadataCallback(final NbCallback<NbFileMetadata> callback,
-                                                               final InputStream fis) {
-        return new NbCallback<NbFileMetadata>() {
-            @Override
-            public void onSuccess(NbFileMetadata meta) {
-                //log.fine("getFileMetadataCallback() onSuccess() metas={0}", meta);
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    log.warning("getFileMetadataCallback.onSuccess(): {0}", e.getMessage());
-                } finally {
-                    //アプリへコールバック
-                    callback.onSuccess(meta);
-                }
-            }
-            @Override
-            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
-                //log.severe("getFileMetadataCallback() onFailure() ERR statusCode={0}", statusCode);
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    log.warning("getFileMetadataCallback.onFailure(): {0}", e.getMessage());
-                } finally {
-                    //アプリへコールバック
-                    callback.onFailure(statusCode, errorInfo);
-                }
-            }
-        };
+        return file;
     }
 
     /**
@@ -271,17 +238,15 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
             throw new IllegalArgumentException("contentType is null");
         }
 
+        File file = null;
         if (fileData == null) {
-            fileData = loadFromFilepath(filePath, callback);
-            if (fileData == null) {
+            file = loadFromFilepath(filePath, callback);
+            if (file == null) {
                 return; // failed
             }
-
-            contentLength = new File(filePath).length();
-            callback = getFileMetadataCallback(callback, fileData);
         }
 
-        uploadUpdateFileOnline(param, fileData, contentLength, callback);
+        uploadUpdateFileOnline(param, fileData, file, contentLength, callback);
 
         log.fine("uploadUpdateFile(path) <end>");
     }
@@ -289,14 +254,18 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
     /**
      * ファイルの更新アップロード（オンライン）
      */
-    private void uploadUpdateFileOnline(@NonNull UpdateFileParam param, InputStream fileData, long contentLength, NbCallback<NbFileMetadata> callback) {
+    private void uploadUpdateFileOnline(@NonNull UpdateFileParam param, InputStream fileData, File file, long contentLength,
+                                        NbCallback<NbFileMetadata> callback) {
         final String fileName = param.filename();
         final String contentType = param.contentType();
 
-        Request request = getHttpRequestFactory()
-                .put(mApiUrl).addPathComponent(fileName)
-                .body(fileData, contentLength, contentType)
-                .build();
+        NbHttpRequestFactory.Builder builder = getHttpRequestFactory().put(mApiUrl).addPathComponent(fileName);
+        if (file != null) {
+            builder.body(file, contentType, param.progressCallback());
+        } else {
+            builder.body(fileData, contentLength, contentType, param.progressCallback());
+        }
+        Request request = builder.build();
 
         NbRestResponseHandler handler = makeMetadataResponseHandler(callback, "NbFileBucket.uploadUpdateFile");
         execUploadUpdateFile(request, handler, fileName, contentType, fileData);
@@ -388,10 +357,15 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
 
             @Override
             public int preHandleResponse(InputStream inputStream, long size, String fileETag) {
+                return preHandleResponse(Okio.buffer(Okio.source(inputStream)), size, fileETag);
+            }
+
+            @Override
+            public int preHandleResponse(BufferedSource source, long size, String fileETag) {
                 log.fine("getDownloadFileCallback()->"
-                        + "preHandleResponse() inputStream=" + inputStream + " size=" + size);
+                        + "preHandleResponse() source=" + source + " size=" + size);
 
-                return execDownloadFilePreHandleResponse(inputStream, downloadFile, fileETag,
+                return execDownloadFilePreHandleResponse(source, downloadFile, fileETag,
                         size, getMetadata());
             }
 
@@ -438,40 +412,32 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
     /**
      * レスポンスからダウンロードファイルを取得する処理。（ファイル版）
      * サブスレッド上(AsyncTask#doInBackGround()から呼び出される。
-     * ストリームデータなので、一度キャッシュに保存して再読み込みした後、
-     * アプリ指定のダウンロード先へ保存する。
-     * @param inputStream レスポンス
+     * レスポンスボディを一時ファイルへ直接書き込み、完了後にアプリ指定のダウンロード先へリネームする。
+     * @param source レスポンスボディ
      * @param downloadFile ファイル保存先
      * @param fileETag ETag
      * @param size ファイルサイズ
      * @param meta メタデータ
      * @return ステータスコード
      */
-    private int execDownloadFilePreHandleResponse(InputStream inputStream,
+    private int execDownloadFilePreHandleResponse(BufferedSource source,
                                                   File downloadFile, String fileETag, long size, NbFileMetadata meta) {
-        FileOutputStream fos = null;
         int status = NbStatus.OK;
         try {
-            fos = new FileOutputStream(downloadFile);
+            NbFileUtil.writeToFile(downloadFile, source, size);
         } catch (IOException e) {
             //e.printStackTrace();
             log.severe("execDownloadFilePreHandleResponse() : Error: {0}", e.getMessage());
-            //アプリ指定のダウンロード先がストリームで読み込めないため、エラーリターン
-            return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
-        }
-
-        status = execDownloadPreHandleResponse(inputStream, fos, fileETag, size,
-                meta);
-        if (NbStatus.isNotSuccessful(status)) {
-            //Exception発生時or書き込みエラー時はファイル削除
-            downloadFile.delete();
-        }
-
-        try {
-            fos.close();
-        } catch (IOException e) {
-            //e.printStackTrace();
-            log.warning(e.getMessage());
+            //書き込みエラー時は一時ファイルが削除され、ダウンロード先は変更されない
+            status = NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+        } finally {
+            //サーバ側のストリームは解放する。
+            try {
+                source.close();
+            } catch (IOException e) {
+                //e.printStackTrace();
+                log.warning(e.getMessage());
+            }
         }
 
         log.fine("execDownloadFilePreHandleResponse(): status={0}", status);
@@ -517,6 +483,47 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
         return NbStatus.OK;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void downloadFile(@NonNull final String fileName, @NonNull final File downloadFile,
+                             @NonNull final NbFileDownloadOptions options, @NonNull final NbCallback<String> callback) {
+        log.fine("downloadFile(options) <start> filename=" + fileName
+                + " downloadFile=" + downloadFile);
+
+        //受信途中のファイルがあれば再開する
+        final NbRangeDownload download = new NbRangeDownload(downloadFile, options,
+                mNebulaService.getRequestLimiter());
+        final Request request = download.prepareRequest(
+                getHttpRequestFactory().get(mApiUrl).addPathComponent(fileName).build());
+
+        NbRestResponseHandler handler = new NbSimpleRestResponseHandler(callback, "NbFileBucket.downloadFile(options)") {
+            @Override
+            public int preHandleResponse(Response response) {
+                int statusCode = response.code();
+                if (NbStatus.isNotSuccessful(statusCode)) {
+                    if (statusCode == NbStatus.REQUESTED_RANGE_NOT_SATISFIABLE) {
+                        // 受信途中のファイルがサーバ上のファイルと一致しないため破棄する
+                        download.discardState();
+                    }
+                    // エラー情報の JSON を復元しておく
+                    this.setJson(NbUtil.restoreResponse(response));
+                    return statusCode;
+                }
+                return download.receive(response, request);
+            }
+
+            @Override
+            public void onSuccess(Response response) {
+                log.fine("downloadFile(options)->onSuccess() call");
+                callback.onSuccess(downloadFile.getPath());
+            }
+        };
+
+        submitDownload(request, handler);
+
+        log.fine("downloadFile(options) <end>");
+    }
+
     /** {@inheritDoc} */
     @Override
     public void downloadFile(@NonNull final String fileName, @NonNull final OutputStream outputStream,
@@ -568,6 +575,18 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
          */
         public abstract int preHandleResponse(InputStream is, long size, String fileETag) ;
 
+        /**
+         * ダウンロード成功時に呼び出される。(サブスレッド上で呼び出される)。
+         * sourceはpreHandleResponse内でクローズすること。
+         * @param source サーバから受信したファイルデータの BufferedSource
+         * @param size サイズ
+         * @param fileETag ETag
+         * @return ステータスコード
+         */
+        public int preHandleResponse(BufferedSource source, long size, String fileETag) {
+            return preHandleResponse(source.inputStream(), size, fileETag);
+        }
+
         @Override
         public void onFailure(int statusCode, NbErrorInfo errorInfo) {
             mCallback.onFailure(statusCode, errorInfo);
@@ -584,16 +603,34 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
         }
 
         //リクエスト作成
-        Request request = getHttpRequestFactory().get(mApiUrl).addPathComponent(fileName).build();
+        final NbFileCache cache = mNebulaService.getFileCache();
+        final String cacheKey = NbFileCache.makeKey(mNebulaService.getTenantId(), mBucketName, fileName);
+        final String cachedETag = (cache != null) ? cache.getCachedETag(cacheKey) : null;
+
+        NbHttpRequestFactory.Builder builder = getHttpRequestFactory().get(mApiUrl).addPathComponent(fileName);
+        if (cachedETag != null) {
+            // キャッシュ済みの場合はサーバで再検証する
+            builder.header(HEADER_IF_NONE_MATCH, cachedETag);
+        }
+        final Request request = builder.build();
 
-        NbRestResponseHandler handler = new NbSimpleRestResponseHandler(callback, "NbFileBucket.downloadFile(private)") {
+        final NbRestResponseHandler handler = new NbSimpleRestResponseHandler(callback, "NbFileBucket.downloadFile(private)") {
             @Override
             public int preHandleResponse(Response response) {
+                return preHandleDownloadResponse(response, cachedETag != null);
+            }
+
+            private int preHandleDownloadResponse(Response response, boolean conditional) {
                 log.fine("downloadFile(private)->preHandleResponse()"
                         + " <start>");
 
-                // 200 OK でない場合は、即時リターン
+                // 更新されていない場合は、キャッシュから読み込む
                 int statusCode = response.code();
+                if (statusCode == NbStatus.NOT_MODIFIED && conditional) {
+                    return preHandleCachedResponse(response);
+                }
+
+                // 200 OK でない場合は、即時リターン
                 if (NbStatus.isNotSuccessful(statusCode)) {
                     // エラー情報の JSON を復元しておく
                     this.setJson(NbUtil.restoreResponse(response));
@@ -601,10 +638,10 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
                 }
 
                 //レスポンスボディ復元処理
-                InputStream is = NbFileUtil.restoreStreamFromResponse(response);
-                if (is == null) {
+                BufferedSource source = NbFileUtil.restoreSourceFromResponse(response);
+                if (source == null) {
                     log.severe("downloadFile(private) preHandleResponse()"
-                            + " ERR is == null");
+                            + " ERR source == null");
                     //レスポンスが正しく取れない場合はサーバ側エラー
                     return NbStatus.INTERNAL_SERVER_ERROR;
                 }
@@ -618,13 +655,60 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
                     return NbStatus.INTERNAL_SERVER_ERROR;
                 }
 
-                // inputStream は callback 先で close すること
-                int result =  callback.preHandleResponse(is, size, fileETag);
+                if (cache != null) {
+                    try {
+                        source = cache.store(cacheKey, mBucketName, fileName, fileETag, source, size);
+                    } catch (IOException e) {
+                        log.severe("downloadFile(private) preHandleResponse()"
+                                + " cache store error: {0}", e.getMessage());
+                        try {
+                            source.close();
+                        } catch (IOException ex) {
+                            log.warning(ex.getMessage());
+                        }
+                        return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                    }
+                }
+
+                // source は callback 先で close すること
+                int result =  callback.preHandleResponse(source, size, fileETag);
                 log.fine("downloadFile(private)->preHandleResponse()"
                         + " <end> result=" + result);
                 return result;
             }
 
+            private int preHandleCachedResponse(Response response) {
+                response.close();
+                long size = cache.getCachedSize(cacheKey);
+                BufferedSource source = cache.openCached(cacheKey, cachedETag);
+                if (source == null) {
+                    // 再検証中にキャッシュが破棄・更新された場合は、条件なしで取得し直す
+                    log.warning("downloadFile(private) preHandleResponse()"
+                            + " cache lost, refetch");
+                    return refetch();
+                }
+                log.fine("downloadFile(private)->preHandleResponse()"
+                        + " cache hit fileETag=" + cachedETag);
+                return callback.preHandleResponse(source, size, cachedETag);
+            }
+
+            private int refetch() {
+                Request unconditional = request.newBuilder().removeHeader(HEADER_IF_NONE_MATCH).build();
+                Response response;
+                try {
+                    response = mNebulaService.createRestExecutor().executeRequestSync(unconditional);
+                } catch (IOException e) {
+                    log.severe("downloadFile(private) preHandleResponse()"
+                            + " ERR refetch: {0}", e.getMessage());
+                    return NbStatus.INTERNAL_SERVER_ERROR;
+                }
+                try {
+                    return preHandleDownloadResponse(response, false);
+                } finally {
+                    response.close();
+                }
+            }
+
             @Override
             public void onSuccess(Response response) {
                 log.fine("downloadFile(private)->onSuccess() call");
@@ -634,7 +718,107 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
 
         log.fine("downloadFile(private) <end>");
 
-        execDownloadFile(request, handler);
+        submitDownload(request, handler);
+    }
+
+    /**
+     * ダウンロードのリクエストを実行する。
+     * 転送枠はハンドラへの通知時に解放される。
+     */
+    private void submitDownload(final Request request, final NbRestResponseHandler handler) {
+        // ホスト毎の同時転送数の上限に達している場合は、スレッドを占有せずに待機する。
+        // 待機後は他の転送の完了スレッドで実行されるため、呼び出し時の Canceller を引き継ぐ。
+        final NbCallCanceller canceller = NbCallCanceller.current();
+        final TransferSlotHandler slotHandler = new TransferSlotHandler(request.url().host(), handler);
+        NbFileTransferLimiter.getInstance().submit(slotHandler.mHost, new Runnable() {
+            @Override
+            public void run() {
+                NbCallCanceller prev = NbCallCanceller.enter(canceller);
+                try {
+                    execDownloadFile(request, slotHandler);
+                } catch (RuntimeException e) {
+                    // リクエストを発行できなかった場合も、枠を解放してエラーを通知する
+                    log.severe("submitDownload() : Error: {0}", e.getMessage());
+                    slotHandler.fail(request, e);
+                } finally {
+                    NbCallCanceller.exit(prev);
+                }
+            }
+        });
+    }
+
+    /**
+     * 転送枠を解放するハンドララッパ。
+     * ファイル本体の受信完了 (preHandleResponse 完了) 時、またはレスポンスなしで
+     * 通知された時のいずれか早い方で、一度だけ転送枠を解放する。
+     */
+    private static class TransferSlotHandler implements NbPreRestResponseHandler {
+        private final String mHost;
+        private final NbRestResponseHandler mHandler;
+        private final AtomicBoolean mReleased = new AtomicBoolean(false);
+
+        TransferSlotHandler(String host, NbRestResponseHandler handler) {
+            mHost = host;
+            mHandler = handler;
+        }
+
+        @Override
+        public int preHandleResponse(Response response) {
+            try {
+                return NbRestResponseHandlerUtil.preHandleResponse(response, mHandler);
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public void handleResponse(Response response, int status) {
+            release();
+            mHandler.handleResponse(response, status);
+        }
+
+        /**
+         * リクエストの発行に失敗した場合の通知。
+         * ハンドラへ通知済みの場合は何もしない。
+         */
+        void fail(Request request, Exception e) {
+            if (!release()) {
+                return;
+            }
+            Response response = new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(NbStatus.INTERNAL_SERVER_ERROR)
+                    .message("Execute Error : " + e.getMessage())
+                    .build();
+            mHandler.handleResponse(response, NbStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        private boolean release() {
+            if (!mReleased.compareAndSet(false, true)) {
+                return false;
+            }
+            NbFileTransferLimiter.getInstance().release(mHost);
+            return true;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void uploadFiles(@NonNull List<NbFileTransferItem> items, @NonNull NbFileBulkOptions options,
+                            @NonNull NbCallback<List<NbFileTransferResult>> callback) {
+        log.fine("uploadFiles() <start> count=" + items.size());
+        new NbFileBulkTransfer(this, items, options, callback, true).start();
+        log.fine("uploadFiles() <end>");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void downloadFiles(@NonNull List<NbFileTransferItem> items, @NonNull NbFileBulkOptions options,
+                              @NonNull NbCallback<List<NbFileTransferResult>> callback) {
+        log.fine("downloadFiles() <start> count=" + items.size());
+        new NbFileBulkTransfer(this, items, options, callback, false).start();
+        log.fine("downloadFiles() <end>");
     }
 
     /** {@inheritDoc} */
@@ -682,6 +866,10 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
         NbRestResponseHandler handler = new NbSimpleRestResponseHandler(callback, "NbFileBucket.deleteFile") {
             @Override
             public void onSuccess(Response response) {
+                NbFileCache cache = mNebulaService.getFileCache();
+                if (cache != null) {
+                    cache.remove(NbFileCache.makeKey(mNebulaService.getTenantId(), mBucketName, fileName));
+                }
                 callback.onSuccess();
             }
             @Override
@@ -739,6 +927,90 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
         execGetFileMetadataList(request, handler);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void getFileMetadataList(boolean isPublished, final int pageSize,
+                                    @NonNull final NbFileMetadataPageCallback callback) {
+        log.fine("getFileMetadataList(paged) <start>"
+                + " isPublished=" + isPublished + " pageSize=" + pageSize);
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+
+        //リクエスト作成
+        Map<String, String> requestMap = new HashMap<>();
+        if (isPublished) {
+            requestMap.put(NbKey.PUBLISHED, "1");
+        }
+        Request request = getHttpRequestFactory().get(mApiUrl).params(requestMap).build();
+
+        NbRestResponseHandler handler = new NbSimpleRestResponseHandler(callback, "NbFileBucket.getFileMetadataList(paged)") {
+            private volatile int mCount = 0;
+
+            @Override
+            public int preHandleResponse(Response response) {
+                int statusCode = response.code();
+                if (NbStatus.isNotSuccessful(statusCode)) {
+                    // エラー情報の JSON を復元しておく
+                    this.setJson(NbUtil.restoreResponse(response));
+                    return statusCode;
+                }
+                if (response.body() == null) {
+                    return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                }
+
+                // 結果配列を逐次パースし、ページ単位で通知する
+                NbJSONStreamReader reader = null;
+                try {
+                    reader = new NbJSONStreamReader(response.body().byteStream());
+                    if (!reader.beginArray(NbKey.RESULTS)) {
+                        log.severe("getFileMetadataList(paged) ERR no results");
+                        return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                    }
+
+                    List<NbFileMetadata> page = new ArrayList<>(pageSize);
+                    NbJSONObject json;
+                    while ((json = reader.nextObject()) != null) {
+                        page.add(makeFileMetadata(json));
+                        if (page.size() == pageSize) {
+                            mCount += page.size();
+                            if (!callback.onPage(page)) {
+                                // 中断。残りのボディは読み捨てずにクローズする
+                                return NbStatus.OK;
+                            }
+                            page = new ArrayList<>(pageSize);
+                        }
+                    }
+                    if (!page.isEmpty()) {
+                        mCount += page.size();
+                        callback.onPage(page);
+                    }
+                    return NbStatus.OK;
+                } catch (IOException | IllegalArgumentException e) {
+                    log.severe("getFileMetadataList(paged) ERR {0}", e.getMessage());
+                    return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+                } finally {
+                    if (reader != null) {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            log.warning(e.getMessage());
+                        }
+                    }
+                    response.close();
+                }
+            }
+
+            @Override
+            public void onSuccess(Response response) {
+                log.fine("getFileMetadataList(paged) count=" + mCount);
+                callback.onSuccess(mCount);
+            }
+        };
+        execGetFileMetadataList(request, handler);
+        log.fine("getFileMetadataList(paged) <end>");
+    }
+
     private List<NbFileMetadata> getNotifyMetadataList(NbJSONArray resultList) {
         List<NbFileMetadata> metadataList = new ArrayList<>();
 
@@ -947,6 +1219,13 @@ public class NbFileBucketImpl extends NbBaseBucketImpl<NbFileBucket> implements
         String fileName = (String)map.get(NbKey.FILENAME);
         NbFileMetadataImpl meta = newFileMetadata(fileName, null, null, mBucketName);
         meta.setMetadata(map);
+
+        // cacheDisable の設定、ファイルの更新をキャッシュに反映する
+        NbFileCache cache = mNebulaService.getFileCache();
+        if (cache != null && fileName != null) {
+            cache.updateMetadata(NbFileCache.makeKey(mNebulaService.getTenantId(), mBucketName, fileName),
+                    mBucketName, fileName, meta.getFileETag(), meta.isCacheDisabled());
+        }
         return meta;
     }
 
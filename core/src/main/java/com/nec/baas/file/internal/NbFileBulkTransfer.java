@@ -0,0 +1,534 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file.internal;
+
+import com.nec.baas.core.*;
+import com.nec.baas.core.internal.*;
+import com.nec.baas.file.*;
+import com.nec.baas.json.*;
+import com.nec.baas.offline.internal.*;
+import com.nec.baas.util.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ファイルの一括転送。
+ *
+ * <p>転送対象を待ち行列に積み、同時実行数が {@link NbFileBulkOptions#maxConcurrency()} 未満の間、
+ * 先頭から順にバックグラウンドで転送を開始する。転送の完了(成功・失敗)毎に次の転送を開始する。
+ * 通信エラー・タイムアウト・サーバエラー (5xx, 429) の場合は、実行枠を保持したまま
+ * 待ち時間の後に再実行する。待機中はスレッドを占有しない。</p>
+ *
+ * <p>未変更ファイルのスキップが指定された場合は、最初にメタデータ一覧をページ単位で取得し、
+ * 転送対象のファイルのメタデータのみを保持する。</p>
+ *
+ * <p>1 回の一括転送毎にインスタンスを作成すること。</p>
+ */
+/*package*/ class NbFileBulkTransfer {
+    private static final NbLogger log = NbLogger.getLogger(NbFileBulkTransfer.class);
+
+    /** メタデータ一覧取得時のページサイズ */
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    /** チェックサム計算時のバッファサイズ */
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    /** 429 Too Many Requests */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /** リトライの待ち時間を計るタイマ */
+    private static final ScheduledExecutorService sRetryTimer = createRetryTimer();
+
+    private final NbFileBucketImpl mBucket;
+    private final List<NbFileTransferItem> mItems;
+    private final NbFileBulkOptions mOptions;
+    private final NbCallback<List<NbFileTransferResult>> mCallback;
+    private final boolean mUpload;
+
+    private final NbFileTransferResult[] mResults;
+    private final int[] mAttempts;
+    private final String[] mChecksums;
+    /** サーバ上に存在するか (null: 不明) */
+    private final Boolean[] mExists;
+
+    private final ArrayDeque<Integer> mPending = new ArrayDeque<>();
+    private int mRunning = 0;
+    private int mRemaining;
+
+    /** ファイル毎のサイズ (-1: 不明) と転送済みサイズ */
+    private final long[] mSizes;
+    private final long[] mTransferred;
+    private long mTotalSize;
+    private long mTotalTransferred = 0;
+
+    /** サーバ上のメタデータ (ファイル名 → メタデータ)。一覧を取得しない場合は null。 */
+    private Map<String, NbFileMetadata> mServerMetadata;
+
+    /**
+     * コンストラクタ
+     * @param bucket バケット
+     * @param items 転送対象
+     * @param options オプション
+     * @param callback コールバック
+     * @param upload アップロードの場合は true、ダウンロードの場合は false
+     */
+    /*package*/ NbFileBulkTransfer(NbFileBucketImpl bucket, List<NbFileTransferItem> items, NbFileBulkOptions options,
+                                   NbCallback<List<NbFileTransferResult>> callback, boolean upload) {
+        for (NbFileTransferItem item : items) {
+            validate(item, upload);
+        }
+        mBucket = bucket;
+        mItems = new ArrayList<>(items);
+        mOptions = options;
+        mCallback = callback;
+        mUpload = upload;
+
+        int count = mItems.size();
+        mResults = new NbFileTransferResult[count];
+        mAttempts = new int[count];
+        mChecksums = new String[count];
+        mExists = new Boolean[count];
+        mSizes = new long[count];
+        mTransferred = new long[count];
+        mRemaining = count;
+    }
+
+    private static void validate(NbFileTransferItem item, boolean upload) {
+        if (item.filename() == null) {
+            throw new IllegalArgumentException("filename is null");
+        }
+        if (upload) {
+            if (item.contentType() == null) {
+                throw new IllegalArgumentException("contentType is null");
+            }
+            if (item.file() == null && item.filedata() == null) {
+                throw new IllegalArgumentException("no file data: " + item.filename());
+            }
+        } else if (item.file() == null) {
+            throw new IllegalArgumentException("no download file: " + item.filename());
+        }
+    }
+
+    /**
+     * 一括転送を開始する
+     */
+    /*package*/ void start() {
+        log.fine("start() upload={0} count={1}", mUpload, mItems.size());
+        if (mItems.isEmpty()) {
+            mCallback.onSuccess(new ArrayList<NbFileTransferResult>());
+            return;
+        }
+        for (int i = 0; i < mItems.size(); i++) {
+            mPending.add(i);
+        }
+
+        if (mOptions.skipUnchanged()) {
+            listServerMetadata();
+        } else {
+            initSizes();
+            schedule();
+        }
+    }
+
+    /**
+     * 転送対象のファイルのメタデータを取得する
+     */
+    private void listServerMetadata() {
+        final Set<String> names = new HashSet<>();
+        for (NbFileTransferItem item : mItems) {
+            names.add(item.filename());
+        }
+        final Map<String, NbFileMetadata> metadata = new HashMap<>();
+
+        mBucket.getFileMetadataList(false, LIST_PAGE_SIZE, new NbFileMetadataPageCallback() {
+            @Override
+            public boolean onPage(List<NbFileMetadata> page) {
+                for (NbFileMetadata meta : page) {
+                    if (names.contains(meta.getFileName())) {
+                        metadata.put(meta.getFileName(), meta);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void onSuccess(int count) {
+                log.fine("listServerMetadata() count={0} matched={1}", count, metadata.size());
+                synchronized (NbFileBulkTransfer.this) {
+                    mServerMetadata = metadata;
+                    for (int i = 0; i < mItems.size(); i++) {
+                        mExists[i] = metadata.containsKey(mItems.get(i).filename());
+                    }
+                }
+                initSizes();
+                schedule();
+            }
+
+            @Override
+            public void onFailure(final int statusCode, final NbErrorInfo errorInfo) {
+                log.severe("listServerMetadata() ERR status={0}", statusCode);
+                NbServiceImpl.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mCallback.onFailure(statusCode, errorInfo);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 進捗通知用に各ファイルのサイズを求める
+     */
+    private synchronized void initSizes() {
+        long total = 0;
+        for (int i = 0; i < mItems.size(); i++) {
+            NbFileTransferItem item = mItems.get(i);
+            long size = -1;
+            if (mUpload) {
+                size = item.file() != null ? item.file().length() : item.contentLength();
+            } else {
+                NbFileMetadata meta = serverMetadata(item);
+                if (meta != null) {
+                    size = meta.getLength();
+                }
+            }
+            mSizes[i] = size;
+            total = (total < 0 || size < 0) ? -1 : total + size;
+        }
+        mTotalSize = total;
+    }
+
+    /**
+     * 実行枠に空きがあれば、待ち行列の先頭から転送を開始する
+     */
+    private void schedule() {
+        List<Integer> starts = new ArrayList<>();
+        synchronized (this) {
+            int max = Math.max(1, mOptions.maxConcurrency());
+            while (mRunning < max && !mPending.isEmpty()) {
+                starts.add(mPending.poll());
+                mRunning++;
+            }
+        }
+        for (final int index : starts) {
+            NbUtil.runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    execute(index);
+                }
+            });
+        }
+    }
+
+    /**
+     * 1 ファイルを転送する。サブスレッド上で呼び出される。
+     */
+    private void execute(int index) {
+        NbFileTransferItem item = mItems.get(index);
+        NbFileMetadata meta = serverMetadata(item);
+
+        if (mAttempts[index] == 0 && mOptions.skipUnchanged() && item.file() != null) {
+            try {
+                if (isUnchanged(index, item, meta)) {
+                    log.fine("execute() skip unchanged: {0}", item.filename());
+                    progress(index, mSizes[index]);
+                    complete(index, NbStatus.OK, null, true, meta);
+                    return;
+                }
+            } catch (IOException e) {
+                log.warning("execute() checksum failed: {0} {1}", item.filename(), e.getMessage());
+            }
+        }
+
+        mAttempts[index]++;
+        if (mUpload) {
+            upload(index, item);
+        } else {
+            download(index, item, meta);
+        }
+    }
+
+    /**
+     * サイズ・チェックサムがサーバ上のファイルと一致するかを判定する。
+     * アップロード時は、記録用にチェックサムを保持する。
+     */
+    private boolean isUnchanged(int index, NbFileTransferItem item, NbFileMetadata meta) throws IOException {
+        File file = item.file();
+        if (mUpload) {
+            mChecksums[index] = checksum(file);
+        }
+        if (meta == null || !file.isFile() || file.length() != meta.getLength()) {
+            return false;
+        }
+        String serverChecksum = checksumOf(meta);
+        if (serverChecksum == null) {
+            return false;
+        }
+        String localChecksum = mUpload ? mChecksums[index] : checksum(file);
+        return serverChecksum.equals(localChecksum);
+    }
+
+    private void upload(final int index, final NbFileTransferItem item) {
+        final String checksum = mChecksums[index];
+        final boolean exists = Boolean.TRUE.equals(mExists[index]);
+
+        NbCallback<NbFileMetadata> callback = new NbCallback<NbFileMetadata>() {
+            @Override
+            public void onSuccess(NbFileMetadata meta) {
+                if (checksum != null && !checksum.equals(checksumOf(meta))) {
+                    saveChecksum(index, meta, checksum);
+                } else {
+                    complete(index, NbStatus.OK, null, false, meta);
+                }
+            }
+
+            @Override
+            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
+                if (statusCode == NbStatus.CONFLICT && mExists[index] == null && item.filedata() == null) {
+                    // 既存ファイルのため、更新アップロードする
+                    mExists[index] = true;
+                    upload(index, item);
+                    return;
+                }
+                failed(index, statusCode, errorInfo);
+            }
+        };
+        NbProgressCallback progressCallback = progressCallback(index);
+
+        if (exists) {
+            NbFileBucket.UpdateFileParam param = (item.file() != null)
+                    ? new NbFileBucket.UpdateFileParam(item.filename(), item.contentType(), item.file().getPath())
+                    : new NbFileBucket.UpdateFileParam(item.filename(), item.contentType(), item.filedata());
+            param.contentLength(item.contentLength()).progressCallback(progressCallback);
+            mBucket.uploadUpdateFile(param, callback);
+        } else {
+            NbFileBucket.NewFileParam param = (item.file() != null)
+                    ? new NbFileBucket.NewFileParam(item.filename(), item.contentType(), item.file().getPath())
+                    : new NbFileBucket.NewFileParam(item.filename(), item.contentType(), item.filedata());
+            param.acl(item.acl()).contentLength(item.contentLength()).progressCallback(progressCallback);
+            if (checksum != null) {
+                param.options(withChecksum(item.options(), checksum));
+            } else {
+                param.options(item.options());
+            }
+            mBucket.uploadNewFile(param, callback);
+        }
+    }
+
+    /**
+     * 更新アップロードしたファイルのメタデータにチェックサムを記録する
+     */
+    private void saveChecksum(final int index, NbFileMetadata meta, String checksum) {
+        meta.setOptions(withChecksum(meta.getOptions(), checksum));
+        meta.save(new NbCallback<NbFileMetadata>() {
+            @Override
+            public void onSuccess(NbFileMetadata saved) {
+                complete(index, NbStatus.OK, null, false, saved);
+            }
+
+            @Override
+            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
+                // ファイル本体は更新済みのため、チェックサムの記録失敗は無視する(次回はスキップされない)
+                log.warning("saveChecksum() failed: status={0}", statusCode);
+                complete(index, NbStatus.OK, null, false, null);
+            }
+        });
+    }
+
+    private void download(final int index, NbFileTransferItem item, final NbFileMetadata meta) {
+        NbFileDownloadOptions base = mOptions.downloadOptions() != null
+                ? mOptions.downloadOptions() : new NbFileDownloadOptions();
+        NbFileDownloadOptions options = new NbFileDownloadOptions()
+                .resumable(base.resumable())
+                .parallelRanges(base.parallelRanges())
+                .minRangeSize(base.minRangeSize())
+                .progressCallback(progressCallback(index));
+
+        mBucket.downloadFile(item.filename(), item.file(), options, new NbCallback<String>() {
+            @Override
+            public void onSuccess(String path) {
+                complete(index, NbStatus.OK, null, false, meta);
+            }
+
+            @Override
+            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
+                failed(index, statusCode, errorInfo);
+            }
+        });
+    }
+
+    /**
+     * 転送失敗時の処理。通信エラー・サーバエラーで再送可能な場合はリトライする。
+     */
+    private void failed(final int index, int statusCode, NbErrorInfo errorInfo) {
+        NbFileTransferItem item = mItems.get(index);
+        final int attempts = mAttempts[index];
+        boolean retry = isRetryable(statusCode)
+                && item.filedata() == null
+                && attempts <= mOptions.maxRetries();
+        if (!retry) {
+            log.severe("transfer failed: {0} status={1}", item.filename(), statusCode);
+            complete(index, statusCode, errorInfo, false, null);
+            return;
+        }
+
+        final long delay = mOptions.retryBackoff() << Math.min(attempts - 1, 10);
+        log.warning("transfer failed, retry after {0}ms: {1} status={2}", delay, item.filename(), statusCode);
+        sRetryTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                NbUtil.runInBackground(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(index);
+                    }
+                });
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * リトライ対象のステータスコードか判定する。
+     * 通信エラー (HTTP クライアントの例外は 500 として通知される)・タイムアウト・
+     * サーバエラー・流量超過の場合に true。ローカルファイルの書き込みエラー (422) 等はリトライしない。
+     */
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == NbStatus.REQUEST_TIMEOUT
+                || statusCode == TOO_MANY_REQUESTS
+                || statusCode >= NbStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    private static ScheduledExecutorService createRetryTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "NbFileBulkTransfer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * 1 ファイルの転送完了時の処理。全ファイル完了時はコールバックに結果を通知する。
+     */
+    private void complete(int index, int statusCode, NbErrorInfo errorInfo, boolean skipped, NbFileMetadata meta) {
+        boolean done;
+        synchronized (this) {
+            mResults[index] = new NbFileTransferResult(mItems.get(index), statusCode, errorInfo,
+                    skipped, mAttempts[index], meta);
+            mRunning--;
+            done = --mRemaining == 0;
+        }
+        if (!done) {
+            schedule();
+            return;
+        }
+
+        final List<NbFileTransferResult> results = Arrays.asList(mResults);
+        log.fine("complete() all transfers done: count={0}", results.size());
+        NbServiceImpl.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onSuccess(results);
+            }
+        });
+    }
+
+    private NbProgressCallback progressCallback(final int index) {
+        if (mOptions.progressCallback() == null) {
+            return null;
+        }
+        return new NbProgressCallback() {
+            @Override
+            public void onProgress(long bytesTransferred, long contentLength) {
+                progress(index, bytesTransferred);
+            }
+        };
+    }
+
+    /**
+     * ファイル毎の転送済みサイズを更新し、合計を通知する
+     */
+    private void progress(int index, long transferred) {
+        NbProgressCallback progressCallback = mOptions.progressCallback();
+        if (progressCallback == null || transferred < 0) {
+            return;
+        }
+        long total;
+        long size;
+        synchronized (this) {
+            mTotalTransferred += transferred - mTransferred[index];
+            mTransferred[index] = transferred;
+            total = mTotalTransferred;
+            size = mTotalSize;
+        }
+        progressCallback.onProgress(total, size);
+    }
+
+    private synchronized NbFileMetadata serverMetadata(NbFileTransferItem item) {
+        return mServerMetadata != null ? mServerMetadata.get(item.filename()) : null;
+    }
+
+    private static String checksumOf(NbFileMetadata meta) {
+        NbJSONObject options = meta.getOptions();
+        if (options == null || !(options.get(NbFileBulkOptions.CHECKSUM_KEY) instanceof String)) {
+            return null;
+        }
+        return options.getString(NbFileBulkOptions.CHECKSUM_KEY);
+    }
+
+    private static NbJSONObject withChecksum(NbJSONObject options, String checksum) {
+        NbJSONObject json = (options != null) ? new NbJSONObject(options) : new NbJSONObject();
+        json.put(NbFileBulkOptions.CHECKSUM_KEY, checksum);
+        return json;
+    }
+
+    /**
+     * ファイルの MD5 を16進文字列で返す
+     */
+    private static String checksum(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+        InputStream is = new FileInputStream(file);
+        try {
+            int len;
+            while ((len = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+        } finally {
+            is.close();
+        }
+        return NbOfflineUtil.bin2hex(digest.digest());
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file.internal;
+
+import com.nec.baas.file.*;
+import com.nec.baas.offline.internal.*;
+import com.nec.baas.util.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * ダウンロードしたファイル本体のディスクキャッシュ。
+ *
+ * <p>ファイル本体を (バケット名, ファイル名, fileETag) 毎にキャッシュディレクトリに保存する。
+ * キャッシュ済みのファイルをダウンロードする際は If-None-Match で再検証し、
+ * 304 Not Modified の場合にキャッシュから読み込む。
+ * メタデータの取得時に cacheDisable が設定されていたファイル、fileETag が変わったファイルは破棄する。</p>
+ *
+ * <p>キャッシュはファイルの合計バイト数で上限管理され、超過時は最も長く参照されていない
+ * ファイルから破棄される。インデックス(一覧と最終参照時刻)は、オフラインモード有効時は
+ * ローカルDBに、無効時はキャッシュディレクトリ内のファイルに格納され、初回使用時に読み込まれる。
+ * 読み込み時にキャッシュディレクトリと突き合わせ、インデックスにないファイル
+ * (インデックス更新前に中断された等) は削除し、ファイルが失われたエントリは破棄する。</p>
+ *
+ * <p>キャッシュディレクトリはテナント・アプリ毎のサブディレクトリ (tenantId_appId) とし、
+ * 同じディレクトリを設定した複数のサービスが互いのファイルを破棄しないようにする。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @see NbFileCacheConfig
+ * @since 7.5.2
+ */
+public class NbFileCache {
+    private static final NbLogger log = NbLogger.getLogger(NbFileCache.class);
+
+    /** 1エントリの最大サイズの、キャッシュ全体サイズに対する比 */
+    private static final int MAX_ENTRY_SIZE_RATIO = 8;
+
+    /** インデックスファイル名 (ローカルDBを使用しない場合) */
+    /*package*/ static final String INDEX_FILE_NAME = "index.json";
+
+    /** インデックスファイル書き出し中の一時ファイル名 */
+    private static final String INDEX_TEMP_FILE_NAME = INDEX_FILE_NAME + ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private final long mMaxEntrySize;
+    private final NbFileCacheIndex mIndex;
+
+    /** エントリ。先頭が最も長く参照されていないもの。 */
+    private final LinkedHashMap<String, NbFileCacheEntity> mEntries = new LinkedHashMap<>();
+    private boolean mLoaded = false;
+    private long mSize = 0;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mBytesSaved = new AtomicLong();
+    private final AtomicLong mEvictionCount = new AtomicLong();
+
+    /**
+     * ファイルキャッシュを生成する。
+     * キャッシュディレクトリ配下の、テナント・アプリ毎のサブディレクトリを使用する。
+     * @param config 設定
+     * @param tenantId テナントID
+     * @param appId アプリID
+     * @param databaseManager インデックスを格納するローカルDB。null の場合はキャッシュディレクトリ内のファイルに格納する。
+     * @return ファイルキャッシュ
+     */
+    public static NbFileCache create(@NonNull NbFileCacheConfig config, @NonNull String tenantId, @NonNull String appId,
+                                     NbDatabaseManager databaseManager) {
+        if (config.directory() == null) {
+            throw new IllegalArgumentException("file cache directory is not set");
+        }
+        File directory = new File(config.directory(), tenantId + "_" + appId);
+        NbFileCacheIndex index = (databaseManager != null)
+                ? new NbFileCacheDatabaseIndex(databaseManager)
+                : new NbFileCacheFileIndex(new File(directory, INDEX_FILE_NAME));
+        return new NbFileCache(directory, config.maxSize(), index);
+    }
+
+    /*package*/ NbFileCache(File directory, long maxSize, NbFileCacheIndex index) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        mMaxEntrySize = maxSize / MAX_ENTRY_SIZE_RATIO;
+        mIndex = index;
+    }
+
+    /**
+     * キャッシュキーを生成する
+     * @param tenantId テナントID
+     * @param bucketName バケット名
+     * @param fileName ファイル名
+     * @return キャッシュキー
+     */
+    /*package*/ static String makeKey(String tenantId, String bucketName, String fileName) {
+        return tenantId + "/" + bucketName + "/" + fileName;
+    }
+
+    /**
+     * インデックスを読み込む (初回のみ)。同期済みであること。
+     */
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            log.warning("cannot create cache directory: {0}", mDirectory);
+        }
+
+        List<NbFileCacheEntity> entities = new ArrayList<>(mIndex.load());
+        Collections.sort(entities, new Comparator<NbFileCacheEntity>() {
+            @Override
+            public int compare(NbFileCacheEntity e1, NbFileCacheEntity e2) {
+                return Long.compare(e1.getLastAccess(), e2.getLastAccess());
+            }
+        });
+        Set<String> names = new HashSet<>();
+        for (NbFileCacheEntity entity : entities) {
+            if (!entity.isCacheDisabled()) {
+                File file = contentFile(entity);
+                if (!file.isFile()) {
+                    log.fine("cache file lost: {0}", entity.getCacheKey());
+                    mIndex.remove(entity.getCacheKey());
+                    continue;
+                }
+                names.add(file.getName());
+                mSize += entity.getFileSize();
+            }
+            mEntries.put(entity.getCacheKey(), entity);
+        }
+        deleteOrphans(names);
+        log.fine("index loaded: entries={0} size={1}", mEntries.size(), mSize);
+        trimToSize();
+    }
+
+    /**
+     * インデックスにないファイルを削除する。同期済みであること。
+     * @param names インデックスにあるファイル名
+     */
+    private void deleteOrphans(Set<String> names) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || names.contains(name)
+                    || name.equals(INDEX_FILE_NAME) || name.equals(INDEX_TEMP_FILE_NAME)) {
+                continue;
+            }
+            log.fine("orphan cache file deleted: {0}", name);
+            file.delete();
+        }
+    }
+
+    /**
+     * キャッシュ済みのファイルの fileETag を取得する (再検証用)
+     * @param key キャッシュキー
+     * @return fileETag。キャッシュされていない場合は null。
+     */
+    /*package*/ synchronized String getCachedETag(String key) {
+        ensureLoaded();
+        NbFileCacheEntity entity = mEntries.get(key);
+        if (entity == null || entity.isCacheDisabled()) {
+            return null;
+        }
+        if (!contentFile(entity).isFile()) {
+            log.fine("cache file lost: {0}", key);
+            removeEntry(entity);
+            return null;
+        }
+        return entity.getFileETag();
+    }
+
+    /**
+     * キャッシュ済みのファイルのサイズを取得する
+     * @param key キャッシュキー
+     * @return サイズ。キャッシュされていない場合は -1。
+     */
+    /*package*/ synchronized long getCachedSize(String key) {
+        NbFileCacheEntity entity = mEntries.get(key);
+        return (entity != null && !entity.isCacheDisabled()) ? entity.getFileSize() : -1;
+    }
+
+    /**
+     * 再検証の結果 (304 Not Modified) キャッシュを使用する。
+     * @param key キャッシュキー
+     * @param fileETag 再検証に使用した fileETag
+     * @return キャッシュしたファイルの内容。キャッシュが破棄されていた場合は null。
+     */
+    /*package*/ BufferedSource openCached(String key, String fileETag) {
+        NbFileCacheEntity entity;
+        synchronized (this) {
+            entity = mEntries.get(key);
+            if (entity == null || entity.isCacheDisabled() || !fileETag.equals(entity.getFileETag())) {
+                return null;
+            }
+            // 最終参照に移動する
+            mEntries.remove(key);
+            mEntries.put(key, entity);
+            entity.setLastAccess(System.currentTimeMillis());
+            mIndex.touch(entity);
+        }
+
+        try {
+            BufferedSource source = Okio.buffer(Okio.source(contentFile(entity)));
+            mHitCount.incrementAndGet();
+            mBytesSaved.addAndGet(entity.getFileSize());
+            return source;
+        } catch (IOException e) {
+            log.warning("openCached() failed: {0}", e.getMessage());
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * サーバから受信したファイルをキャッシュに保存する。
+     *
+     * <p>キャッシュする場合は source を読み切ってクローズし、キャッシュしたファイルの内容を返す。
+     * cacheDisable が設定されている、またはサイズが上限を超える場合は、source をそのまま返す。</p>
+     * @param key キャッシュキー
+     * @param bucketName バケット名
+     * @param fileName ファイル名
+     * @param fileETag fileETag
+     * @param source 受信したファイルの内容
+     * @param size ファイルサイズ
+     * @return ファイルの内容
+     * @throws IOException キャッシュへの保存に失敗した (source は読み込み途中)
+     */
+    /*package*/ BufferedSource store(String key, String bucketName, String fileName, String fileETag,
+                                    BufferedSource source, long size) throws IOException {
+        synchronized (this) {
+            ensureLoaded();
+            NbFileCacheEntity old = mEntries.get(key);
+            if (old != null && old.isCacheDisabled()) {
+                return source;
+            }
+            if (old != null) {
+                removeEntry(old);
+            }
+        }
+        mMissCount.incrementAndGet();
+        if (size < 0 || size > mMaxEntrySize) {
+            return source;
+        }
+
+        NbFileCacheEntity entity = new NbFileCacheEntity();
+        entity.setCacheKey(key);
+        entity.setBucketName(bucketName);
+        entity.setFileName(fileName);
+        entity.setFileETag(fileETag);
+        entity.setFileSize(size);
+
+        File file = contentFile(entity);
+        NbFileUtil.writeToFile(file, source, size);
+        source.close();
+
+        synchronized (this) {
+            entity.setLastAccess(System.currentTimeMillis());
+            NbFileCacheEntity replaced = mEntries.remove(key);
+            if (replaced != null && !replaced.isCacheDisabled()) {
+                mSize -= replaced.getFileSize();
+                if (!contentFile(replaced).equals(file)) {
+                    contentFile(replaced).delete();
+                }
+            }
+            mEntries.put(key, entity);
+            mSize += size;
+            mIndex.save(entity);
+            trimToSize();
+        }
+        log.fine("stored: {0} size={1}", key, size);
+        return Okio.buffer(Okio.source(file));
+    }
+
+    /**
+     * メタデータの取得結果をキャッシュに反映する。
+     * cacheDisable が設定されている場合、fileETag が変わっている場合はキャッシュを破棄する。
+     * @param key キャッシュキー
+     * @param bucketName バケット名
+     * @param fileName ファイル名
+     * @param fileETag fileETag
+     * @param cacheDisabled cacheDisable
+     */
+    /*package*/ synchronized void updateMetadata(String key, String bucketName, String fileName,
+                                                String fileETag, boolean cacheDisabled) {
+        ensureLoaded();
+        NbFileCacheEntity entity = mEntries.get(key);
+        if (cacheDisabled) {
+            if (entity != null && entity.isCacheDisabled()) {
+                return;
+            }
+            if (entity != null) {
+                removeEntry(entity);
+            }
+            // 以降のダウンロードでキャッシュしないよう記録する
+            NbFileCacheEntity marker = new NbFileCacheEntity();
+            marker.setCacheKey(key);
+            marker.setBucketName(bucketName);
+            marker.setFileName(fileName);
+            marker.setFileETag(fileETag);
+            marker.setLastAccess(System.currentTimeMillis());
+            marker.setCacheDisabled(true);
+            mEntries.put(key, marker);
+            mIndex.save(marker);
+        } else if (entity != null) {
+            if (entity.isCacheDisabled() || (fileETag != null && !fileETag.equals(entity.getFileETag()))) {
+                removeEntry(entity);
+            }
+        }
+    }
+
+    /**
+     * キャッシュを破棄する
+     * @param key キャッシュキー
+     */
+    /*package*/ synchronized void remove(String key) {
+        ensureLoaded();
+        NbFileCacheEntity entity = mEntries.get(key);
+        if (entity != null) {
+            removeEntry(entity);
+        }
+    }
+
+    /**
+     * エントリを削除する。同期済みであること。
+     */
+    private void removeEntry(NbFileCacheEntity entity) {
+        mEntries.remove(entity.getCacheKey());
+        if (!entity.isCacheDisabled()) {
+            mSize -= entity.getFileSize();
+            contentFile(entity).delete();
+        }
+        mIndex.remove(entity.getCacheKey());
+    }
+
+    /**
+     * 上限を超えている間、最も長く参照されていないファイルから破棄する。同期済みであること。
+     * cacheDisable の記録は破棄しない。
+     */
+    private void trimToSize() {
+        Iterator<NbFileCacheEntity> it = mEntries.values().iterator();
+        while (mSize > mMaxSize && it.hasNext()) {
+            NbFileCacheEntity eldest = it.next();
+            if (eldest.isCacheDisabled()) {
+                continue;
+            }
+            it.remove();
+            mSize -= eldest.getFileSize();
+            contentFile(eldest).delete();
+            mIndex.remove(eldest.getCacheKey());
+            mEvictionCount.incrementAndGet();
+            log.fine("evicted: {0}", eldest.getCacheKey());
+        }
+    }
+
+    /**
+     * キャッシュしたファイルのパスを取得する。
+     * fileETag 毎に異なるファイルとし、更新中に古い内容を読み込んでいても影響しないようにする。
+     */
+    private File contentFile(NbFileCacheEntity entity) {
+        String name = entity.getCacheKey() + "\n" + entity.getFileETag();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return new File(mDirectory, NbOfflineUtil.bin2hex(digest.digest(name.getBytes(NbConsts.DEFAULT_ENCODING))));
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * キャッシュを全クリアする。テナント・アプリ毎のキャッシュディレクトリ内のファイルはすべて削除される。
+     */
+    public synchronized void clear() {
+        ensureLoaded();
+        mEntries.clear();
+        mSize = 0;
+        mIndex.remove(null);
+
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && !file.getName().equals(INDEX_FILE_NAME)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * キャッシュの最大サイズ(バイト)を返す
+     * @return 最大サイズ
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * キャッシュ中のファイルの合計サイズ(バイト)を返す
+     * @return サイズ
+     */
+    public synchronized long getSize() {
+        ensureLoaded();
+        return mSize;
+    }
+
+    /**
+     * キャッシュヒット (304 Not Modified によりキャッシュから読み込んだ) の数を返す
+     * @return ヒット数
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * キャッシュミス (サーバからファイル本体を受信した) の数を返す
+     * @return ミス数
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * キャッシュヒット率を返す
+     * @return ヒット率 (0.0 - 1.0)。ダウンロードがない場合は 0。
+     */
+    public double getHitRatio() {
+        long hits = mHitCount.get();
+        long requests = hits + mMissCount.get();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * キャッシュヒットにより転送を省略したファイルの合計バイト数を返す
+     * @return バイト数
+     */
+    public long getBytesSaved() {
+        return mBytesSaved.get();
+    }
+
+    /**
+     * 上限超過により破棄したファイルの数を返す
+     * @return ファイル数
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file.internal;
+
+import com.nec.baas.offline.internal.*;
+import com.nec.baas.util.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ローカルDB (fileCache テーブル) に格納するファイルキャッシュのインデックス。
+ * オフラインモード有効時に使用する。
+ */
+/*package*/ class NbFileCacheDatabaseIndex implements NbFileCacheIndex {
+    private static final NbLogger log = NbLogger.getLogger(NbFileCacheDatabaseIndex.class);
+
+    private final NbDatabaseManager mDatabaseManager;
+
+    /*package*/ NbFileCacheDatabaseIndex(NbDatabaseManager databaseManager) {
+        mDatabaseManager = databaseManager;
+    }
+
+    @Override
+    public List<NbFileCacheEntity> load() {
+        try {
+            return mDatabaseManager.readFileCacheList();
+        } catch (NbDatabaseException | NumberFormatException e) {
+            log.warning("load() failed: {0}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void save(NbFileCacheEntity entity) {
+        try {
+            mDatabaseManager.saveFileCache(entity);
+        } catch (NbDatabaseException e) {
+            log.warning("save() failed: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void touch(NbFileCacheEntity entity) {
+        try {
+            mDatabaseManager.updateFileCacheLastAccess(entity.getCacheKey(), entity.getLastAccess());
+        } catch (NbDatabaseException e) {
+            log.warning("touch() failed: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void remove(String cacheKey) {
+        try {
+            mDatabaseManager.deleteFileCache(cacheKey);
+        } catch (NbDatabaseException e) {
+            log.warning("remove() failed: {0}", e.getMessage());
+        }
+    }
+}
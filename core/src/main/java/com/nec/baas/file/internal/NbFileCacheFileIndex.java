@@ -0,0 +1,155 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file.internal;
+
+import com.nec.baas.json.*;
+import com.nec.baas.offline.internal.*;
+import com.nec.baas.util.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * キャッシュディレクトリ内の JSON ファイルに格納するファイルキャッシュのインデックス。
+ * オフラインモード無効時(ローカルDBがない場合)に使用する。
+ *
+ * <p>変更の都度、全エントリを一時ファイルに書き出してリネームする。
+ * 最終参照時刻の更新のみの場合は、{@link #TOUCH_FLUSH_INTERVAL} 毎にまとめて書き出す。</p>
+ */
+/*package*/ class NbFileCacheFileIndex implements NbFileCacheIndex {
+    private static final NbLogger log = NbLogger.getLogger(NbFileCacheFileIndex.class);
+
+    private static final String KEY_ENTRIES = "entries";
+    private static final String KEY_CACHE_KEY = "key";
+    private static final String KEY_BUCKET_NAME = "bucketName";
+    private static final String KEY_FILE_NAME = "fileName";
+    private static final String KEY_FILE_ETAG = "fileETag";
+    private static final String KEY_FILE_SIZE = "fileSize";
+    private static final String KEY_LAST_ACCESS = "lastAccess";
+    private static final String KEY_CACHE_DISABLED = "cacheDisabled";
+
+    /** 最終参照時刻の更新を書き出す間隔(ms) */
+    /*package*/ static final long TOUCH_FLUSH_INTERVAL = 10 * 1000;
+
+    private final File mIndexFile;
+    private final Map<String, NbFileCacheEntity> mEntries = new LinkedHashMap<>();
+    private long mLastFlush = 0;
+
+    /*package*/ NbFileCacheFileIndex(File indexFile) {
+        mIndexFile = indexFile;
+    }
+
+    @Override
+    public List<NbFileCacheEntity> load() {
+        mEntries.clear();
+        if (!mIndexFile.exists()) {
+            return new ArrayList<>();
+        }
+        try {
+            String text;
+            BufferedSource source = Okio.buffer(Okio.source(new FileInputStream(mIndexFile)));
+            try {
+                text = source.readUtf8();
+            } finally {
+                source.close();
+            }
+
+            NbJSONObject json = NbJSONParser.parse(text);
+            if (json == null) {
+                throw new IllegalStateException("bad index file");
+            }
+            for (Object o : json.getJSONArray(KEY_ENTRIES)) {
+                NbJSONObject e = (NbJSONObject) o;
+                NbFileCacheEntity entity = new NbFileCacheEntity();
+                entity.setCacheKey(e.getString(KEY_CACHE_KEY));
+                entity.setBucketName(e.getString(KEY_BUCKET_NAME));
+                entity.setFileName(e.getString(KEY_FILE_NAME));
+                entity.setFileETag(e.getString(KEY_FILE_ETAG));
+                entity.setFileSize(e.getLong(KEY_FILE_SIZE));
+                entity.setLastAccess(e.getLong(KEY_LAST_ACCESS));
+                entity.setCacheDisabled(e.optBoolean(KEY_CACHE_DISABLED, false));
+                mEntries.put(entity.getCacheKey(), entity);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warning("load() discard index: {0}", e.getMessage());
+            mEntries.clear();
+        }
+        return new ArrayList<>(mEntries.values());
+    }
+
+    @Override
+    public void save(NbFileCacheEntity entity) {
+        mEntries.put(entity.getCacheKey(), entity);
+        flush();
+    }
+
+    @Override
+    public void touch(NbFileCacheEntity entity) {
+        if (System.currentTimeMillis() - mLastFlush >= TOUCH_FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    @Override
+    public void remove(String cacheKey) {
+        if (cacheKey == null) {
+            mEntries.clear();
+        } else if (mEntries.remove(cacheKey) == null) {
+            return;
+        }
+        flush();
+    }
+
+    /**
+     * 全エントリを書き出す。書き込み途中で中断しても壊れないよう、一時ファイルからリネームする。
+     */
+    private void flush() {
+        NbJSONArray<NbJSONObject> entries = new NbJSONArray<>();
+        for (NbFileCacheEntity entity : mEntries.values()) {
+            NbJSONObject e = new NbJSONObject();
+            e.put(KEY_CACHE_KEY, entity.getCacheKey());
+            e.put(KEY_BUCKET_NAME, entity.getBucketName());
+            e.put(KEY_FILE_NAME, entity.getFileName());
+            e.put(KEY_FILE_ETAG, entity.getFileETag());
+            e.put(KEY_FILE_SIZE, entity.getFileSize());
+            e.put(KEY_LAST_ACCESS, entity.getLastAccess());
+            e.put(KEY_CACHE_DISABLED, entity.isCacheDisabled());
+            entries.add(e);
+        }
+        NbJSONObject json = new NbJSONObject();
+        json.put(KEY_ENTRIES, entries);
+
+        File temp = new File(mIndexFile.getPath() + ".tmp");
+        try {
+            FileOutputStream fos = new FileOutputStream(temp);
+            try {
+                fos.write(json.toJSONString().getBytes(NbConsts.DEFAULT_ENCODING));
+            } finally {
+                fos.close();
+            }
+            if (!temp.renameTo(mIndexFile)) {
+                mIndexFile.delete();
+                if (!temp.renameTo(mIndexFile)) {
+                    throw new IOException("rename error: " + mIndexFile);
+                }
+            }
+            mLastFlush = System.currentTimeMillis();
+        } catch (IOException e) {
+            log.warning("flush() failed: {0}", e.getMessage());
+            temp.delete();
+        }
+    }
+}
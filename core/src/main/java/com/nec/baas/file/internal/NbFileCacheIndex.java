@@ -0,0 +1,44 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file.internal;
+
+import com.nec.baas.offline.internal.*;
+
+import java.util.List;
+
+/**
+ * ファイルキャッシュのインデックス(キャッシュしたファイルの一覧と最終参照時刻)の永続化。
+ *
+ * <p>インデックスは初回使用時に読み込まれ、キャッシュディレクトリと突き合わせられる。
+ * 各メソッドは {@link NbFileCache} のロックを保持した状態で呼び出される。
+ * 永続化に失敗した場合はログを出力して処理を継続する(キャッシュは最適化のため)。</p>
+ */
+/*package*/ interface NbFileCacheIndex {
+    /**
+     * インデックスを読み込む
+     * @return インデックス情報リスト。存在しない場合は空。
+     */
+    List<NbFileCacheEntity> load();
+
+    /**
+     * インデックス情報を保存する。存在しない場合は追加する。
+     * @param entity インデックス情報
+     */
+    void save(NbFileCacheEntity entity);
+
+    /**
+     * 最終参照時刻の更新を通知する
+     * @param entity インデックス情報
+     */
+    void touch(NbFileCacheEntity entity);
+
+    /**
+     * インデックス情報を削除する
+     * @param cacheKey キャッシュキー。null の場合は全件削除する。
+     */
+    void remove(String cacheKey);
+}
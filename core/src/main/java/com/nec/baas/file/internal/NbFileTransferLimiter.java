@@ -0,0 +1,150 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file.internal;
+
+import com.nec.baas.http.*;
+import com.nec.baas.util.*;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ファイル転送のホスト毎の同時実行数制限。シングルトン。
+ *
+ * <p>{@link #submit} された転送タスクは、ホスト毎の同時実行数が
+ * {@link NbHttpClientConfig#maxTransfersPerHost()} 未満であれば即時に、
+ * 達していればキューに格納され、同じホストの転送の {@link #release} 時に実行される。
+ * 待機中のタスクはスレッドを占有しない。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @since 7.5.2
+ */
+public class NbFileTransferLimiter {
+    private static final NbLogger log = NbLogger.getLogger(NbFileTransferLimiter.class);
+
+    private static final NbFileTransferLimiter sInstance = new NbFileTransferLimiter();
+
+    /**
+     * ホスト毎の転送状態
+     */
+    private static class HostState {
+        int active = 0;
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    }
+
+    private final Map<String, HostState> mHosts = new HashMap<>();
+
+    /**
+     * インスタンスを取得する
+     * @return NbFileTransferLimiter
+     */
+    public static NbFileTransferLimiter getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * 転送タスクを登録する。
+     * 上限に達していない場合は、呼び出しスレッドで即時にタスクを実行する。
+     * 転送の完了時は、必ず {@link #release(String)} を呼び出すこと。
+     * @param host ホスト名
+     * @param task 転送タスク。ブロックしないこと。
+     */
+    public void submit(String host, Runnable task) {
+        int max = maxTransfersPerHost();
+        synchronized (this) {
+            HostState state = state(host);
+            if (max > 0 && state.active >= max) {
+                state.queue.add(task);
+                log.fine("transfer queued: host={0} queued={1}", host, state.queue.size());
+                return;
+            }
+            state.active++;
+        }
+        task.run();
+    }
+
+    /**
+     * 待機せずに転送枠の獲得を試みる。
+     * 獲得できた場合は、転送の完了時に必ず {@link #release(String)} を呼び出すこと。
+     * @param host ホスト名
+     * @return 獲得できた場合は true。上限に達している、あるいは待機中の転送がある場合は false。
+     */
+    public boolean tryAcquire(String host) {
+        int max = maxTransfersPerHost();
+        synchronized (this) {
+            HostState state = state(host);
+            if (max > 0 && (state.active >= max || !state.queue.isEmpty())) {
+                return false;
+            }
+            state.active++;
+            return true;
+        }
+    }
+
+    /**
+     * 転送の完了を通知する。同じホストの待機中の転送があれば実行する。
+     * @param host ホスト名 ({@link #submit} に渡したもの)
+     */
+    public void release(String host) {
+        Runnable next;
+        synchronized (this) {
+            HostState state = mHosts.get(host);
+            if (state == null) {
+                return;
+            }
+            next = state.queue.poll();
+            if (next == null) {
+                state.active--;
+                if (state.active <= 0) {
+                    mHosts.remove(host);
+                }
+                return;
+            }
+            // 実行枠はそのまま次の転送に引き継ぐ
+        }
+        try {
+            next.run();
+        } catch (RuntimeException e) {
+            log.severe("NbFileTransferLimiter: task failed: {0}", e.getMessage());
+        }
+    }
+
+    private HostState state(String host) {
+        HostState state = mHosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            mHosts.put(host, state);
+        }
+        return state;
+    }
+
+    private static int maxTransfersPerHost() {
+        NbHttpClient client = NbHttpClient.getInstance();
+        return client != null ? client.getConfig().maxTransfersPerHost() : 0;
+    }
+
+    /**
+     * 転送中の数を返す
+     * @param host ホスト名
+     * @return 転送数
+     */
+    public synchronized int getActiveCount(String host) {
+        HostState state = mHosts.get(host);
+        return state != null ? state.active : 0;
+    }
+
+    /**
+     * 待機中の転送の数を返す
+     * @param host ホスト名
+     * @return 転送数
+     */
+    public synchronized int getQueuedCount(String host) {
+        HostState state = mHosts.get(host);
+        return state != null ? state.queue.size() : 0;
+    }
+}
@@ -8,23 +8,57 @@ package com.nec.baas.file.internal;
 
 import com.nec.baas.util.*;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.UnknownServiceException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
 
 import okhttp3.Response;
+import okio.BufferedSource;
 
 /**
  * File 関連ユーティリティクラス
  */
 public abstract class NbFileUtil {
     private static final NbLogger log = NbLogger.getLogger(NbFileUtil.class);
-    
+
+    /** ストリームコピー時に一度に書き込むサイズ */
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    /** ストリームコピー用のバッファ。スレッド毎に再利用する。 */
+    private static final ThreadLocal<byte[]> sCopyBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[COPY_CHUNK_SIZE];
+        }
+    };
+
+    /** ファイル書き込み用のダイレクトバッファのサイズ */
+    private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+
+    /** ファイル書き込み用のダイレクトバッファ。スレッド毎に再利用する。 */
+    private static final ThreadLocal<ByteBuffer> sDirectBuffer = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+    };
+
+    /** ダウンロード中の一時ファイルの拡張子 */
+    private static final String TEMP_FILE_SUFFIX = ".download";
+
+    /** 一時ファイル名が衝突した場合の再試行回数 */
+    private static final int TEMP_FILE_RETRY = 10;
+
+    private static final Random sRandom = new Random();
+
     /**
      * InputStreamのデータをFileへ出力する。
      * 作成に失敗した場合はoutputファイルを削除
@@ -63,56 +97,222 @@ public abstract class NbFileUtil {
     }
 
     /**
-     * InputStreamの内容をOutputStreamに書き込む
-     * @param os OutputStream
-     * @param is InputStream
+     * BufferedSource のデータを FileChannel 経由で File へ出力する。
+     *
+     * <p>同一ディレクトリの一時ファイルへ書き込み、完了後に保存先ファイルへリネームする。
+     * 失敗時は一時ファイルを削除するため、保存先に書き込み途中のファイルが残ることはない
+     * (既存の保存先ファイルも変更されない)。期待するサイズが既知の場合は、領域を予約してから書き込む。</p>
+     *
+     * <p>データは okio のバッファからダイレクトバッファへ一度だけコピーされ、
+     * ヒープ上の byte 配列を経由しない。</p>
+     * @param file 保存先ファイル
+     * @param source BufferedSource。クローズはしない。
      * @param expectedSize 期待するファイルサイズ。負の場合はチェックしない。
      * @throws IOException              ローカル
      * @throws UnknownServiceException  読み込み失敗時に返却
      */
-    static public synchronized void writeToStream(OutputStream os, InputStream is, long expectedSize)
+    public static void writeToFile(File file, BufferedSource source, long expectedSize)
             throws IOException, UnknownServiceException {
-        log.fine("writeToStream <start> expectedSize=" + expectedSize);
+        log.fine("writeToFile(source) <start> expectedSize=" + expectedSize);
+
+        File tempFile = createTempFile(file);
+        boolean completed = false;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+            try {
+                if (expectedSize > 0) {
+                    raf.setLength(expectedSize);    //領域を予約
+                }
+                long writeSize = transfer(source, raf.getChannel());
+
+                if ((expectedSize > -1) && (writeSize != expectedSize)) {
+                    log.fine("writeToFile(source) output expected write size error");
+                    throw new UnknownServiceException("expected write size error");
+                }
+                raf.getChannel().force(false);
+            } finally {
+                raf.close();
+            }
+
+            if (!tempFile.renameTo(file)) {
+                // 保存先が存在すると失敗するプラットフォーム向け
+                if (!file.delete() || !tempFile.renameTo(file)) {
+                    throw new IOException("rename error: " + file);
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                tempFile.delete();    //作成できなかった場合は削除
+            }
+        }
+        log.fine("writeToFile(source) <end>");
+    }
+
+    /**
+     * 保存先と同一ディレクトリに一時ファイルを作成する。
+     * File#createTempFile はファイル名が 3 文字未満の場合に使用できないため、名前を生成して作成する。
+     * @param file 保存先ファイル
+     * @return 一時ファイル
+     * @throws IOException 作成失敗
+     */
+    private static File createTempFile(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        for (int i = 0; ; i++) {
+            File tempFile = new File(dir, "." + file.getName() + "." + Long.toHexString(sRandom.nextLong()) + TEMP_FILE_SUFFIX);
+            if (tempFile.createNewFile()) {
+                return tempFile;
+            }
+            if (i >= TEMP_FILE_RETRY) {
+                throw new IOException("cannot create temp file: " + tempFile);
+            }
+        }
+    }
+
+    /**
+     * FileChannel への書き込みの進捗通知
+     */
+    /*package*/ interface TransferListener {
+        /**
+         * データを書き込んだ時に呼び出される
+         * @param size 書き込んだサイズ
+         */
+        void onWritten(long size) throws IOException;
+    }
+
+    /**
+     * BufferedSource の全データを FileChannel に書き込む
+     * @return 書き込みサイズ
+     */
+    private static long transfer(BufferedSource source, FileChannel channel)
+            throws IOException, UnknownServiceException {
+        return transfer(source, channel, 0, -1, null);
+    }
 
-        BufferedOutputStream bos = new BufferedOutputStream(os);
-        byte[] readBuffer = new byte[4096];
+    /**
+     * BufferedSource のデータを FileChannel の指定位置に書き込む。
+     * 複数スレッドから同じ FileChannel の異なる範囲に同時に書き込み可能である。
+     * @param source BufferedSource。クローズはしない。
+     * @param channel 書き込み先
+     * @param position 書き込み開始位置
+     * @param maxSize 書き込む最大サイズ。負の場合は全データを書き込む。
+     * @param listener 進捗通知先 (null 可)
+     * @return 書き込みサイズ
+     * @throws IOException              ローカル
+     * @throws UnknownServiceException  読み込み失敗時に返却
+     */
+    /*package*/ static long transfer(BufferedSource source, FileChannel channel, long position, long maxSize,
+                                     TransferListener listener)
+            throws IOException, UnknownServiceException {
+        ByteBuffer buffer = sDirectBuffer.get();
+        buffer.clear();
+        long remaining = maxSize < 0 ? Long.MAX_VALUE : maxSize;
         long writeSize = 0;
-        int readSize;
 
-        while (true) {
+        while (remaining > 0) {
+            if (buffer.remaining() > remaining) {
+                buffer.limit(buffer.position() + (int) remaining);
+            }
+
+            int readSize;
             try {   //ストリーム読み込み
-                readSize = is.read(readBuffer);
+                readSize = source.read(buffer);
             } catch (IOException ex) {
-                log.fine("writeToStream() read error ex=" + ex);
+                log.fine("transfer() read error ex=" + ex);
 
                 //ダウンロード時の場合はネットワーク障害にあるので、呼び出し元で判別できるように
                 //例外をUnknownServiceExceptionとする。
                 throw new UnknownServiceException("read error");
             }
+            if (readSize > 0) {
+                remaining -= readSize;
+            }
 
-            if (readSize <= 0) {
+            if (readSize < 0 || !buffer.hasRemaining() || remaining == 0) {
+                // バッファが満杯、または全て読み込んだら書き出す
+                buffer.flip();
+                int size = buffer.remaining();
+                try {
+                    while (buffer.hasRemaining()) {
+                        writeSize += channel.write(buffer, position + writeSize);
+                    }
+                } catch (IOException ex) {
+                    log.fine("transfer() write error ex=" + ex);
+                    throw new IOException("write error");
+                }
+                buffer.clear();
+                if (listener != null && size > 0) {
+                    listener.onWritten(size);
+                }
+            }
+            if (readSize < 0) {
                 break;  //全て読み込んだら終了
             }
+        }
+        return writeSize;
+    }
 
-            try {   //ストリーム書き込み
-                bos.write(readBuffer, 0, readSize);
-            } catch (IOException ex) {
-                log.fine("writeToStream() write error ex=" + ex);
-                throw new IOException("write error");
+    /**
+     * InputStreamの内容をOutputStreamに書き込む。
+     * 複数スレッドから同時に呼び出し可能である。出力先ストリームはクローズされる。
+     * @param os OutputStream
+     * @param is InputStream
+     * @param expectedSize 期待するファイルサイズ。負の場合はチェックしない。
+     * @throws IOException              ローカル
+     * @throws UnknownServiceException  読み込み失敗時に返却
+     */
+    public static void writeToStream(OutputStream os, InputStream is, long expectedSize)
+            throws IOException, UnknownServiceException {
+        log.fine("writeToStream <start> expectedSize=" + expectedSize);
+
+        byte[] chunk = sCopyBuffer.get();
+        long writeSize = 0;
+
+        while (true) {
+            // チャンクが満杯になるか終端に達するまで読み込む
+            int chunkSize = 0;
+            int readSize = 0;
+            while (chunkSize < chunk.length) {
+                try {   //ストリーム読み込み
+                    readSize = is.read(chunk, chunkSize, chunk.length - chunkSize);
+                } catch (IOException ex) {
+                    log.fine("writeToStream() read error ex=" + ex);
+
+                    //ダウンロード時の場合はネットワーク障害にあるので、呼び出し元で判別できるように
+                    //例外をUnknownServiceExceptionとする。
+                    throw new UnknownServiceException("read error");
+                }
+                if (readSize < 0) {
+                    break;
+                }
+                chunkSize += readSize;
+            }
+
+            if (chunkSize > 0) {
+                try {   //ストリーム書き込み
+                    os.write(chunk, 0, chunkSize);
+                } catch (IOException ex) {
+                    log.fine("writeToStream() write error ex=" + ex);
+                    throw new IOException("write error");
+                }
+                writeSize += chunkSize;  //書き込みサイズ集計
+            }
+
+            if (readSize < 0) {
+                break;  //全て読み込んだら終了
             }
-            writeSize += readSize;  //書き込みサイズ集計
         }
 
-        //バッファのフラッシュ＆クローズ処理
+        //バッファのフラッシュ
         try {
-            bos.flush();
+            os.flush();
         } catch (IOException ex) {
             log.fine("writeToStream() output flush error ex=" + ex);
             throw ex;
         }
 
         try {
-            bos.close();
+            os.close();
         } catch (IOException ex) {
             log.fine("writeToStream() output close error ex=" + ex);
             throw ex;
@@ -144,7 +344,7 @@ public abstract class NbFileUtil {
      * @param response レスポンス
      * @return InputStream レスポンスから読み込んだストリーム
      */
-    public static synchronized InputStream restoreStreamFromResponse(Response response) {
+    public static InputStream restoreStreamFromResponse(Response response) {
         InputStream is;
         if (response == null) {
             log.fine("restoreStreamFromResponse() error response nothing..");
@@ -153,11 +353,25 @@ public abstract class NbFileUtil {
         return response.body().byteStream();
     }
 
+    /**
+     * レスポンスから BufferedSource を取得する。
+     * サーバからファイルダウンロードのレスポンスを受け取った時に呼び出される。
+     * @param response レスポンス
+     * @return BufferedSource レスポンスボディのソース
+     */
+    public static BufferedSource restoreSourceFromResponse(Response response) {
+        if (response == null || response.body() == null) {
+            log.fine("restoreSourceFromResponse() error response nothing..");
+            return null;
+        }
+        return response.body().source();
+    }
+
     /**
      * レスポンスからコンテンツデータサイズを取得
      * @return X-Contennt-Lengthの値
      */
-    public static synchronized long restoreContentSizeFromResponse(Response response) {
+    public static long restoreContentSizeFromResponse(Response response) {
         long length = -1;
 
         if (response == null) {
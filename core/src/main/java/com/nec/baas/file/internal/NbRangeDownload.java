@@ -0,0 +1,643 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.file.internal;
+
+import com.nec.baas.core.*;
+import com.nec.baas.core.internal.*;
+import com.nec.baas.file.*;
+import com.nec.baas.http.*;
+import com.nec.baas.json.*;
+import com.nec.baas.util.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.UnknownServiceException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * 再開可能・範囲並列のファイルダウンロード。
+ *
+ * <p>受信途中のファイル (保存先 + {@link #PARTIAL_SUFFIX}) の各範囲の受信済み位置を、
+ * ETag・ファイルサイズとともに状態ファイル (保存先 + {@link #STATE_SUFFIX}) に保存する。
+ * 再開時は最初の未完了範囲の受信済み位置から Range / If-Range を付与して要求し、
+ * サーバ上のファイルが更新されていた場合 (200 OK) は先頭からダウンロードし直す。</p>
+ *
+ * <p>最初のリクエストのレスポンスで最初の未完了範囲を受信し、残りの未完了範囲は
+ * 専用のスレッドで並列に要求する。ホスト毎の転送枠 ({@link NbFileTransferLimiter}) または
+ * スレッドに空きがない範囲は、最初の範囲の受信後に呼び出し元のスレッドで順に受信する。
+ * 各範囲のリクエストはサービスの流量制限 ({@link NbRequestLimiter}) に従う。
+ * 各範囲のデータは受信途中のファイルの該当位置に直接書き込む。
+ * 全範囲の受信後、保存先へリネームする。</p>
+ *
+ * <p>1 回のダウンロード毎にインスタンスを作成すること。</p>
+ */
+/*package*/ class NbRangeDownload {
+    private static final NbLogger log = NbLogger.getLogger(NbRangeDownload.class);
+
+    /** 受信途中のファイルの拡張子 */
+    /*package*/ static final String PARTIAL_SUFFIX = ".download";
+
+    /** 状態ファイルの拡張子 */
+    /*package*/ static final String STATE_SUFFIX = ".download.state";
+
+    /** 状態ファイルを保存する間隔(バイト) */
+    private static final long STATE_SAVE_INTERVAL = 16 * 1024 * 1024;
+
+    private static final String HEADER_RANGE = "Range";
+    private static final String HEADER_IF_RANGE = "If-Range";
+    private static final String HEADER_CONTENT_RANGE = "Content-Range";
+
+    private static final int PARTIAL_CONTENT = 206;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
+
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_SIZE = "size";
+    private static final String KEY_RANGES = "ranges";
+    private static final String KEY_START = "start";
+    private static final String KEY_END = "end";
+    private static final String KEY_POS = "pos";
+
+    /** スレッドプールの Keep Alive 時間(秒) */
+    private static final int THREAD_KEEP_ALIVE_TIME = 60;
+
+    /** 残りの範囲を受信するスレッドの最大数 */
+    private static final int MAX_RANGE_THREADS = 16;
+
+    /**
+     * 残りの範囲を受信するスレッドプール。
+     * 範囲の受信完了を待つ呼び出し元が OkHttp のディスパッチャ・バックグラウンド処理用スレッドプールの
+     * スレッドを占有していても受信が滞らないよう、専用のスレッドで実行する。
+     * キューは持たず、スレッドに空きがない場合は呼び出し元のスレッドで受信する。
+     */
+    private static final ExecutorService sRangeExecutor = new ThreadPoolExecutor(
+            0, MAX_RANGE_THREADS, THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "NbRangeDownload");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * 範囲 [start, end) と受信済み位置
+     */
+    private static class Range {
+        final long start;
+        final long end;
+        long pos;
+
+        Range(long start, long end, long pos) {
+            this.start = start;
+            this.end = end;
+            this.pos = pos;
+        }
+
+        boolean isCompleted() {
+            return pos >= end;
+        }
+    }
+
+    private final File mFile;
+    private final File mPartialFile;
+    private final File mStateFile;
+    private final NbFileDownloadOptions mOptions;
+    private final NbRequestLimiter mRequestLimiter;
+
+    private String mETag;
+    private long mSize = -1;
+    private List<Range> mRanges;
+
+    /** 状態ファイル保存後に書き込んだサイズ */
+    private long mUnsaved = 0;
+
+    /** いずれかの範囲の受信に失敗した場合は true */
+    private volatile boolean mFailed = false;
+
+    /**
+     * コンストラクタ。状態ファイルが存在する場合は読み込む。
+     * @param file 保存先ファイル
+     * @param options オプション
+     * @param requestLimiter 範囲のリクエストに適用するサービスの流量制限
+     */
+    /*package*/ NbRangeDownload(File file, NbFileDownloadOptions options, NbRequestLimiter requestLimiter) {
+        mFile = file;
+        mPartialFile = new File(file.getPath() + PARTIAL_SUFFIX);
+        mStateFile = new File(file.getPath() + STATE_SUFFIX);
+        mOptions = options;
+        mRequestLimiter = requestLimiter;
+
+        if (options.resumable()) {
+            loadState();
+        } else {
+            discardState();
+        }
+    }
+
+    /**
+     * リクエストに Range (再開時は If-Range も) を付与する
+     * @param request ファイルダウンロードのリクエスト
+     * @return リクエスト
+     */
+    /*package*/ Request prepareRequest(Request request) {
+        Range first = firstIncomplete();
+        if (first == null) {
+            discardState();
+            return request.newBuilder()
+                    .header(HEADER_RANGE, "bytes=0-")
+                    .removeHeader(HEADER_IF_RANGE)
+                    .build();
+        }
+
+        log.fine("prepareRequest() resume from {0} etag={1}", first.pos, mETag);
+        return request.newBuilder()
+                .header(HEADER_RANGE, "bytes=" + first.pos + "-" + (first.end - 1))
+                .header(HEADER_IF_RANGE, mETag)
+                .build();
+    }
+
+    /**
+     * ダウンロードのレスポンスを受信する。サブスレッド上で呼び出すこと。
+     * 残りの範囲は専用のスレッドで並列に要求し、全範囲の受信完了まで待機する。
+     * @param response 成功時のレスポンス (200 または 206)
+     * @param request {@link #prepareRequest} で作成したリクエスト
+     * @return ステータスコード
+     */
+    /*package*/ int receive(Response response, Request request) {
+        String etag = NbFileUtil.restoreFileETagFromResponse(response);
+        long[] contentRange = parseContentRange(response);
+        boolean partial = response.code() == PARTIAL_CONTENT && contentRange != null;
+
+        long start;
+        long total;
+        if (partial) {
+            start = contentRange[0];
+            total = contentRange[2];
+        } else {
+            // Range 非対応、またはファイルが更新されている
+            start = 0;
+            total = NbFileUtil.restoreContentSizeFromResponse(response);
+            if (total < 0 && response.body() != null) {
+                total = response.body().contentLength();
+            }
+        }
+        log.fine("receive() status={0} start={1} total={2} etag={3}", response.code(), start, total, etag);
+
+        //レスポンスが正しく取得できなかった場合はサーバエラーで終了
+        if (total <= 0 || etag == null) {
+            return NbStatus.INTERNAL_SERVER_ERROR;
+        }
+
+        Range first = firstIncomplete();
+        boolean resume = partial && first != null && etag.equals(mETag) && total == mSize && start == first.pos;
+        if (!resume) {
+            if (mRanges != null) {
+                log.info("receive() cannot resume, restart download: {0}", mFile);
+            }
+            if (start != 0) {
+                response.close();
+                return restart(request);
+            }
+            discardState();
+            mETag = etag;
+            mSize = total;
+            mRanges = plan(total, partial ? mOptions.parallelRanges() : 1);
+        }
+
+        boolean completed = false;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(mPartialFile, "rw");
+            if (!resume) {
+                raf.setLength(total);    //領域を予約
+            }
+            FileChannel channel = raf.getChannel();
+            saveState(channel);
+
+            // 残りの未完了範囲を並列に要求する
+            first = firstIncomplete();
+            List<Range> others = new ArrayList<>();
+            for (Range range : mRanges) {
+                if (range != first && !range.isCompleted()) {
+                    others.add(range);
+                }
+            }
+            CountDownLatch latch = new CountDownLatch(others.size());
+            AtomicReference<IOException> error = new AtomicReference<>();
+            List<Range> deferred = new ArrayList<>();
+            for (Range range : others) {
+                if (!requestRange(request, range, channel, latch, error)) {
+                    deferred.add(range);
+                    latch.countDown();
+                }
+            }
+
+            // 最初の未完了範囲はこのレスポンスから受信する
+            try {
+                receiveRange(response.body().source(), channel, first);
+            } catch (IOException e) {
+                fail(error, e);
+            } finally {
+                // 範囲外の残りのボディは受信しない
+                response.close();
+            }
+
+            // 並列に要求できなかった範囲は、このスレッドで順に受信する
+            for (Range range : deferred) {
+                if (error.get() != null) {
+                    break;
+                }
+                try {
+                    fetchRange(request, range, channel);
+                } catch (IOException e) {
+                    fail(error, e);
+                }
+            }
+
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(error, new InterruptedIOException("interrupted"));
+            }
+            if (error.get() != null) {
+                throw error.get();
+            }
+
+            channel.force(false);
+            raf.close();
+            raf = null;
+
+            if (!mPartialFile.renameTo(mFile)) {
+                // 保存先が存在すると失敗するプラットフォーム向け
+                if (!mFile.delete() || !mPartialFile.renameTo(mFile)) {
+                    throw new IOException("rename error: " + mFile);
+                }
+            }
+            completed = true;
+            mStateFile.delete();
+            log.fine("receive() completed: {0}", mFile);
+            return NbStatus.OK;
+        } catch (UnknownServiceException e) {
+            // 受信中の通信エラー。HTTP クライアントの例外と同様に扱う
+            log.severe("receive() : Error: {0}", e.getMessage());
+            return NbStatus.INTERNAL_SERVER_ERROR;
+        } catch (IOException e) {
+            log.severe("receive() : Error: {0}", e.getMessage());
+            return NbStatus.UNPROCESSABLE_ENTITY_ERROR;
+        } finally {
+            if (!completed) {
+                if (mOptions.resumable()) {
+                    try {
+                        saveState(raf != null ? raf.getChannel() : null);
+                    } catch (IOException e) {
+                        log.warning("receive() save state failed: {0}", e.getMessage());
+                    }
+                }
+            }
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    log.warning(e.getMessage());
+                }
+            }
+            if (!completed && !mOptions.resumable()) {
+                discardState();
+            }
+        }
+    }
+
+    /**
+     * 受信途中のファイルと状態ファイルを破棄する
+     */
+    /*package*/ void discardState() {
+        mStateFile.delete();
+        mPartialFile.delete();
+        mETag = null;
+        mSize = -1;
+        mRanges = null;
+    }
+
+    /**
+     * 再開要求に対して状態と一致しない範囲が返却された場合に、
+     * 受信途中のファイルを破棄して先頭から受信し直す。
+     * @param request 再開要求のリクエスト
+     * @return ステータスコード
+     */
+    private int restart(Request request) {
+        if (request.header(HEADER_IF_RANGE) == null) {
+            // 先頭からの要求に対して先頭以外の範囲が返却された
+            return NbStatus.INTERNAL_SERVER_ERROR;
+        }
+        log.info("receive() unexpected range, restart download: {0}", mFile);
+        discardState();
+        Request fresh = prepareRequest(request);
+
+        Response response;
+        try {
+            response = execute(fresh);
+        } catch (IOException e) {
+            log.severe("restart() : Error: {0}", e.getMessage());
+            return NbStatus.INTERNAL_SERVER_ERROR;
+        }
+        try {
+            if (NbStatus.isNotSuccessful(response.code())) {
+                return response.code();
+            }
+            return receive(response, fresh);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * 残りの範囲を専用のスレッドで要求する。
+     * @return 要求した場合は true。転送枠またはスレッドに空きがない場合は false。
+     */
+    private boolean requestRange(final Request request, final Range range, final FileChannel channel,
+                                 final CountDownLatch latch, final AtomicReference<IOException> error) {
+        final String host = request.url().host();
+        if (!NbFileTransferLimiter.getInstance().tryAcquire(host)) {
+            return false;
+        }
+
+        // 呼び出し元の Canceller を引き継ぎ、範囲の受信もキャンセル可能とする
+        final NbCallCanceller canceller = NbCallCanceller.current();
+        try {
+            // executeRequestAsync はディスパッチャの空きを待つため、呼び出し元がディスパッチャの
+            // スレッドで待機すると受信が完了しない場合がある。専用のスレッドでブロッキング実行する。
+            sRangeExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    NbCallCanceller prev = NbCallCanceller.enter(canceller);
+                    try {
+                        fetchRange(request, range, channel);
+                    } catch (IOException e) {
+                        fail(error, e);
+                    } catch (RuntimeException e) {
+                        fail(error, new IOException(e.getMessage()));
+                    } finally {
+                        NbCallCanceller.exit(prev);
+                        NbFileTransferLimiter.getInstance().release(host);
+                        latch.countDown();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            NbFileTransferLimiter.getInstance().release(host);
+            return false;
+        }
+    }
+
+    /**
+     * 範囲を要求し、受信する
+     */
+    private void fetchRange(Request request, Range range, FileChannel channel) throws IOException {
+        Request rangeRequest = request.newBuilder()
+                .header(HEADER_RANGE, "bytes=" + range.pos + "-" + (range.end - 1))
+                .header(HEADER_IF_RANGE, mETag)
+                .build();
+        log.fine("fetchRange() {0}-{1}", range.pos, range.end - 1);
+
+        Response response = execute(rangeRequest);
+        try {
+            long[] contentRange = parseContentRange(response);
+            if (response.code() != PARTIAL_CONTENT || contentRange == null || contentRange[0] != range.pos) {
+                // ファイルが更新された等
+                throw new UnknownServiceException("unexpected range response: " + response.code());
+            }
+            receiveRange(response.body().source(), channel, range);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * サービスの流量制限に従ってリクエストを実行する。実行枠はレスポンス受信時に解放する。
+     */
+    private Response execute(Request request) throws IOException {
+        mRequestLimiter.acquire(NbRequestPriority.of(request));
+        try {
+            return NbHttpClient.getInstance().executeRequest(request);
+        } finally {
+            mRequestLimiter.release();
+        }
+    }
+
+    private void receiveRange(BufferedSource source, final FileChannel channel, final Range range) throws IOException {
+        NbFileUtil.transfer(source, channel, range.pos, range.end - range.pos, new NbFileUtil.TransferListener() {
+            @Override
+            public void onWritten(long size) throws IOException {
+                if (mFailed) {
+                    throw new IOException("aborted");
+                }
+                long received;
+                synchronized (NbRangeDownload.this) {
+                    range.pos += size;
+                    mUnsaved += size;
+                    if (mOptions.resumable() && mUnsaved >= STATE_SAVE_INTERVAL) {
+                        saveState(channel);
+                    }
+                    received = receivedSize();
+                }
+                NbProgressCallback progressCallback = mOptions.progressCallback();
+                if (progressCallback != null) {
+                    progressCallback.onProgress(received, mSize);
+                }
+            }
+        });
+
+        synchronized (this) {
+            if (!range.isCompleted()) {
+                throw new UnknownServiceException("expected write size error");
+            }
+        }
+    }
+
+    private void fail(AtomicReference<IOException> error, IOException e) {
+        log.warning("range download failed: {0}", e.getMessage());
+        mFailed = true;
+        error.compareAndSet(null, e);
+    }
+
+    /**
+     * 全範囲の受信済みサイズを返す
+     */
+    private synchronized long receivedSize() {
+        long received = 0;
+        for (Range range : mRanges) {
+            received += range.pos - range.start;
+        }
+        return received;
+    }
+
+    private Range firstIncomplete() {
+        if (mRanges == null) {
+            return null;
+        }
+        for (Range range : mRanges) {
+            if (!range.isCompleted()) {
+                return range;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * ファイルを範囲に分割する
+     */
+    private List<Range> plan(long total, int parallel) {
+        long minSize = Math.max(1, mOptions.minRangeSize());
+        int count = (int) Math.max(1, Math.min(parallel, (total + minSize - 1) / minSize));
+        List<Range> ranges = new ArrayList<>(count);
+        long size = total / count;
+        for (int i = 0; i < count; i++) {
+            long start = size * i;
+            long end = (i == count - 1) ? total : start + size;
+            ranges.add(new Range(start, end, start));
+        }
+        log.fine("plan() total={0} ranges={1}", total, count);
+        return ranges;
+    }
+
+    /**
+     * Content-Range ヘッダを解析する
+     * @return [開始位置, 終了位置, 全体サイズ]。ヘッダがない、あるいは解析できない場合は null。
+     */
+    private static long[] parseContentRange(Response response) {
+        String value = response.header(HEADER_CONTENT_RANGE);
+        if (value == null) {
+            return null;
+        }
+        Matcher m = CONTENT_RANGE.matcher(value.trim());
+        if (!m.matches()) {
+            return null;
+        }
+        try {
+            return new long[] { Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), Long.parseLong(m.group(3)) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 状態ファイルを保存する。書き込み済みのデータを先に永続化する。
+     * @param channel 受信途中のファイル (null 可)
+     */
+    private synchronized void saveState(FileChannel channel) throws IOException {
+        if (mRanges == null || !mOptions.resumable()) {
+            return;
+        }
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+        }
+
+        NbJSONObject json = new NbJSONObject();
+        json.put(KEY_ETAG, mETag);
+        json.put(KEY_SIZE, mSize);
+        NbJSONArray<NbJSONObject> ranges = new NbJSONArray<>();
+        for (Range range : mRanges) {
+            NbJSONObject r = new NbJSONObject();
+            r.put(KEY_START, range.start);
+            r.put(KEY_END, range.end);
+            r.put(KEY_POS, range.pos);
+            ranges.add(r);
+        }
+        json.put(KEY_RANGES, ranges);
+
+        // 書き込み途中で中断しても壊れないよう、一時ファイルからリネームする
+        File temp = new File(mStateFile.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(temp);
+        try {
+            fos.write(json.toJSONString().getBytes(NbConsts.DEFAULT_ENCODING));
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!temp.renameTo(mStateFile)) {
+            mStateFile.delete();
+            if (!temp.renameTo(mStateFile)) {
+                throw new IOException("rename error: " + mStateFile);
+            }
+        }
+        mUnsaved = 0;
+    }
+
+    /**
+     * 状態ファイルを読み込む。不正な場合は破棄する。
+     */
+    private void loadState() {
+        if (!mStateFile.exists() || !mPartialFile.exists()) {
+            discardState();
+            return;
+        }
+        try {
+            String text;
+            BufferedSource source = Okio.buffer(Okio.source(new FileInputStream(mStateFile)));
+            try {
+                text = source.readUtf8();
+            } finally {
+                source.close();
+            }
+
+            NbJSONObject json = NbJSONParser.parse(text);
+            if (json == null) {
+                throw new IllegalStateException("bad state file");
+            }
+            String etag = json.getString(KEY_ETAG);
+            long size = json.getLong(KEY_SIZE);
+            List<Range> ranges = new ArrayList<>();
+            for (Object o : json.getJSONArray(KEY_RANGES)) {
+                NbJSONObject r = (NbJSONObject) o;
+                long start = r.getLong(KEY_START);
+                long end = r.getLong(KEY_END);
+                long pos = r.getLong(KEY_POS);
+                if (start < 0 || end > size || pos < start || pos > end) {
+                    throw new IllegalStateException("bad range");
+                }
+                ranges.add(new Range(start, end, pos));
+            }
+            if (etag == null || ranges.isEmpty() || mPartialFile.length() != size) {
+                throw new IllegalStateException("bad state file");
+            }
+
+            mETag = etag;
+            mSize = size;
+            mRanges = ranges;
+            log.fine("loadState() etag={0} size={1} ranges={2}", etag, size, ranges.size());
+        } catch (IOException | RuntimeException e) {
+            log.warning("loadState() discard state: {0}", e.getMessage());
+            discardState();
+        }
+    }
+}
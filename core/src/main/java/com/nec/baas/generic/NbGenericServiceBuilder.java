@@ -17,6 +17,9 @@ import com.nec.baas.http.*;
  */
 public class NbGenericServiceBuilder extends NbServiceBuilder<NbGenericServiceBuilder> {
 
+    private boolean mNonBlockingExecution = false;
+    private boolean mCoalesceRequests = false;
+
     /**
      * コンストラクタ。
      * テナントID/アプリID/アプリキー/EndPoint URI は、
@@ -40,6 +43,37 @@ public class NbGenericServiceBuilder extends NbServiceBuilder<NbGenericServiceBu
         tenantId(tenantId).appId(appId).appKey(appKey);
     }
 
+    /**
+     * REST API をノンブロッキングで実行するかどうかを設定する。デフォルトは false。
+     * <p>
+     * true に設定すると、REST API は OkHttp の非同期ディスパッチャで実行され、
+     * SDK のスレッドプールを応答待ちで占有しなくなる。スレッド数は同時実行数の上限で抑えられ、
+     * 上限を超えたリクエストはスレッドを占有せずにキューで待機する。
+     * 多数の API を同時に呼び出す場合に有効である。
+     * コールバックは OkHttp のディスパッチャのスレッド上で呼び出される。
+     * @param nonBlocking ノンブロッキングで実行する場合は true
+     * @since 7.5.2
+     */
+    public NbGenericServiceBuilder nonBlockingExecution(boolean nonBlocking) {
+        mNonBlockingExecution = nonBlocking;
+        return myself;
+    }
+
+    /**
+     * 同一 GET リクエストの合流を行うかどうかを設定する。デフォルトは false。
+     * <p>
+     * true に設定すると、URL・ヘッダ・セッションが同一の GET リクエストが実行中の場合、
+     * HTTP リクエストを発行せずに実行中のリクエストの結果を共有する。
+     * 複数の画面部品が同じオブジェクトやクエリを同時に取得する場合に有効である。
+     * 合流したリクエストの数は {@link NbRequestCoalescer#getCoalescedCount()} で取得できる。
+     * @param coalesce 合流を行う場合は true
+     * @since 7.5.2
+     */
+    public NbGenericServiceBuilder coalesceRequests(boolean coalesce) {
+        mCoalesceRequests = coalesce;
+        return myself;
+    }
+
     @Override
     protected NbSessionToken createSessionToken() {
         return new NbGenericSessionToken();
@@ -47,19 +81,25 @@ public class NbGenericServiceBuilder extends NbServiceBuilder<NbGenericServiceBu
 
     @Override
     protected NbRestExecutorFactory createRestExecutorFactory() {
-        return new GenericRestExecutorFactory();
+        return new GenericRestExecutorFactory(mNonBlockingExecution, mCoalesceRequests, getRequestLimiter());
     }
 
     private static class GenericRestExecutorFactory implements NbRestExecutorFactory {
         private NbHttpClient mHttpClient;
+        private boolean mNonBlocking;
+        private boolean mCoalesce;
+        private NbRequestLimiter mRequestLimiter;
 
-        public GenericRestExecutorFactory() {
+        public GenericRestExecutorFactory(boolean nonBlocking, boolean coalesce, NbRequestLimiter requestLimiter) {
             mHttpClient = NbHttpClient.getInstance();
+            mNonBlocking = nonBlocking;
+            mCoalesce = coalesce;
+            mRequestLimiter = requestLimiter;
         }
 
         @Override
         public NbRestExecutor create() {
-            return new NbGenericRestExecutor(mHttpClient);
+            return new NbGenericRestExecutor(mHttpClient, mNonBlocking, mCoalesce, mRequestLimiter);
         }
     }
 }
@@ -13,6 +13,8 @@ import com.nec.baas.util.*;
 
 import java.io.IOException;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -21,58 +23,208 @@ import okhttp3.Response;
  * 汎用 REST Executor。
  * 別スレッドで REST API を実行する。
  * スレッドはスレッドプールで管理される。
+ *
+ * <p>ノンブロッキングモードの場合は、OkHttp の非同期ディスパッチャで REST API を実行する。
+ * スレッドプールのスレッドを応答待ちで占有せず、スレッド数はディスパッチャの同時実行数上限で
+ * 抑えられるため、多数のリクエストを同時に実行する場合に適している。
+ * この場合、レスポンスハンドラは OkHttp のディスパッチャのスレッド上で呼び出される。</p>
+ *
+ * <p>合流モードの場合は、実行中の同一 GET リクエストに合流する ({@link NbRequestCoalescer})。</p>
+ *
+ * <p>流量制限 ({@link NbRequestLimiter}) の上限を超えたリクエストは、スレッドを占有せずに待機する。
+ * 実行枠はレスポンス受信時に解放する。</p>
+ *
+ * <p>呼び出しスレッドに {@link NbCallCanceller} が設定されている場合は、リクエスト実行時および
+ * レスポンスハンドラ呼び出し時に引き継ぐ。ただし合流モードの場合は、共有されるリクエストを
+ * キャンセルしないよう、リクエスト実行時には引き継がない。</p>
  */
 public class NbGenericRestExecutor implements NbRestExecutor {
     private static final NbLogger log = NbLogger.getLogger(NbGenericRestExecutor.class);
 
     private NbHttpClient mHttpClient;
+    private boolean mNonBlocking;
+    private boolean mCoalesce;
+    private NbRequestLimiter mRequestLimiter;
     private static long sApiCounter = 0;
 
     /**
      * コンストラクタ
      */
     public NbGenericRestExecutor(NbHttpClient httpClient) {
+        this(httpClient, false);
+    }
+
+    /**
+     * コンストラクタ
+     * @param httpClient HTTPクライアント
+     * @param nonBlocking true の場合、ノンブロッキングモードで実行する
+     * @since 7.5.2
+     */
+    public NbGenericRestExecutor(NbHttpClient httpClient, boolean nonBlocking) {
+        this(httpClient, nonBlocking, false);
+    }
+
+    /**
+     * コンストラクタ
+     * @param httpClient HTTPクライアント
+     * @param nonBlocking true の場合、ノンブロッキングモードで実行する
+     * @param coalesce true の場合、実行中の同一 GET リクエストに合流する
+     * @since 7.5.2
+     */
+    public NbGenericRestExecutor(NbHttpClient httpClient, boolean nonBlocking, boolean coalesce) {
+        this(httpClient, nonBlocking, coalesce, NbRequestLimiter.getInstance());
+    }
+
+    /**
+     * コンストラクタ
+     * @param httpClient HTTPクライアント
+     * @param nonBlocking true の場合、ノンブロッキングモードで実行する
+     * @param coalesce true の場合、実行中の同一 GET リクエストに合流する
+     * @param requestLimiter サービスの流量制限
+     * @since 7.5.2
+     */
+    public NbGenericRestExecutor(NbHttpClient httpClient, boolean nonBlocking, boolean coalesce,
+                                 NbRequestLimiter requestLimiter) {
         mHttpClient = httpClient;
+        mNonBlocking = nonBlocking;
+        mCoalesce = coalesce;
+        mRequestLimiter = requestLimiter;
     }
-    
+
     @Override
     public void executeRequest(final Request request, final NbRestResponseHandler handler) {
+        final NbCallCanceller canceller = NbCallCanceller.current();
+        if (mCoalesce && !NbRequestCoalescer.getInstance().begin(request, handler)) {
+            // 実行中の同一リクエストの完了時に通知される
+            return;
+        }
+        execute(request, handler, canceller);
+    }
+
+    private void execute(final Request request, final NbRestResponseHandler handler, final NbCallCanceller canceller) {
+        mRequestLimiter.submit(NbRequestPriority.of(request), new Runnable() {
+            @Override
+            public void run() {
+                dispatch(request, handler, canceller);
+            }
+        });
+    }
+
+    private void dispatch(final Request request, final NbRestResponseHandler handler, final NbCallCanceller canceller) {
+        if (mNonBlocking) {
+            executeRequestNonBlocking(request, handler, canceller);
+            return;
+        }
+
         NbUtil.runInBackground(new Runnable() {
             @Override
             public void run() {
                 Response response;
+                NbCallCanceller prev = NbCallCanceller.enter(mCoalesce ? null : canceller);
                 try {
-                    response = NbGenericRestExecutor.this.executeRequestSync(request);
+                    response = doExecuteRequestSync(request);
                 } catch (Exception e) {
-                    final String errMsg = "HTTP Execute Error: " + e.toString();
-                    log.severe(errMsg);
-                    if (NbSetting.getOperationMode() == NbOperationMode.DEBUG) {
-                        //e.printStackTrace();
-                    }
-                    response = new Response.Builder()
-                            .request(request)
-                            .protocol(Protocol.HTTP_1_1)
-                            .code(NbStatus.INTERNAL_SERVER_ERROR)
-                            .message(errMsg)
-                            .build();
+                    response = makeErrorResponse(request, e);
+                } finally {
+                    NbCallCanceller.exit(prev);
                 }
+                complete(request, handler, response, canceller);
+            }
+        });
+    }
 
-                try {
-                    NbRestResponseHandlerUtil.handleResponse(response, handler);
+    private void executeRequestNonBlocking(final Request request, final NbRestResponseHandler handler,
+                                           final NbCallCanceller canceller) {
+        sApiCounter++;
+        NbCallCanceller prev = NbCallCanceller.enter(mCoalesce ? null : canceller);
+        try {
+            mHttpClient.executeRequestAsync(request, new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    complete(request, handler, makeErrorResponse(request, e), canceller);
                 }
-                catch (AssertionError e) {
-                    NbJunitErrorNotifier.notify(e);
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    complete(request, handler, response, canceller);
                 }
-                finally {
-                    // TODO: recheck
-                    response.close();
+            });
+        } catch (final Exception e) {
+            // HttpClient 未オープン等。ブロッキングモードと同様、ハンドラは別スレッドで呼び出す。
+            NbUtil.runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    complete(request, handler, makeErrorResponse(request, e), canceller);
                 }
+            });
+        } finally {
+            NbCallCanceller.exit(prev);
+        }
+    }
+
+    private Response makeErrorResponse(Request request, Exception e) {
+        final String errMsg = "HTTP Execute Error: " + e.toString();
+        log.severe(errMsg);
+        if (NbSetting.getOperationMode() == NbOperationMode.DEBUG) {
+            //e.printStackTrace();
+        }
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(NbStatus.INTERNAL_SERVER_ERROR)
+                .message(errMsg)
+                .build();
+    }
+
+    private void complete(Request request, final NbRestResponseHandler handler, Response response,
+                          final NbCallCanceller canceller) {
+        mRequestLimiter.release();
+
+        if (!mCoalesce) {
+            handleResponse(response, handler, canceller);
+            return;
+        }
+        NbRequestCoalescer.getInstance().complete(request, handler, response, new NbRequestCoalescer.Dispatcher() {
+            @Override
+            public void dispatch(Response response, NbRestResponseHandler h) {
+                // 合流したハンドラの Canceller は保持していないため、引き継がない
+                handleResponse(response, h, h == handler ? canceller : null);
+            }
+
+            @Override
+            public void execute(Request request, NbRestResponseHandler handler) {
+                NbGenericRestExecutor.this.execute(request, handler, null);
             }
         });
     }
 
+    private void handleResponse(Response response, NbRestResponseHandler handler, NbCallCanceller canceller) {
+        NbCallCanceller prev = NbCallCanceller.enter(canceller);
+        try {
+            NbRestResponseHandlerUtil.handleResponse(response, handler);
+        }
+        catch (AssertionError e) {
+            NbJunitErrorNotifier.notify(e);
+        }
+        finally {
+            NbCallCanceller.exit(prev);
+            // TODO: recheck
+            response.close();
+        }
+    }
+
     @Override
     public Response executeRequestSync(Request request) throws IOException {
+        NbRequestLimiter limiter = mRequestLimiter;
+        limiter.acquire(NbRequestPriority.of(request));
+        try {
+            return doExecuteRequestSync(request);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    private Response doExecuteRequestSync(Request request) throws IOException {
         sApiCounter++;
         return mHttpClient.executeRequest(request);
     }
@@ -0,0 +1,106 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+
+/**
+ * API 呼び出しに伴って実行される HTTP リクエスト (OkHttp の Call) をキャンセルする。
+ *
+ * <p>スレッドに {@link #enter} で設定しておくと、{@link NbHttpClient} がそのスレッドで
+ * 実行するリクエストの Call を登録する。RestExecutor は API 呼び出し時の Canceller を引き継ぎ、
+ * リクエスト実行時およびレスポンスハンドラの実行中に設定する。このため、
+ * ハンドラから続けて実行されるリクエスト(メタデータ取得後のダウンロード等)も対象となる。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @since 7.5.2
+ */
+public class NbCallCanceller {
+    private static final ThreadLocal<NbCallCanceller> sCurrent = new ThreadLocal<>();
+
+    private final List<Call> mCalls = new ArrayList<>(1);
+    private boolean mCancelled = false;
+
+    /**
+     * 現在のスレッドに設定されている Canceller を返す
+     * @return Canceller。設定されていない場合は null。
+     */
+    public static NbCallCanceller current() {
+        return sCurrent.get();
+    }
+
+    /**
+     * 現在のスレッドに Canceller を設定する
+     * @param canceller Canceller (null 可)
+     * @return 直前に設定されていた Canceller。{@link #exit} に渡すこと。
+     */
+    public static NbCallCanceller enter(NbCallCanceller canceller) {
+        NbCallCanceller prev = sCurrent.get();
+        sCurrent.set(canceller);
+        return prev;
+    }
+
+    /**
+     * 現在のスレッドの Canceller を {@link #enter} 前の状態に戻す
+     * @param prev {@link #enter} の戻り値
+     */
+    public static void exit(NbCallCanceller prev) {
+        if (prev == null) {
+            sCurrent.remove();
+        } else {
+            sCurrent.set(prev);
+        }
+    }
+
+    /**
+     * Call を登録する。キャンセル済みの場合は即時にキャンセルする。
+     * @param call Call
+     */
+    public void attach(Call call) {
+        synchronized (this) {
+            if (!mCancelled) {
+                mCalls.add(call);
+                return;
+            }
+        }
+        call.cancel();
+    }
+
+    /**
+     * Call の登録を解除する
+     * @param call Call
+     */
+    public synchronized void detach(Call call) {
+        mCalls.remove(call);
+    }
+
+    /**
+     * 登録済みの Call をキャンセルする。以降に登録される Call も即時にキャンセルされる。
+     */
+    public void cancel() {
+        List<Call> calls;
+        synchronized (this) {
+            mCancelled = true;
+            calls = new ArrayList<>(mCalls);
+            mCalls.clear();
+        }
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * キャンセル済みか調べる
+     * @return キャンセル済みであれば true
+     */
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+}
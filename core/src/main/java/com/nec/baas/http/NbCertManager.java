@@ -18,12 +18,15 @@ import java.io.*;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.List;
 
 /**
@@ -42,6 +45,9 @@ class NbCertManager {
     @Getter
     /* package */ X509TrustManager mTrustManager;
 
+    /** 証明書設定の識別用データ (クライアント証明書チェイン、信頼するCA証明書) */
+    private final ByteArrayOutputStream mIdentity = new ByteArrayOutputStream();
+
     public NbCertManager() {
     }
 
@@ -67,6 +73,16 @@ class NbCertManager {
             kmf.init(keyStore, keyPass);
 
             mKeyManagers = kmf.getKeyManagers();
+
+            // 秘密鍵は証明書の公開鍵と対になるため、識別には証明書チェインのみを使用する
+            for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements(); ) {
+                Certificate[] chain = keyStore.getCertificateChain(aliases.nextElement());
+                if (chain != null) {
+                    for (Certificate cert : chain) {
+                        mIdentity.write(cert.getEncoded());
+                    }
+                }
+            }
         } catch (IOException | GeneralSecurityException e) {
             // InputStreamはコール元が提供しているためcloseしない
             log.warning("failed to loading client certificate : {0}", e.getMessage());
@@ -106,6 +122,23 @@ class NbCertManager {
         mTrustManager = trustManagerConcat;
     }
 
+    /**
+     * 証明書設定のフィンガープリントを取得する。
+     * 同じクライアント証明書・CA証明書で設定された場合は同じ値となる。
+     *
+     * @return フィンガープリント(SHA-256, 16進文字列)
+     * @throws GeneralSecurityException ダイジェストの計算に失敗
+     * @since 7.5.2
+     */
+    public String getFingerprint() throws GeneralSecurityException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(mIdentity.toByteArray());
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
     /* --------------------------------------------------------------------------- */
 
     /**
@@ -132,6 +165,8 @@ class NbCertManager {
         }
 
         for (byte[] pem : rawPemList) {
+            mIdentity.write(pem);
+
             InputStream certInputStream = null;
             try {
                 certInputStream = new ByteArrayInputStream(pem);
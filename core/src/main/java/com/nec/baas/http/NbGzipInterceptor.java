@@ -0,0 +1,141 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.http;
+
+import com.nec.baas.util.*;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+/**
+ * gzip 圧縮を行う Interceptor。
+ *
+ * <p>リクエスト: Content-Type が JSON/テキストで、ボディサイズが閾値以上のリクエストボディを
+ * gzip 圧縮し、Content-Encoding: gzip を付与する。サイズが既知で
+ * {@link #MAX_BUFFERED_SIZE} 以下のボディはメモリ上で圧縮して Content-Length を設定する
+ * (リトライ時も再圧縮しない)。サイズ不明または大きなボディ(ストリーム)は、
+ * 送信時に逐次圧縮する (Chunked Encoding)。</p>
+ *
+ * <p>レスポンス: 呼び出し元が Accept-Encoding を明示的に指定した場合、OkHttp は
+ * レスポンスを展開しないため、gzip 圧縮されたレスポンスボディを逐次展開する。
+ * Accept-Encoding 未指定の場合は OkHttp が gzip を要求・展開する。</p>
+ */
+/*package*/ class NbGzipInterceptor implements Interceptor {
+    private static final NbLogger log = NbLogger.getLogger(NbGzipInterceptor.class);
+
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    private static final String GZIP = "gzip";
+
+    /** メモリ上で圧縮するボディの最大サイズ */
+    /*package*/ static final long MAX_BUFFERED_SIZE = 1024 * 1024;
+
+    /** リクエストボディを圧縮する閾値(バイト)。0 以下の場合は圧縮しない。 */
+    private final long mThreshold;
+
+    /**
+     * コンストラクタ
+     * @param threshold リクエストボディを圧縮する閾値(バイト)。0 以下の場合は圧縮しない。
+     */
+    /*package*/ NbGzipInterceptor(long threshold) {
+        mThreshold = threshold;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+
+        if (mThreshold > 0 && body != null && request.header(HEADER_CONTENT_ENCODING) == null
+                && isCompressible(body.contentType())) {
+            long length = body.contentLength();
+            if (length < 0 || length >= mThreshold) {
+                RequestBody compressed = (length >= 0 && length <= MAX_BUFFERED_SIZE) ? gzipBuffered(body) : gzipStreaming(body);
+                request = request.newBuilder()
+                        .header(HEADER_CONTENT_ENCODING, GZIP)
+                        .method(request.method(), compressed)
+                        .build();
+            }
+        }
+
+        return decompress(chain.proceed(request));
+    }
+
+    /**
+     * 圧縮対象の Content-Type か調べる。画像・動画等の圧縮済みデータは対象外。
+     */
+    private static boolean isCompressible(MediaType mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+        String type = mediaType.type();
+        String subtype = mediaType.subtype();
+        return type.equals("text")
+                || subtype.equals("json") || subtype.endsWith("+json")
+                || subtype.equals("xml") || subtype.endsWith("+xml")
+                || subtype.equals("javascript");
+    }
+
+    private static RequestBody gzipBuffered(RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(buffer));
+        body.writeTo(gzipSink);
+        gzipSink.close();
+
+        log.fine("request body compressed: {0} -> {1}", body.contentLength(), buffer.size());
+        return RequestBody.create(body.contentType(), buffer.readByteString());
+    }
+
+    private static RequestBody gzipStreaming(final RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+                body.writeTo(gzipSink);
+                gzipSink.close();
+            }
+        };
+    }
+
+    /**
+     * gzip 圧縮されたままのレスポンスボディを逐次展開する。
+     */
+    private static Response decompress(Response response) {
+        ResponseBody body = response.body();
+        if (body == null || !GZIP.equalsIgnoreCase(response.header(HEADER_CONTENT_ENCODING))) {
+            return response;
+        }
+
+        GzipSource source = new GzipSource(body.source());
+        return response.newBuilder()
+                .removeHeader(HEADER_CONTENT_ENCODING)
+                .removeHeader(HEADER_CONTENT_LENGTH)
+                .body(ResponseBody.create(body.contentType(), -1L, Okio.buffer(source)))
+                .build();
+    }
+}
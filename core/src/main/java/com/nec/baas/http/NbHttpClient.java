@@ -6,6 +6,7 @@
 
 package com.nec.baas.http;
 
+import okhttp3.Callback;
 import okhttp3.Request;
 import okhttp3.Response;
 
@@ -41,13 +42,54 @@ public abstract class NbHttpClient {
      */
     public abstract void setProxy(Proxy proxy);
 
+    /**
+     * HttpClient の設定を行う。
+     * HttpClient 作成済みの場合は、新しい設定で作成し直す。
+     *
+     * @param config 設定
+     * @throws IllegalArgumentException 設定が不正
+     * @since 7.5.2
+     */
+    public abstract void setConfig(NbHttpClientConfig config);
+
+    /**
+     * HttpClient の設定を取得する。
+     *
+     * @return 設定
+     * @since 7.5.2
+     */
+    public abstract NbHttpClientConfig getConfig();
+
+    /**
+     * ETag レスポンスキャッシュを取得する。
+     * キャッシュのヒット率等の統計情報の参照に使用する。
+     *
+     * @return レスポンスキャッシュ。
+     * {@link NbHttpClientConfig#responseCacheSize(long)} が設定されていない、
+     * あるいは HttpClient が作成されていない場合は null。
+     * @since 7.5.2
+     */
+    public abstract NbHttpResponseCache getResponseCache();
+
+    /**
+     * リトライ・サーキットブレーカを取得する。
+     * リトライ回数等の統計情報の参照に使用する。
+     *
+     * @return リトライ・サーキットブレーカ。
+     * {@link NbHttpClientConfig#retryPolicy(NbRetryPolicy)} が設定されていない、
+     * あるいは HttpClient が作成されていない場合は null。
+     * @since 7.5.2
+     */
+    public abstract NbHttpResilience getResilience();
+
     /**
      * HttpClient を作成する
      */
     public abstract void open();
 
     /**
-     * HTTP Request を実行する
+     * HTTP Request を実行する。
+     * 呼び出しスレッドに {@link NbCallCanceller} が設定されている場合は、Call を登録する。
      *
      * @param request HTTPリクエスト
      * @return HTTPレスポンス
@@ -56,6 +98,21 @@ public abstract class NbHttpClient {
      */
     public abstract Response executeRequest(Request request) throws IOException;
 
+    /**
+     * HTTP Request を非同期実行する。
+     * <p>
+     * リクエストは OkHttp のディスパッチャで実行され、結果はディスパッチャのスレッド上で
+     * callback に通知される。同時実行数がディスパッチャの上限を超えたリクエストは、
+     * スレッドを占有せずにキューで待機する。
+     * 呼び出しスレッドに {@link NbCallCanceller} が設定されている場合は、Call を登録する。
+     *
+     * @param request HTTPリクエスト
+     * @param callback 結果通知先
+     * @throws IllegalStateException HttpClient が作成されていない(openが呼ばれていない)
+     * @since 7.5.2
+     */
+    public abstract void executeRequestAsync(Request request, Callback callback);
+
     /**
      * HttpClient をクローズする
      */
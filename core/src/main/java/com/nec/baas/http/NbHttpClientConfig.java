@@ -0,0 +1,83 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.http;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import okhttp3.Protocol;
+
+/**
+ * HTTP クライアントの設定。
+ *
+ * <p>未設定の項目は従来の既定値(OkHttp の既定値)となる。</p>
+ * <pre>
+ *     NbHttpClientConfig config = new NbHttpClientConfig()
+ *             .maxRequestsPerHost(32)
+ *             .maxIdleConnections(32);
+ * </pre>
+ * @see com.nec.baas.core.NbServiceBuilder#httpClientConfig(NbHttpClientConfig)
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class NbHttpClientConfig {
+    /** 接続タイムアウト(ms) */
+    private long connectTimeout = 10_000;
+
+    /** 読み込みタイムアウト(ms) */
+    private long readTimeout = 10_000;
+
+    /** 書き込みタイムアウト(ms) */
+    private long writeTimeout = 10_000;
+
+    /** コネクションプールに保持するアイドルコネクションの最大数 */
+    private int maxIdleConnections = 5;
+
+    /** アイドルコネクションの保持時間(ms) */
+    private long keepAliveDuration = 5 * 60 * 1000;
+
+    /** 同時実行リクエストの最大数 */
+    private int maxRequests = 64;
+
+    /** ホスト毎の同時実行リクエストの最大数。超過したリクエストは待機する。 */
+    private int maxRequestsPerHost = 5;
+
+    /**
+     * 使用するプロトコルのリスト。null の場合は OkHttp の既定値 (HTTP/2 over TLS, HTTP/1.1)。
+     * <p>平文の HTTP/2 (h2c) を使用する場合は {@link Protocol#H2_PRIOR_KNOWLEDGE} のみを指定する。
+     */
+    private List<Protocol> protocols;
+
+    /**
+     * ETag レスポンスキャッシュの最大サイズ(バイト)。0 の場合はキャッシュを使用しない。
+     * @see NbHttpResponseCache
+     */
+    private long responseCacheSize = 0;
+
+    /**
+     * リトライおよびサーキットブレーカの設定。null の場合はリトライしない。
+     * @see NbHttpResilience
+     */
+    private NbRetryPolicy retryPolicy;
+
+    /**
+     * リクエストボディを gzip 圧縮するサイズ(バイト)の閾値。0 の場合は圧縮しない。
+     * <p>JSON/テキストのボディのみが対象となる。サーバが Content-Encoding: gzip の
+     * リクエストを受け付ける場合のみ設定すること。
+     */
+    private long requestCompressThreshold = 0;
+
+    /**
+     * ホスト毎のファイルダウンロードの同時実行数の上限。0 の場合は制限しない。
+     * 超過したダウンロードはスレッドを占有せずに待機する。
+     */
+    private int maxTransfersPerHost = 0;
+}
@@ -10,13 +10,12 @@ import com.nec.baas.util.*;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Proxy;
 import java.security.GeneralSecurityException;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
@@ -26,9 +25,18 @@ import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSession;
 
 import lombok.NonNull;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 
 /**
  * NbHttpClient 実装
@@ -38,23 +46,32 @@ import okhttp3.Response;
 public class NbHttpClientImpl extends NbHttpClient {
     private static final NbLogger log = NbLogger.getLogger(NbHttpClientImpl.class);
 
-    /**
-     * 接続タイムアウト(ms)
-     */
-    private static final long CONNECT_TIMEOUT = 10_000;
+    /*package*/ OkHttpClient mHttpClient = null;
 
     /**
-     * 読み込みタイムアウト(ms)
+     * 基底 HttpClient。
+     * ディスパッチャ、コネクションプール、デフォルトの SSL 設定を保持する。
+     * プロキシ・証明書設定の変更時は、本クライアントから派生したクライアントを作成し直すことで、
+     * これらを共有する。
      */
-    private static final long READ_TIMEOUT = 10_000;
+    private OkHttpClient mBaseClient = null;
 
     /**
-     * 書き込みタイムアウト (ms)
+     * SSL 設定のキャッシュ (証明書設定毎)。
+     * 同じ証明書設定では同じ SSLContext を使用し、TLS セッションおよびコネクションを再利用可能とする。
      */
-    private static final long WRITE_TIMEOUT = 10_000;
+    private final NbLruCache<String, SslConfig> mSslConfigCache = new NbLruCache<>(SSL_CONFIG_CACHE_SIZE);
+
+    private static final int SSL_CONFIG_CACHE_SIZE = 4;
+
+    /** ETag レスポンスキャッシュ。未使用時は null。 */
+    private NbHttpResponseCache mResponseCache = null;
+
+    /** リトライ・サーキットブレーカ。未使用時は null。 */
+    private NbHttpResilience mResilience = null;
 
-    /*package*/ OkHttpClient mHttpClient = null;
     private Proxy mProxy;
+    private NbHttpClientConfig mConfig = new NbHttpClientConfig();
 
     /*package*/ NbCertManager mCertManager;
 
@@ -64,6 +81,143 @@ public class NbHttpClientImpl extends NbHttpClient {
 
     @Override
     public Response executeRequest(@NonNull Request request) throws IOException {
+        OkHttpClient client = getOpenedClient();
+        log.fine("REQ : {0} {1}", request.method(), request.url().toString());
+
+        Call call = client.newCall(request);
+        NbCallCanceller canceller = NbCallCanceller.current();
+        if (canceller != null) {
+            canceller.attach(call);
+        }
+        Response response;
+        try {
+            response = call.execute();
+        } catch (IOException | RuntimeException e) {
+            if (canceller != null) {
+                canceller.detach(call);
+            }
+            throw e;
+        }
+        log.fine("RSP : {0} {1}", response.code(), response.message());
+        return detachOnClose(response, call, canceller);
+    }
+
+    @Override
+    public void executeRequestAsync(@NonNull Request request, @NonNull final Callback callback) {
+        OkHttpClient client = getOpenedClient();
+        log.fine("REQ : {0} {1} (async)", request.method(), request.url().toString());
+
+        NbHttpResilience resilience = getResilience();
+        if (resilience != null) {
+            request = NbHttpResilience.tagAsync(request);
+        }
+        enqueue(client, resilience, request, 0, NbCallCanceller.current(), callback);
+    }
+
+    /**
+     * リクエストを非同期実行する。リトライが必要な場合は、バックオフ後にタイマから再度実行する。
+     */
+    private void enqueue(final OkHttpClient client, final NbHttpResilience resilience, final Request request,
+                         final int attempt, final NbCallCanceller canceller, final Callback callback) {
+        Call call = client.newCall(request);
+        if (canceller != null) {
+            canceller.attach(call);
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (canceller != null) {
+                    canceller.detach(call);
+                }
+                if (resilience != null && !call.isCanceled()) {
+                    long delay = resilience.retryDelay(request, attempt, e);
+                    if (delay >= 0) {
+                        retry(client, resilience, request, attempt, canceller, callback, delay);
+                        return;
+                    }
+                }
+                callback.onFailure(call, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                log.fine("RSP : {0} {1}", response.code(), response.message());
+                if (resilience != null) {
+                    long delay = resilience.retryDelay(request, attempt, response);
+                    if (delay >= 0) {
+                        response.close();
+                        if (canceller != null) {
+                            canceller.detach(call);
+                        }
+                        retry(client, resilience, request, attempt, canceller, callback, delay);
+                        return;
+                    }
+                }
+                callback.onResponse(call, detachOnClose(response, call, canceller));
+            }
+        });
+    }
+
+    private void retry(final OkHttpClient client, final NbHttpResilience resilience, final Request request,
+                       final int attempt, final NbCallCanceller canceller, final Callback callback, long delay) {
+        resilience.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // 待機中にキャンセルされた場合は、登録時に即時キャンセルされ onFailure が呼ばれる
+                enqueue(client, resilience, request, attempt + 1, canceller, callback);
+            }
+        }, delay);
+    }
+
+    /**
+     * レスポンスのクローズ時に Call の登録を解除する。
+     * ボディの受信中もキャンセル可能とするため、ヘッダ受信時点では解除しない。
+     * @param response レスポンス
+     * @param call Call
+     * @param canceller Canceller (null 可)
+     * @return レスポンス
+     */
+    private static Response detachOnClose(Response response, final Call call, final NbCallCanceller canceller) {
+        if (canceller == null) {
+            return response;
+        }
+        final ResponseBody body = response.body();
+        if (body == null) {
+            canceller.detach(call);
+            return response;
+        }
+
+        final BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    canceller.detach(call);
+                }
+            }
+        });
+        return response.newBuilder()
+                .body(new ResponseBody() {
+                    @Override
+                    public MediaType contentType() {
+                        return body.contentType();
+                    }
+
+                    @Override
+                    public long contentLength() {
+                        return body.contentLength();
+                    }
+
+                    @Override
+                    public BufferedSource source() {
+                        return source;
+                    }
+                })
+                .build();
+    }
+
+    private OkHttpClient getOpenedClient() {
         OkHttpClient client;
         synchronized (this) {
             client = mHttpClient;
@@ -71,12 +225,7 @@ public class NbHttpClientImpl extends NbHttpClient {
         if (client == null) {
             throw new IllegalStateException("HttpClient is not opened.");
         }
-        log.fine("REQ : {0} {1}", request.method(), request.url().toString());
-
-        Response response = client.newCall(request).execute();
-        log.fine("RSP : {0} {1}", response.code(), response.message());
-
-        return response;
+        return client;
     }
 
     @Override
@@ -88,27 +237,119 @@ public class NbHttpClientImpl extends NbHttpClient {
         mProxy = proxy;
         if (mHttpClient != null) {
             log.info("Proxy config changed, re-open current http client.");
+            reOpenHttpClient();
+        }
+    }
+
+    @Override
+    public synchronized void setConfig(@NonNull NbHttpClientConfig config) {
+        if (config.protocols() != null) {
+            // プロトコルの組み合わせが不正な場合は IllegalArgumentException
+            new OkHttpClient.Builder().protocols(config.protocols());
+        }
+
+        mConfig = config;
+        if (mHttpClient != null) {
+            log.info("Http client config changed, re-open current http client.");
             close();
             open();
         }
     }
 
+    @Override
+    public synchronized NbHttpClientConfig getConfig() {
+        return mConfig;
+    }
+
+    @Override
+    public synchronized NbHttpResponseCache getResponseCache() {
+        return mResponseCache;
+    }
+
+    @Override
+    public synchronized NbHttpResilience getResilience() {
+        return mResilience;
+    }
+
     @Override
     public synchronized void open() {
         if (mHttpClient == null) {
-            OkHttpClient.Builder builder = new OkHttpClient.Builder()
-                    .connectTimeout(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)
-                    .readTimeout(READ_TIMEOUT, TimeUnit.MILLISECONDS)
-                    .writeTimeout(WRITE_TIMEOUT, TimeUnit.MILLISECONDS)
-                    .addInterceptor(NbHttpLoggingInterceptor.getInterceptor())
-                    .addNetworkInterceptor(NbHttpLoggingInterceptor.getNetworkInterceptor());
-
-            builder = setSslSocketFactory(builder);
-            if (mProxy != null) {
-                builder = builder.proxy(mProxy);
+            if (mBaseClient == null) {
+                mBaseClient = createBaseClient();
             }
+            mHttpClient = deriveHttpClient(mBaseClient);
+        }
+    }
 
-            mHttpClient = builder.build();
+    /**
+     * 基底 HttpClient を作成する
+     * @return OkHttpClient
+     */
+    private OkHttpClient createBaseClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(mConfig.maxRequests());
+        dispatcher.setMaxRequestsPerHost(mConfig.maxRequestsPerHost());
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectTimeout(mConfig.connectTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(mConfig.readTimeout(), TimeUnit.MILLISECONDS)
+                .writeTimeout(mConfig.writeTimeout(), TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(mConfig.maxIdleConnections(),
+                        mConfig.keepAliveDuration(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .addInterceptor(NbHttpLoggingInterceptor.getInterceptor())
+                .addInterceptor(new NbGzipInterceptor(mConfig.requestCompressThreshold()));
+
+        if (mConfig.responseCacheSize() > 0) {
+            mResponseCache = new NbHttpResponseCache(mConfig.responseCacheSize());
+            builder = builder.addInterceptor(mResponseCache.getInterceptor());
+        } else {
+            mResponseCache = null;
+        }
+
+        // キャッシュの内側で実行し、条件付きリクエストもリトライの対象とする
+        if (mConfig.retryPolicy() != null) {
+            mResilience = new NbHttpResilience(mConfig.retryPolicy());
+            builder = builder.addInterceptor(mResilience.getInterceptor());
+        } else {
+            mResilience = null;
+        }
+
+        builder = builder.addNetworkInterceptor(NbHttpLoggingInterceptor.getNetworkInterceptor());
+
+        if (mConfig.protocols() != null) {
+            builder = builder.protocols(mConfig.protocols());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * 基底 HttpClient から、現在のプロキシ・証明書設定を適用した HttpClient を作成する。
+     * ディスパッチャ、コネクションプールは基底 HttpClient と共有される。
+     * @param baseClient 基底 HttpClient
+     * @return OkHttpClient
+     */
+    private OkHttpClient deriveHttpClient(OkHttpClient baseClient) {
+        OkHttpClient.Builder builder = baseClient.newBuilder();
+
+        builder = setSslSocketFactory(builder);
+        if (mProxy != null) {
+            builder = builder.proxy(mProxy);
+        }
+        return builder.build();
+    }
+
+    /**
+     * SSL 設定 (SSLSocketFactory と TrustManager の組)
+     */
+    private static class SslConfig {
+        final SSLSocketFactory socketFactory;
+        final X509TrustManager trustManager;
+
+        SslConfig(SSLSocketFactory socketFactory, X509TrustManager trustManager) {
+            this.socketFactory = socketFactory;
+            this.trustManager = trustManager;
         }
     }
 
@@ -140,11 +381,20 @@ public class NbHttpClientImpl extends NbHttpClient {
 
         if (trustManager != null) {
             try {
-                SSLContext sslContext = SSLContext.getInstance("TLS");
-                sslContext.init(keyManagers, new X509TrustManager[]{trustManager}, new SecureRandom());
-
-                builder = builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager);
-            } catch (NoSuchAlgorithmException | KeyManagementException e) {
+                // 証明書設定が同じであれば、SSLContext を再利用する
+                String key = (allowSelfSignedCertificate ? "self-signed:" : "verify:")
+                        + (mCertManager != null ? mCertManager.getFingerprint() : "-");
+                SslConfig sslConfig = mSslConfigCache.get(key);
+                if (sslConfig == null) {
+                    SSLContext sslContext = SSLContext.getInstance("TLS");
+                    sslContext.init(keyManagers, new X509TrustManager[]{trustManager}, new SecureRandom());
+
+                    sslConfig = new SslConfig(sslContext.getSocketFactory(), trustManager);
+                    mSslConfigCache.put(key, sslConfig);
+                }
+
+                builder = builder.sslSocketFactory(sslConfig.socketFactory, sslConfig.trustManager);
+            } catch (GeneralSecurityException e) {
                 log.severe("setSslSocketFactory(): {0}", e.getMessage());
                 throw new RuntimeException("Failed to set ssl socket factory.", e);
             }
@@ -184,10 +434,11 @@ public class NbHttpClientImpl extends NbHttpClient {
 
     @Override
     public synchronized void close() {
-        if (mHttpClient != null) {
-            mHttpClient.dispatcher().executorService().shutdown();
-            mHttpClient = null;
+        if (mBaseClient != null) {
+            mBaseClient.dispatcher().executorService().shutdown();
+            mBaseClient = null;
         }
+        mHttpClient = null;
     }
 
     @Override
@@ -234,11 +485,14 @@ public class NbHttpClientImpl extends NbHttpClient {
     }
 
 
+    /**
+     * 現在のプロキシ・証明書設定で HttpClient を作成し直す。
+     * ディスパッチャ、コネクションプール、TLS セッションは引き継がれる。
+     */
     private void reOpenHttpClient() {
         if (mHttpClient != null) {
             log.info("re-open current http client.");
-            close();
-            open();
+            mHttpClient = deriveHttpClient(mBaseClient);
         }
     }
 
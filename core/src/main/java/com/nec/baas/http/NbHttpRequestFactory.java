@@ -6,11 +6,12 @@
 
 package com.nec.baas.http;
 
+import com.nec.baas.core.*;
 import com.nec.baas.core.internal.*;
 import com.nec.baas.json.*;
 import com.nec.baas.util.*;
 
-import java.io.IOException;
+import java.io.File;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -24,7 +25,7 @@ import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
-import okio.BufferedSink;
+import okio.Source;
 
 /**
  * HTTPリクエストを生成するクラス
@@ -304,28 +305,53 @@ public class NbHttpRequestFactory {
          * @return this
          */
         public Builder body(final InputStream stream, final long length, final String contentType) {
-            final MediaType mediaType = MediaType.parse(contentType);
+            return body(stream, length, contentType, null);
+        }
+
+        /**
+         * Body を InputStream で設定する
+         * @param stream Body
+         * @param length Content Length。不明時は -1 を指定。この場合は Chunked Encoding となる。
+         * @param contentType Content Type
+         * @param progress 送信の進捗コールバック (null 可)
+         * @return this
+         * @since 7.5.2
+         */
+        public Builder body(final InputStream stream, final long length, final String contentType,
+                            final NbProgressCallback progress) {
             if (stream != null) {
-                mRequestBody = new RequestBody() {
-                    @Override
-                    public MediaType contentType() {
-                        return mediaType;
-                    }
-
-                    @Override
-                    public long contentLength() {
-                        return length;
-                    }
-
-                    @Override
-                    public void writeTo(BufferedSink sink) throws IOException {
-                        byte[] buffer = new byte[1024];
-                        int len;
-                        while ((len = stream.read(buffer)) > 0) {
-                            sink.write(buffer, 0, len);
-                        }
-                    }
-                };
+                mRequestBody = NbProgressRequestBody.create(MediaType.parse(contentType), stream, length, progress);
+            }
+            return this;
+        }
+
+        /**
+         * Body を okio の Source で設定する。Source は送信後にクローズされる。
+         * InputStream と同様、再送はできない。
+         * @param source Body
+         * @param length Content Length。不明時は -1 を指定。この場合は Chunked Encoding となる。
+         * @param contentType Content Type
+         * @return this
+         * @since 7.5.2
+         */
+        public Builder body(final Source source, final long length, final String contentType) {
+            if (source != null) {
+                mRequestBody = NbProgressRequestBody.create(MediaType.parse(contentType), source, length, null);
+            }
+            return this;
+        }
+
+        /**
+         * Body をファイルで設定する。Content Length にはファイルサイズが設定される。
+         * @param file Body
+         * @param contentType Content Type
+         * @param progress 送信の進捗コールバック (null 可)
+         * @return this
+         * @since 7.5.2
+         */
+        public Builder body(final File file, final String contentType, final NbProgressCallback progress) {
+            if (file != null) {
+                mRequestBody = NbProgressRequestBody.create(MediaType.parse(contentType), file, progress);
             }
             return this;
         }
@@ -0,0 +1,433 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.http;
+
+import com.nec.baas.util.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * HTTP リクエストのリトライおよびホスト毎のサーキットブレーカ。
+ *
+ * <p>{@link NbRetryPolicy} に従い、リトライ対象のメソッドのリクエストが I/O エラー
+ * またはリトライ対象のステータスコードで失敗した場合に、バックオフ後に再送する。
+ * 同期実行ではリトライ中は呼び出しスレッドをブロックする。非同期実行
+ * ({@link NbHttpClient#executeRequestAsync}) では OkHttp のディスパッチャのスレッドを占有しないよう、
+ * バックオフ後にタイマから再度キューイングする。</p>
+ *
+ * <p>ホスト毎に連続失敗回数を計数し、閾値に達した場合はサーキットを開き、
+ * 一定時間そのホストへのリクエストを送信せずに即時 {@link CircuitOpenException} とする。
+ * 時間経過後は 1 リクエストのみ試行し、成功すればサーキットを閉じる。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @see NbHttpClient#getResilience()
+ * @since 7.5.2
+ */
+public class NbHttpResilience {
+    private static final NbLogger log = NbLogger.getLogger(NbHttpResilience.class);
+
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private static final Random sRandom = new Random();
+
+    private final NbRetryPolicy mPolicy;
+
+    private final Map<String, Circuit> mCircuits = new ConcurrentHashMap<>();
+
+    private final AtomicLong mRetryCount = new AtomicLong();
+    private final AtomicLong mGiveUpCount = new AtomicLong();
+    private final AtomicLong mCircuitOpenCount = new AtomicLong();
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    /** 非同期実行のリトライ用タイマ。初回のリトライ時に作成する。 */
+    private ScheduledExecutorService mTimer = null;
+
+    /**
+     * サーキットが開いているため、リクエストを送信しなかったことを示す例外
+     */
+    public static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 非同期実行のリクエストに付与するタグ
+     */
+    private static final class AsyncAttempt {
+        static final AsyncAttempt INSTANCE = new AsyncAttempt();
+    }
+
+    /**
+     * ホスト毎のサーキットの状態
+     */
+    private static class Circuit {
+        int failures = 0;
+        /** サーキットを開いた時刻。閉じている場合は 0。 */
+        long openedAt = 0;
+        /** 半開状態で試行中のリクエストがある場合は true */
+        boolean probing = false;
+    }
+
+    /**
+     * コンストラクタ
+     * @param policy リトライ設定
+     */
+    public NbHttpResilience(NbRetryPolicy policy) {
+        mPolicy = policy;
+    }
+
+    /**
+     * OkHttp に登録するインターセプタを取得する
+     * @return インターセプタ
+     */
+    /*package*/ Interceptor getInterceptor() {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                return NbHttpResilience.this.intercept(chain);
+            }
+        };
+    }
+
+    private Response intercept(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+
+        if (request.tag(AsyncAttempt.class) != null) {
+            // 非同期実行: ディスパッチャのスレッドで待機しないよう、1 回のみ試行する。
+            // リトライは呼び出し側がタイマで再スケジュールする (#schedule)。
+            return proceed(chain, request, host);
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            Response response;
+            try {
+                response = proceed(chain, request, host);
+            } catch (IOException e) {
+                long delay = chain.call().isCanceled() ? -1 : retryDelay(request, attempt, e);
+                if (delay < 0) {
+                    throw e;
+                }
+                sleep(delay);
+                continue;
+            }
+
+            long delay = retryDelay(request, attempt, response);
+            if (delay < 0) {
+                return response;
+            }
+            response.close();
+            sleep(delay);
+        }
+    }
+
+    /**
+     * リクエストを 1 回実行し、結果をサーキットに記録する
+     */
+    private Response proceed(Interceptor.Chain chain, Request request, String host) throws IOException {
+        boolean probe = acquire(host);
+        try {
+            Response response = chain.proceed(request);
+            if (mPolicy.retryStatusCodes().contains(response.code())) {
+                onFailure(host);
+            } else {
+                onSuccess(host);
+            }
+            return response;
+        } catch (IOException e) {
+            // キャンセルは通信エラーとして扱わない
+            if (!chain.call().isCanceled()) {
+                onFailure(host);
+            }
+            throw e;
+        } finally {
+            if (probe) {
+                // 実行時例外等で結果を記録できなかった場合も、次の試行を可能とする
+                endProbe(host);
+            }
+        }
+    }
+
+    /**
+     * I/O エラー時のリトライ待ち時間を求める。リトライする場合はリトライ回数を計数する。
+     * @param request リクエスト
+     * @param attempt 試行回数 (0 origin)
+     * @param e 例外
+     * @return 待ち時間(ms)。リトライしない場合は -1。
+     */
+    /*package*/ long retryDelay(Request request, int attempt, IOException e) {
+        if (e instanceof CircuitOpenException) {
+            return -1;
+        }
+        boolean retryable = isRetryable(request);
+        if (!retryable || !mPolicy.retryOnIOException() || attempt >= mPolicy.maxRetries()) {
+            if (retryable && attempt > 0) {
+                mGiveUpCount.incrementAndGet();
+            }
+            return -1;
+        }
+        long delay = backoff(attempt);
+        log.warning("request failed ({0}), retrying after {1}ms: {2}", e.getMessage(), delay, request.url());
+        mRetryCount.incrementAndGet();
+        return delay;
+    }
+
+    /**
+     * レスポンス受信時のリトライ待ち時間を求める。リトライする場合はリトライ回数を計数する。
+     * @param request リクエスト
+     * @param attempt 試行回数 (0 origin)
+     * @param response レスポンス
+     * @return 待ち時間(ms)。リトライしない場合は -1。
+     */
+    /*package*/ long retryDelay(Request request, int attempt, Response response) {
+        if (!mPolicy.retryStatusCodes().contains(response.code())) {
+            return -1;
+        }
+        boolean retryable = isRetryable(request);
+        if (!retryable || attempt >= mPolicy.maxRetries()) {
+            if (retryable && attempt > 0) {
+                mGiveUpCount.incrementAndGet();
+            }
+            return -1;
+        }
+
+        long retryAfter = parseRetryAfter(response);
+        if (retryAfter > mPolicy.maxBackoff()) {
+            // 待機時間が長すぎるため、エラーをそのまま返す
+            mGiveUpCount.incrementAndGet();
+            return -1;
+        }
+        long delay = Math.max(backoff(attempt), retryAfter);
+
+        log.warning("request failed (status={0}), retrying after {1}ms: {2}",
+                response.code(), delay, request.url());
+        mRetryCount.incrementAndGet();
+        return delay;
+    }
+
+    private boolean isRetryable(Request request) {
+        return mPolicy.retryMethods().contains(request.method());
+    }
+
+    /**
+     * 非同期実行のリクエストであることを示すタグを付与する。
+     * タグを付与したリクエストはインターセプタ内でリトライせず、
+     * 呼び出し側が {@link #retryDelay} と {@link #schedule} で再実行する。
+     * @param request リクエスト
+     * @return リクエスト
+     */
+    /*package*/ static Request tagAsync(Request request) {
+        return request.newBuilder().tag(AsyncAttempt.class, AsyncAttempt.INSTANCE).build();
+    }
+
+    /**
+     * リトライをタイマで実行する
+     * @param runnable リトライ処理
+     * @param delay 待ち時間(ms)
+     */
+    /*package*/ void schedule(Runnable runnable, long delay) {
+        ScheduledExecutorService timer;
+        synchronized (this) {
+            if (mTimer == null) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "NbHttpResilience");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                executor.setRemoveOnCancelPolicy(true);
+                mTimer = executor;
+            }
+            timer = mTimer;
+        }
+        timer.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * バックオフ時間を算出する (Full Jitter)
+     * @param attempt 試行回数 (0 origin)
+     * @return バックオフ時間(ms)
+     */
+    /*package*/ long backoff(int attempt) {
+        long cap = mPolicy.initialBackoff() << Math.min(attempt, 30);
+        if (cap <= 0 || cap > mPolicy.maxBackoff()) {
+            cap = mPolicy.maxBackoff();
+        }
+        return (long) (sRandom.nextDouble() * (cap + 1));
+    }
+
+    /**
+     * Retry-After ヘッダの値を解析する
+     * @param response レスポンス
+     * @return 待機時間(ms)。ヘッダがない、あるいは解析できない場合は 0。
+     */
+    /*package*/ static long parseRetryAfter(Response response) {
+        String value = response.header(HEADER_RETRY_AFTER);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            // 秒数または HTTP-date
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = response.headers().getDate(HEADER_RETRY_AFTER);
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : 0;
+        }
+    }
+
+    private void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for retry");
+        }
+    }
+
+    private Circuit circuit(String host) {
+        Circuit circuit = mCircuits.get(host);
+        if (circuit == null) {
+            Circuit created = new Circuit();
+            circuit = mCircuits.putIfAbsent(host, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        return circuit;
+    }
+
+    /**
+     * リクエスト送信可否を判定する。サーキットが開いている場合は例外をスローする。
+     * @return 半開状態の試行リクエストとして送信する場合は true
+     */
+    private boolean acquire(String host) throws CircuitOpenException {
+        if (mPolicy.circuitFailureThreshold() <= 0) {
+            return false;
+        }
+        Circuit circuit = circuit(host);
+        synchronized (circuit) {
+            if (circuit.openedAt == 0) {
+                return false;
+            }
+            long elapsed = System.currentTimeMillis() - circuit.openedAt;
+            if (elapsed >= mPolicy.circuitOpenDuration() && !circuit.probing) {
+                // 半開状態: 1 リクエストのみ試行する
+                circuit.probing = true;
+                return true;
+            }
+        }
+        mRejectedCount.incrementAndGet();
+        throw new CircuitOpenException("circuit open: " + host);
+    }
+
+    /**
+     * 半開状態の試行を終了する
+     */
+    private void endProbe(String host) {
+        Circuit circuit = circuit(host);
+        synchronized (circuit) {
+            circuit.probing = false;
+        }
+    }
+
+    private void onSuccess(String host) {
+        if (mPolicy.circuitFailureThreshold() <= 0) {
+            return;
+        }
+        Circuit circuit = circuit(host);
+        synchronized (circuit) {
+            if (circuit.openedAt != 0) {
+                log.info("circuit closed: {0}", host);
+            }
+            circuit.failures = 0;
+            circuit.openedAt = 0;
+            circuit.probing = false;
+        }
+    }
+
+    private void onFailure(String host) {
+        if (mPolicy.circuitFailureThreshold() <= 0) {
+            return;
+        }
+        Circuit circuit = circuit(host);
+        synchronized (circuit) {
+            circuit.failures++;
+            if (circuit.probing || (circuit.openedAt == 0 && circuit.failures >= mPolicy.circuitFailureThreshold())) {
+                log.warning("circuit opened: {0} (failures={1})", host, circuit.failures);
+                circuit.openedAt = System.currentTimeMillis();
+                circuit.probing = false;
+                mCircuitOpenCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * ホストのサーキットが開いているか調べる
+     * @param host ホスト名
+     * @return 開いている(リクエストが即時失敗する)場合は true
+     */
+    public boolean isCircuitOpen(String host) {
+        Circuit circuit = mCircuits.get(host);
+        if (circuit == null) {
+            return false;
+        }
+        synchronized (circuit) {
+            return circuit.openedAt != 0;
+        }
+    }
+
+    /**
+     * リトライ回数の合計を返す
+     * @return リトライ回数
+     */
+    public long getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    /**
+     * リトライ上限に達して失敗したリクエストの数を返す
+     * @return リクエスト数
+     */
+    public long getGiveUpCount() {
+        return mGiveUpCount.get();
+    }
+
+    /**
+     * サーキットを開いた回数を返す
+     * @return 回数
+     */
+    public long getCircuitOpenCount() {
+        return mCircuitOpenCount.get();
+    }
+
+    /**
+     * サーキットが開いていたため、送信せずに失敗させたリクエストの数を返す
+     * @return リクエスト数
+     */
+    public long getRejectedCount() {
+        return mRejectedCount.get();
+    }
+}
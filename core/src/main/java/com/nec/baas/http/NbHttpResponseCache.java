@@ -0,0 +1,262 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.http;
+
+import com.nec.baas.core.*;
+import com.nec.baas.util.*;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * ETag を用いた HTTP レスポンスキャッシュ (メモリ)。
+ *
+ * <p>ETag 付きで返却された GET のレスポンスボディを、リクエスト URL とユーザ
+ * (セッショントークン)をキーとして保持する。同じリクエストの再実行時は
+ * If-None-Match を付与してサーバに問い合わせ、304 Not Modified が返却された場合は
+ * キャッシュしたボディで 200 OK のレスポンスを生成する。</p>
+ *
+ * <p>毎回サーバで再検証を行うため、古いデータを返すことはない。削減されるのは
+ * レスポンスボディの転送量とパース前の受信時間である。</p>
+ *
+ * <p>キャッシュはボディの合計バイト数で上限管理され、超過時は最も長く参照されていない
+ * エントリから破棄される。1 エントリの最大サイズは上限の 1/8 とする。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ * @see NbHttpClientConfig#responseCacheSize(long)
+ * @since 7.5.2
+ */
+public class NbHttpResponseCache {
+    private static final NbLogger log = NbLogger.getLogger(NbHttpResponseCache.class);
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_RANGE = "Range";
+    private static final String HEADER_SESSION_TOKEN = NbHttpRequestFactory.HEADER_SESSION_TOKEN;
+    private static final String HEADER_APP_ID = NbHttpRequestFactory.HEADER_APP_ID;
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /** 1エントリの最大サイズの、キャッシュ全体サイズに対する比 */
+    private static final int MAX_ENTRY_SIZE_RATIO = 8;
+
+    private final long mMaxSize;
+    private final long mMaxEntrySize;
+    private long mSize = 0;
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mBytesSaved = new AtomicLong();
+
+    /**
+     * キャッシュエントリ
+     */
+    private static class Entry {
+        final String etag;
+        final Headers headers;
+        final MediaType contentType;
+        final byte[] body;
+
+        Entry(String etag, Headers headers, MediaType contentType, byte[] body) {
+            this.etag = etag;
+            this.headers = headers;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * コンストラクタ
+     * @param maxSize キャッシュの最大サイズ(バイト)
+     */
+    public NbHttpResponseCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mMaxSize = maxSize;
+        mMaxEntrySize = maxSize / MAX_ENTRY_SIZE_RATIO;
+    }
+
+    /**
+     * OkHttp に登録するインターセプタを取得する
+     * @return インターセプタ
+     */
+    /*package*/ Interceptor getInterceptor() {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                return NbHttpResponseCache.this.intercept(chain);
+            }
+        };
+    }
+
+    private Response intercept(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isCacheable(request)) {
+            return chain.proceed(request);
+        }
+        mRequestCount.incrementAndGet();
+
+        String key = makeKey(request);
+        Entry entry = get(key);
+        if (entry != null) {
+            request = request.newBuilder().header(HEADER_IF_NONE_MATCH, entry.etag).build();
+        }
+
+        Response response = chain.proceed(request);
+
+        if (response.code() == HTTP_NOT_MODIFIED && entry != null) {
+            log.fine("response cache hit: {0}", request.url());
+            mHitCount.incrementAndGet();
+            mBytesSaved.addAndGet(entry.body.length);
+            response.close();
+
+            return response.newBuilder()
+                    .code(NbStatus.OK)
+                    .message("OK")
+                    .headers(entry.headers)
+                    .body(ResponseBody.create(entry.contentType, entry.body))
+                    .build();
+        }
+
+        if (response.isSuccessful() && response.body() != null) {
+            String etag = response.header(HEADER_ETAG);
+            if (etag != null) {
+                store(key, etag, response);
+            } else if (entry != null) {
+                remove(key);
+            }
+        }
+        return response;
+    }
+
+    private boolean isCacheable(Request request) {
+        return request.method().equals("GET")
+                && request.header(HEADER_IF_NONE_MATCH) == null
+                && request.header(HEADER_IF_MODIFIED_SINCE) == null
+                && request.header(HEADER_RANGE) == null;
+    }
+
+    private String makeKey(Request request) {
+        // 同じ URL でもユーザによって ACL の適用結果が異なるため、セッショントークンをキーに含める
+        String token = request.header(HEADER_SESSION_TOKEN);
+        return request.header(HEADER_APP_ID) + "\n" + (token != null ? token : "") + "\n" + request.url();
+    }
+
+    private void store(String key, String etag, Response response) throws IOException {
+        ResponseBody body = response.body();
+        long contentLength = body.contentLength();
+        if (contentLength > mMaxEntrySize) {
+            remove(key);
+            return;
+        }
+
+        // 元のレスポンスボディのストリームは消費しないよう、コピーを取得する
+        byte[] bytes = response.peekBody(mMaxEntrySize + 1).bytes();
+        if (bytes.length > mMaxEntrySize) {
+            remove(key);
+            return;
+        }
+        put(key, new Entry(etag, response.headers(), body.contentType(), bytes));
+    }
+
+    private synchronized Entry get(String key) {
+        return mEntries.get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry old = mEntries.put(key, entry);
+        if (old != null) {
+            mSize -= old.body.length;
+        }
+        mSize += entry.body.length;
+
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            mSize -= eldest.body.length;
+            it.remove();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry old = mEntries.remove(key);
+        if (old != null) {
+            mSize -= old.body.length;
+        }
+    }
+
+    /**
+     * キャッシュを全クリアする
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mSize = 0;
+    }
+
+    /**
+     * キャッシュの最大サイズ(バイト)を返す
+     * @return 最大サイズ
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * キャッシュ中のボディの合計サイズ(バイト)を返す
+     * @return サイズ
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * キャッシュ対象となったリクエスト (GET) の数を返す
+     * @return リクエスト数
+     */
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * キャッシュヒット (304 Not Modified) の数を返す
+     * @return ヒット数
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * キャッシュヒット率を返す
+     * @return ヒット率 (0.0 - 1.0)。リクエストがない場合は 0。
+     */
+    public double getHitRatio() {
+        long requests = mRequestCount.get();
+        return requests == 0 ? 0 : (double) mHitCount.get() / requests;
+    }
+
+    /**
+     * キャッシュヒットにより転送を省略したレスポンスボディの合計バイト数を返す
+     * @return バイト数
+     */
+    public long getBytesSaved() {
+        return mBytesSaved.get();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.http;
+
+import com.nec.baas.core.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * ファイル、InputStream または Source を送信する RequestBody。
+ *
+ * <p>okio の Source からソケットへの書き込みバッファ(セグメント)へ直接読み込み、
+ * 中間の byte 配列を経由しない。進捗コールバックが指定された場合は、
+ * {@link #PROGRESS_INTERVAL} 毎および完了時に通知する。</p>
+ *
+ * <p>ファイルの場合は Content-Length にファイルサイズを設定する。送信の度にファイルを開くため、
+ * リトライ・リダイレクト時の再送が可能である。</p>
+ */
+/*package*/ abstract class NbProgressRequestBody extends RequestBody {
+    /** 一回の読み込みで要求するサイズ */
+    private static final long CHUNK_SIZE = 64 * 1024;
+
+    /** 進捗を通知する間隔(バイト) */
+    /*package*/ static final long PROGRESS_INTERVAL = 256 * 1024;
+
+    private final MediaType mContentType;
+    private final long mContentLength;
+    private final NbProgressCallback mProgress;
+
+    /*package*/ NbProgressRequestBody(MediaType contentType, long contentLength, NbProgressCallback progress) {
+        mContentType = contentType;
+        mContentLength = contentLength;
+        mProgress = progress;
+    }
+
+    /**
+     * ファイルを送信する RequestBody を生成する
+     * @param contentType Content-Type
+     * @param file ファイル
+     * @param progress 進捗コールバック (null 可)
+     * @return RequestBody
+     */
+    /*package*/ static RequestBody create(MediaType contentType, final File file, NbProgressCallback progress) {
+        return new NbProgressRequestBody(contentType, file.length(), progress) {
+            @Override
+            protected Source openSource() throws IOException {
+                return Okio.source(file);
+            }
+        };
+    }
+
+    /**
+     * InputStream を送信する RequestBody を生成する。
+     * InputStream は一度しか読み込めないため、再送はできない。
+     * @param contentType Content-Type
+     * @param stream InputStream。クローズはしない。
+     * @param length Content-Length。不明時は -1 (Chunked Encoding)。
+     * @param progress 進捗コールバック (null 可)
+     * @return RequestBody
+     */
+    /*package*/ static RequestBody create(MediaType contentType, final InputStream stream, long length,
+                                          NbProgressCallback progress) {
+        return new NbProgressRequestBody(contentType, length, progress) {
+            @Override
+            protected Source openSource() {
+                return Okio.source(stream);
+            }
+
+            @Override
+            protected void closeSource(Source source) {
+                // InputStream は呼び出し元でクローズする
+            }
+        };
+    }
+
+    /**
+     * okio の Source を送信する RequestBody を生成する。
+     * Source は一度しか読み込めないため、再送はできない。
+     * @param contentType Content-Type
+     * @param source Source。送信後にクローズする。
+     * @param length Content-Length。不明時は -1 (Chunked Encoding)。
+     * @param progress 進捗コールバック (null 可)
+     * @return RequestBody
+     */
+    /*package*/ static RequestBody create(MediaType contentType, final Source source, long length,
+                                          NbProgressCallback progress) {
+        return new NbProgressRequestBody(contentType, length, progress) {
+            @Override
+            protected Source openSource() {
+                return source;
+            }
+        };
+    }
+
+    /**
+     * 送信するデータの Source を開く
+     * @return Source
+     */
+    protected abstract Source openSource() throws IOException;
+
+    /**
+     * 送信後に Source を閉じる
+     * @param source Source
+     */
+    protected void closeSource(Source source) throws IOException {
+        source.close();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mContentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return mContentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        Source source = openSource();
+        try {
+            long total = 0;
+            long notified = 0;
+            long read;
+            while ((read = source.read(sink.buffer(), CHUNK_SIZE)) != -1) {
+                // 満杯のセグメントのみ書き出す
+                sink.emitCompleteSegments();
+                total += read;
+                if (mProgress != null && total - notified >= PROGRESS_INTERVAL) {
+                    mProgress.onProgress(total, mContentLength);
+                    notified = total;
+                }
+            }
+            sink.flush();
+            if (mProgress != null && total != notified) {
+                mProgress.onProgress(total, mContentLength);
+            }
+        } finally {
+            closeSource(source);
+        }
+    }
+}
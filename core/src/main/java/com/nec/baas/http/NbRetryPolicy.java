@@ -0,0 +1,66 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.http;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * HTTP リクエストのリトライおよびサーキットブレーカの設定。
+ *
+ * <p>リトライ間隔は指数バックオフに Full Jitter を適用したもの
+ * (0 から min(maxBackoff, initialBackoff * 2^n) の間の乱数) とする。
+ * 多数の端末が同時に障害を検出した場合でも、リトライのタイミングが分散される。
+ * サーバが Retry-After を返却した場合は、その値以上待機する。</p>
+ *
+ * <pre>
+ *     NbHttpClientConfig config = new NbHttpClientConfig()
+ *             .retryPolicy(new NbRetryPolicy().maxRetries(3));
+ * </pre>
+ * @see NbHttpResilience
+ * @see NbHttpClientConfig#retryPolicy(NbRetryPolicy)
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class NbRetryPolicy {
+    /** 最大リトライ回数。0 の場合はリトライしない(サーキットブレーカのみ使用する)。 */
+    private int maxRetries = 3;
+
+    /** 初回リトライ時のバックオフ上限(ms) */
+    private long initialBackoff = 500;
+
+    /** バックオフの最大値(ms)。Retry-After がこれを超える場合はリトライしない。 */
+    private long maxBackoff = 30_000;
+
+    /**
+     * リトライ対象とする HTTP メソッド。
+     * リクエストボディがストリームの場合は再送できないため、既定では PUT/POST を含まない。
+     */
+    private Set<String> retryMethods = new HashSet<>(Arrays.asList("GET", "HEAD", "DELETE"));
+
+    /** リトライ対象とするステータスコード */
+    private Set<Integer> retryStatusCodes = new HashSet<>(Arrays.asList(429, 502, 503, 504));
+
+    /** I/O エラー(接続失敗、タイムアウト等)時にリトライする場合は true */
+    private boolean retryOnIOException = true;
+
+    /**
+     * サーキットブレーカを開く(ホストへのリクエストを即時失敗させる)連続失敗回数。
+     * 0 の場合はサーキットブレーカを使用しない。
+     */
+    private int circuitFailureThreshold = 5;
+
+    /** サーキットブレーカを開いている時間(ms)。経過後、1 リクエストのみ試行する。 */
+    private long circuitOpenDuration = 30_000;
+}
@@ -43,6 +43,14 @@ public class NbJSONArray<T> extends ArrayList<T> implements Cloneable {
         super(list);
     }
 
+    /**
+     * このオブジェクトが Immutable かどうかを返す。
+     * @return Immutableであれば true
+     */
+    public boolean isImmutable() {
+        return mIsImmutable;
+    }
+
     /**
      * このオブジェクトを Immutable にする。
      * 以後、このオブジェクトに対する書き込みはエラーとなる。
@@ -129,13 +137,33 @@ public class NbJSONArray<T> extends ArrayList<T> implements Cloneable {
 
     /**
      * deep copy を返す。
+     * <p>本オブジェクトが Immutable な場合、要素の NbJSONObject/NbJSONArray は
+     * Copy-on-write で共有され、実際の複製は書き込み時まで遅延される。</p>
      * @return コピーされた JSONArray
      */
     @Override
     public Object clone() {
+        if (mIsImmutable) {
+            return copyOnWriteOf(this);
+        }
         return deepCopyOf((List<Object>)this);
     }
 
+    /**
+     * Immutable な Array の Mutable コピーを作成する。
+     * 配列自体は shallow copy し、要素の Immutable な NbJSONObject/NbJSONArray は
+     * Copy-on-write で共有する。
+     * @param src コピー元 (Immutable であること)
+     * @return コピーされた JSONArray
+     */
+    /*package*/ static NbJSONArray copyOnWriteOf(List<?> src) {
+        NbJSONArray<Object> dst = new NbJSONArray<>(src.size());
+        for (Object obj : src) {
+            dst.add(NbJSONObject.copyOnWriteValue(obj));
+        }
+        return dst;
+    }
+
     /**
      * Deep Copy を返す。
      * @param src コピー元 List/JSONArray
@@ -11,9 +11,14 @@ import lombok.NonNull;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * JSONオブジェクト。java.util.Map インタフェースをサポートする。
@@ -26,6 +31,13 @@ import java.util.Map;
 public class NbJSONObject extends LinkedHashMap<String,Object> implements Cloneable, Serializable {
     private boolean mIsImmutable = false;
 
+    /**
+     * Copy-on-write 元の Immutable オブジェクト。
+     * null でない間は、本オブジェクト自身は内容を保持せず、読み込みはすべて共有元に委譲する。
+     * 最初の書き込み(またはコンテナ値の取得)時に内容を複製し、null に戻す。
+     */
+    private transient NbJSONObject mCowSource = null;
+
     /**
      * 空の NbJSONObject を作成します。
      */
@@ -50,6 +62,63 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
         super(map);
     }
 
+    /**
+     * Immutable オブジェクトを共有する Copy-on-write なビューを作成する。
+     * @param source 共有元 (Immutable であること)
+     * @return Mutable なビュー
+     */
+    /*package*/ static NbJSONObject copyOnWriteOf(NbJSONObject source) {
+        // HashMap のテーブル確保は遅延されるため、容量指定のみではメモリを消費しない
+        NbJSONObject view = new NbJSONObject(source.size());
+        view.mCowSource = source;
+        return view;
+    }
+
+    /**
+     * Immutable オブジェクト内の値を Mutable なオブジェクトから参照できる形に変換する。
+     * Immutable な NbJSONObject/NbJSONArray は複製せずに Copy-on-write で共有する。
+     * それ以外の Map/List は従来どおり deep copy する。
+     * @param value 値
+     * @return 変換後の値
+     */
+    /*package*/ static Object copyOnWriteValue(Object value) {
+        if (value instanceof NbJSONObject && ((NbJSONObject) value).isImmutable()) {
+            return copyOnWriteOf((NbJSONObject) value);
+        }
+        else if (value instanceof NbJSONArray && ((NbJSONArray) value).isImmutable()) {
+            return NbJSONArray.copyOnWriteOf((NbJSONArray) value);
+        }
+        else if (value instanceof Map) {
+            return deepCopyOf((Map<String, Object>) value);
+        }
+        else if (value instanceof List) {
+            return NbJSONArray.deepCopyOf((List<Object>) value);
+        }
+        return value;
+    }
+
+    /**
+     * Copy-on-write 状態を解除し、共有元の内容を本オブジェクトに複製する。
+     * 複製はトップレベルのみ (shallow) で、ネストしたオブジェクトは Copy-on-write で共有される。
+     */
+    private void materialize() {
+        NbJSONObject source = mCowSource;
+        if (source != null) {
+            mCowSource = null;
+            for (Map.Entry<String,Object> entry : source.entrySet()) {
+                super.put(entry.getKey(), copyOnWriteValue(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * 書き込み前処理。Immutable チェックと Copy-on-write の解除を行う。
+     */
+    private void prepareWrite() {
+        checkMutable();
+        materialize();
+    }
+
     /**
      * このオブジェクトが Immutable かどうかを返す。
      * Immutable の場合、書き込み操作はエラーとなる。
@@ -65,6 +134,14 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
      */
     public synchronized void setImmutable() {
         if (!mIsImmutable) {
+            if (mCowSource != null) {
+                // 共有元は Immutable なので、値をそのまま取り込めばよい
+                NbJSONObject source = mCowSource;
+                mCowSource = null;
+                for (Map.Entry<String,Object> entry : source.entrySet()) {
+                    super.put(entry.getKey(), entry.getValue());
+                }
+            }
             mIsImmutable = true;
 
             for (Map.Entry<String,Object> entry : this.entrySet()) {
@@ -81,7 +158,7 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
     }
 
     private void checkMutable() {
-        if (mIsImmutable) {
+        if (isImmutable()) {
             throw new UnsupportedOperationException("Immutable object can't be modified");
         }
     }
@@ -98,7 +175,7 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
     public Object put(@NonNull String key, Object value) {
         //assert(!(value instanceof NbSyncState)); // TODO: NbSyncState を誤って入れないように
 
-        checkMutable();
+        prepareWrite();
         return super.put(key, toList(value));
     }
 
@@ -166,22 +243,164 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
 
     @Override
     public void putAll(Map<? extends String, ?> map) {
-        checkMutable();
+        prepareWrite();
         super.putAll(map);
     }
 
     @Override
     public Object remove(Object key) {
-        checkMutable();
+        prepareWrite();
         return super.remove(key);
     }
 
+    @Override
+    public boolean remove(Object key, Object value) {
+        prepareWrite();
+        return super.remove(key, value);
+    }
+
     @Override
     public void clear() {
         checkMutable();
+        mCowSource = null;
         super.clear();
     }
 
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        prepareWrite();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        prepareWrite();
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        prepareWrite();
+        return super.replace(key, value);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+        prepareWrite();
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        prepareWrite();
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        prepareWrite();
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        prepareWrite();
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+        prepareWrite();
+        super.replaceAll(function);
+    }
+
+    // --- 読み込み操作: Copy-on-write 中は共有元に委譲する
+
+    @Override
+    public int size() {
+        return mCowSource != null ? mCowSource.size() : super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mCowSource != null ? mCowSource.isEmpty() : super.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return mCowSource != null ? mCowSource.containsKey(key) : super.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return mCowSource != null ? mCowSource.containsValue(value) : super.containsValue(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Copy-on-write 中にコンテナ値(NbJSONObject/NbJSONArray)を取得した場合は、
+     * 呼び出し側で変更される可能性があるため、この時点でトップレベルの複製を行う。
+     */
+    @Override
+    public Object get(Object key) {
+        if (mCowSource != null) {
+            Object value = mCowSource.get(key);
+            if (!(value instanceof Map || value instanceof List)) {
+                return value;
+            }
+            materialize();
+        }
+        return super.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        return containsKey(key) ? get(key) : defaultValue;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        materialize();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        materialize();
+        return super.entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        materialize();
+        super.forEach(action);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return mCowSource != null ? mCowSource.equals(o) : super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return mCowSource != null ? mCowSource.hashCode() : super.hashCode();
+    }
+
+    /**
+     * シリアライズ前に Copy-on-write 状態を解除する。
+     * @return this
+     */
+    protected Object writeReplace() {
+        materialize();
+        return this;
+    }
+
     /**
      * Immutable インスタンスを返す。
      * 本オブジェクトが Immutable な場合、コピーせずに this を返す。
@@ -189,8 +408,11 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
      * @return Immutableコピー。
      */
     public NbJSONObject getImmutableInstance() {
-        if (mIsImmutable) {
+        if (isImmutable()) {
             return this;
+        } else if (mCowSource != null) {
+            // 未変更の Copy-on-write ビューなので、共有元をそのまま返せる
+            return mCowSource;
         } else {
             NbJSONObject copy = (NbJSONObject)clone();
             copy.setImmutable();
@@ -201,12 +423,13 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
     /**
      * Mutable インスタンスを返す。
      * 本インスタンスが Mutable な場合、コピーせずに this を返す。
-     * Immutable な場合は、コピーを作って返す。
+     * Immutable な場合は、本インスタンスを共有する Copy-on-write なコピーを返す。
+     * 内容の複製は書き込み時まで(ネストしたオブジェクトは、そのオブジェクトへの書き込み時まで)遅延される。
      * @return Mutableインスタンス
      */
     public NbJSONObject getMutableInstance() {
-        if (mIsImmutable) {
-            return (NbJSONObject)clone();
+        if (isImmutable()) {
+            return copyOnWriteOf(this);
         } else {
             return this;
         }
@@ -214,10 +437,17 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
 
     /**
      * deep copy を返す。コピーは Immutable ではない。
+     * <p>本オブジェクトが Immutable な場合(または未変更の Copy-on-write コピーの場合)は、
+     * 実際の複製は書き込み時まで遅延される。</p>
      * @return コピーされた NbJSONObject
      */
     @Override
     public Object clone() {
+        if (isImmutable()) {
+            return copyOnWriteOf(this);
+        } else if (mCowSource != null) {
+            return copyOnWriteOf(mCowSource);
+        }
         return deepCopyOf(this);
     }
 
@@ -252,6 +482,9 @@ public class NbJSONObject extends LinkedHashMap<String,Object> implements Clonea
      * @return JSON文字列
      */
     public String toJSONString() {
+        if (mCowSource != null) {
+            return mCowSource.toJSONString();
+        }
         return NbJSONGenerator.jsonToString(this);
     }
 
@@ -11,6 +11,7 @@ import com.nec.baas.json.internal.*;
 import com.nec.baas.util.*;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
  * JSONパーサ。
@@ -21,6 +22,8 @@ import java.io.IOException;
 public class NbJSONParser {
     private static final NbLogger log = NbLogger.getLogger(NbJSONParser.class);
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     /**
      * JSON キャッシュ有効化フラグ
      */
@@ -81,6 +84,30 @@ public class NbJSONParser {
         return NbJSONParserJackson.parseWithException(jsonString);
     }
 
+    /**
+     * JSON の UTF-8 バイト列(JSON Object)を遅延パースする。
+     *
+     * <p>
+     *     パース時にはトップレベルフィールドの位置のインデックスのみを作成し、
+     *     各フィールドの値は初回アクセス時にパースされる。
+     *     一部のフィールドのみを参照する場合に、パースのコストとメモリ使用量を削減できる。
+     * </p>
+     * <p>
+     *     返却される NbJSONObject は不変であり、変更操作を行うと {@link UnsupportedOperationException} がスローされる。
+     * </p>
+     * @param json JSON の UTF-8 バイト列。返却されるオブジェクトが参照するため、以後変更しないこと。
+     * @return JSONオブジェクト。パース失敗時は null。
+     * @since 7.5.2
+     */
+    public static NbJSONObject parseLazy(byte[] json) {
+        try {
+            return NbJSONParserJackson.parseLazyWithException(json);
+        } catch (Exception e) {
+            log.warning("NbJSONObject.parseLazy: {0}", e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * JSON文字列を NbJSONObject に変換する (キャッシュ付き)
      *
@@ -92,22 +119,41 @@ public class NbJSONParser {
      * <p>
      *     mutable が false の場合、返却される NbJSONObject は不変であり、
      *     変更操作を行うと {@link UnsupportedOperationException} がスローされる。
-     *     mutable が true の場合は、キャッシュの deep コピーが返却される。
+     *     mutable が true の場合は、キャッシュを共有する Copy-on-write なコピーが返却される
+     *     (内容の複製は書き込み時まで遅延される)。
      * </p>
      *
      * @param jsonText JSON文字列
      * @param mutable true を指定すると Mutable な NbJSONObject が返る(コピー発生する)。false の場合は Immultable な NbJSONObject が返る。
      * @return JSON Map。パースエラー時は null。
      */
-    public static synchronized NbJSONObject parseWithCache(String jsonText, boolean mutable) {
+    public static NbJSONObject parseWithCache(String jsonText, boolean mutable) {
+        return parseWithCache(jsonText, mutable, false);
+    }
+
+    /**
+     * JSON文字列を NbJSONObject に変換する (キャッシュ付き)
+     *
+     * <p>
+     *     lazy が true の場合、キャッシュにない JSON 文字列は遅延パースされる ({@link #parseLazy(byte[])} 参照)。
+     *     それ以外は {@link #parseWithCache(String, boolean)} と同じ。
+     * </p>
+     *
+     * @param jsonText JSON文字列
+     * @param mutable true を指定すると Mutable な NbJSONObject が返る。false の場合は Immultable な NbJSONObject が返る。
+     * @param lazy true を指定すると遅延パースを行う
+     * @return JSON Map。パースエラー時は null。
+     * @since 7.5.2
+     */
+    public static synchronized NbJSONObject parseWithCache(String jsonText, boolean mutable, boolean lazy) {
         if (!ENABLE_JSON_CACHE) {
-            return NbJSONParser.parse(jsonText);
+            return lazy ? NbJSONParser.parseLazy(jsonText.getBytes(UTF8)) : NbJSONParser.parse(jsonText);
         }
 
         NbJSONObject json = sJsonCache.get(jsonText);
         if (json == null) {
             // キャッシュなし。パース実行。
-            json = NbJSONParser.parse(jsonText);
+            json = lazy ? NbJSONParser.parseLazy(jsonText.getBytes(UTF8)) : NbJSONParser.parse(jsonText);
             if (json == null) {
                 // パースエラー
                 return null;
@@ -117,6 +163,6 @@ public class NbJSONParser {
             json.setImmutable();
             sJsonCache.put(jsonText, json);
         }
-        return mutable ? (NbJSONObject)json.clone() : json;
+        return mutable ? json.getMutableInstance() : json;
     }
 }
@@ -13,15 +13,52 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.nec.baas.json.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * JSONパーサ (Jackson Streaming API 使用)。
  *
+ * <p>フィールド名は JsonFactory のシンボルテーブルで正規化(canonicalize)され、
+ * 全ドキュメントで同一の String インスタンスが共有される。
+ * また、オブジェクト・配列は要素数確定後に必要最小限の容量で確保する。</p>
+ *
  * <p>本クラスのインスタンスはスレッドセーフである。</p>
  */
 public class NbJSONParserJackson {
     // streaming
-    private static final JsonFactory sJsonFactory = new JsonFactory();
+    // フィールド名 ("_id", "updatedAt", "ACL" 等) をドキュメント間で共有するため、
+    // 正規化・intern を明示的に有効にしておく (いずれも Jackson のデフォルト値)
+    private static final JsonFactory sJsonFactory = new JsonFactory()
+            .enable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES)
+            .enable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+
+    /**
+     * パース中の値を一時的に積むスタック。
+     * オブジェクト・配列の要素数が確定してから、適切な容量でコンテナを確保するために使用する。
+     * パース1回ごとに生成する。
+     */
+    private static class ValueStack {
+        private Object[] mValues = new Object[32];
+        private int mSize = 0;
+
+        void push(Object value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+
+        /**
+         * 指定位置までスタックを戻す。参照はクリアする。
+         */
+        void popTo(int base) {
+            Arrays.fill(mValues, base, mSize, null);
+            mSize = base;
+        }
+    }
 
     /**
      * JSON文字列(JSON Object)をパースする。パース失敗時は例外をスローする。
@@ -39,7 +76,7 @@ public class NbJSONParserJackson {
                 throw new IllegalArgumentException("Not JSON Object");
             }
 
-            NbJSONObject value = readJsonObject(parser);
+            NbJSONObject value = readJsonObject(parser, new ValueStack());
             return value;
         } finally {
             if (parser != null) {
@@ -48,36 +85,182 @@ public class NbJSONParserJackson {
         }
     }
 
-    private static NbJSONObject readJsonObject(JsonParser parser) throws IOException {
-        NbJSONObject jsonObject = new NbJSONObject();
+    /**
+     * JSON の UTF-8 バイト列(JSON Object)を遅延パースする。パース失敗時は例外をスローする。
+     *
+     * <p>ここではトップレベルフィールドの位置のインデックス作成と構文チェックのみを行い、
+     * 値のパースは各フィールドへの初回アクセス時に行う。</p>
+     * @param json JSON の UTF-8 バイト列。返却されるオブジェクトが参照するため、以後変更しないこと。
+     * @return JSONオブジェクト (Immutable)
+     * @throws JsonParseException パースエラー
+     * @throws IOException
+     * @see NbLazyJSONObject
+     */
+    public static NbJSONObject parseLazyWithException(byte[] json) throws IOException, JsonParseException {
+        JsonParser parser = null;
+        try {
+            parser = sJsonFactory.createParser(json);
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Not JSON Object");
+            }
+
+            List<String> names = new ArrayList<>();
+            int[] starts = new int[16];
+            int[] ends = new int[16];
+
+            int count = 0;
+            int index = -1;
+            while ((token = parser.nextToken()) != JsonToken.END_OBJECT) {
+                if (index >= 0) {
+                    // 前フィールドの値の終端は、次トークンの直前
+                    ends[index] = valueEnd(json, starts[index], (int) parser.getTokenLocation().getByteOffset());
+                }
+
+                String fieldName = parser.getCurrentName();
+                token = parser.nextToken();
+
+                // 重複キーは LinkedHashMap と同様、最初の位置に最後の値を格納する
+                index = names.indexOf(fieldName);
+                if (index < 0) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    names.add(fieldName);
+                    index = count++;
+                }
+                starts[index] = (int) parser.getTokenLocation().getByteOffset();
+
+                if (token.isStructStart()) {
+                    parser.skipChildren();
+                }
+            }
+            if (index >= 0) {
+                ends[index] = valueEnd(json, starts[index], (int) parser.getTokenLocation().getByteOffset());
+            }
+
+            return new NbLazyJSONObject(json, names.toArray(new String[count]),
+                    Arrays.copyOf(starts, count), Arrays.copyOf(ends, count));
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
+
+    /**
+     * 値の終端位置を求める。次トークン位置から、空白および区切りの ',' を除く。
+     */
+    private static int valueEnd(byte[] json, int start, int next) {
+        int end = next;
+        while (end > start) {
+            byte b = json[end - 1];
+            if (b == ',' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                end--;
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * JSON の UTF-8 バイト列の一部分を、単一の JSON 値としてパースする。
+     * @param json JSON の UTF-8 バイト列
+     * @param offset 開始位置
+     * @param length 長さ
+     * @return 値 (NbJSONObject, NbJSONArray, String, Number, Boolean, null のいずれか)
+     * @throws IOException パースエラー
+     */
+    /*package*/ static Object parseValue(byte[] json, int offset, int length) throws IOException {
+        JsonParser parser = null;
+        try {
+            parser = sJsonFactory.createParser(json, offset, length);
+            parser.nextToken();
+            return readValue(parser, new ValueStack());
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
+
+    /**
+     * 入力ストリームを読み込むパーサを生成する。
+     * パーサのクローズ時に入力ストリームもクローズされる。
+     * @param inputStream JSON の UTF-8 バイトストリーム
+     * @return パーサ
+     * @throws IOException 入力エラー
+     */
+    /*package*/ static JsonParser createParser(InputStream inputStream) throws IOException {
+        return sJsonFactory.createParser(inputStream);
+    }
+
+    /**
+     * パーサの現在位置 (START_OBJECT) から JSON Object を読み込む。
+     * JSON 以外のデータ形式 (Smile 等) のパーサにも使用できる。
+     * @param parser パーサ
+     * @return JSONオブジェクト
+     * @throws IOException パースエラー
+     */
+    /*package*/ static NbJSONObject readJsonObject(JsonParser parser) throws IOException {
+        return readJsonObject(parser, new ValueStack());
+    }
+
+    private static NbJSONObject readJsonObject(JsonParser parser, ValueStack stack) throws IOException {
+        int base = stack.mSize;
 
         while (parser.nextToken() != JsonToken.END_OBJECT) {
-            // フィールド名取得
+            // フィールド名取得 (正規化済み)
             String fieldName = parser.getCurrentName();
 
             parser.nextToken();
-            jsonObject.put(fieldName, readValue(parser));
+            Object value = readValue(parser, stack);
+            stack.push(fieldName);
+            stack.push(value);
         }
 
+        NbJSONObject jsonObject = new NbJSONObject(capacityFor((stack.mSize - base) / 2));
+        for (int i = base; i < stack.mSize; i += 2) {
+            jsonObject.put((String) stack.mValues[i], stack.mValues[i + 1]);
+        }
+        stack.popTo(base);
         return jsonObject;
     }
 
-    private static NbJSONArray readJsonArray(JsonParser parser) throws IOException {
-        NbJSONArray jsonArray = new NbJSONArray();
+    private static NbJSONArray readJsonArray(JsonParser parser, ValueStack stack) throws IOException {
+        int base = stack.mSize;
 
         while (parser.nextToken() != JsonToken.END_ARRAY) {
-            jsonArray.add(readValue(parser));
+            stack.push(readValue(parser, stack));
+        }
+
+        NbJSONArray jsonArray = new NbJSONArray(stack.mSize - base);
+        for (int i = base; i < stack.mSize; i++) {
+            jsonArray.add(stack.mValues[i]);
         }
+        stack.popTo(base);
         return jsonArray;
     }
 
-    private static Object readValue(JsonParser parser) throws IOException {
+    /**
+     * 要素数 count を rehash なしで格納できる HashMap の初期容量を返す (負荷係数 0.75)
+     */
+    private static int capacityFor(int count) {
+        if (count < 3) {
+            return count + 1;
+        }
+        return (int) (count / 0.75f + 1.0f);
+    }
+
+    private static Object readValue(JsonParser parser, ValueStack stack) throws IOException {
         switch (parser.getCurrentToken()) {
             case START_OBJECT:
-                return readJsonObject(parser);
+                return readJsonObject(parser, stack);
 
             case START_ARRAY:
-                return readJsonArray(parser);
+                return readJsonArray(parser, stack);
 
             case VALUE_TRUE:
                 return true;
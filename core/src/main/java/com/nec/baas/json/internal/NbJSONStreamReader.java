@@ -0,0 +1,119 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.json.internal;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nec.baas.json.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JSON 配列の要素を、ストリームから1件ずつ読み込むリーダ。
+ *
+ * <p>レスポンスボディ全体をメモリに読み込まずに、
+ * <code>{"results": [ {...}, {...}, ... ]}</code> や <code>[ {...}, {...}, ... ]</code>
+ * のような大きな配列を逐次処理するために使用する。
+ * 読み込みは {@link #nextObject()} の呼び出し毎に必要な分だけ行う。
+ * 各要素のパースは {@link NbJSONParserJackson} と同一の処理で行う。</p>
+ *
+ * <pre>
+ *     NbJSONStreamReader reader = new NbJSONStreamReader(inputStream);
+ *     try {
+ *         if (reader.beginArray("results")) {
+ *             NbJSONObject json;
+ *             while ((json = reader.nextObject()) != null) {
+ *                 ...
+ *             }
+ *         }
+ *     } finally {
+ *         reader.close();
+ *     }
+ * </pre>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフではない。</p>
+ * @since 7.5.2
+ */
+public class NbJSONStreamReader implements Closeable {
+    private final JsonParser mParser;
+
+    /**
+     * コンストラクタ
+     * @param inputStream JSON の UTF-8 バイトストリーム。{@link #close()} でクローズされる。
+     * @throws IOException 入力エラー
+     */
+    public NbJSONStreamReader(InputStream inputStream) throws IOException {
+        mParser = NbJSONParserJackson.createParser(inputStream);
+    }
+
+    /**
+     * トップレベルの JSON Object から、指定したフィールドの配列の先頭まで読み進める。
+     * 途中の他のフィールドは読み飛ばす。
+     * @param fieldName 配列のフィールド名
+     * @return 配列が見つかった場合は true。フィールドが存在しないか、配列でない場合は false。
+     * @throws IOException 入力エラーまたはパースエラー
+     * @throws IllegalArgumentException JSON Object でない場合
+     */
+    public boolean beginArray(String fieldName) throws IOException {
+        if (mParser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Not JSON Object");
+        }
+
+        JsonToken token;
+        while ((token = mParser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = mParser.getCurrentName();
+            token = mParser.nextToken();
+            if (token == JsonToken.START_ARRAY && fieldName.equals(name)) {
+                return true;
+            }
+            if (token.isStructStart()) {
+                mParser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * トップレベルの JSON Array の先頭まで読み進める。
+     * @throws IOException 入力エラーまたはパースエラー
+     * @throws IllegalArgumentException JSON Array でない場合
+     */
+    public void beginArray() throws IOException {
+        if (mParser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Not JSON Array");
+        }
+    }
+
+    /**
+     * 配列の次の要素 (JSON Object) を読み込む。
+     * {@link #beginArray()} の呼び出し後、または {@link #beginArray(String)} が true を返した後に呼び出すこと。
+     * @return JSONオブジェクト。配列の終端に達した場合は null。
+     * @throws IOException 入力エラーまたはパースエラー
+     * @throws IllegalArgumentException 要素が JSON Object でない場合
+     */
+    public NbJSONObject nextObject() throws IOException {
+        JsonToken token = mParser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Not JSON Object");
+        }
+        return NbJSONParserJackson.readJsonObject(mParser);
+    }
+
+    /**
+     * リーダと入力ストリームをクローズする。
+     * @throws IOException 入力エラー
+     */
+    @Override
+    public void close() throws IOException {
+        mParser.close();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.json.internal;
+
+import com.nec.baas.json.*;
+import com.nec.baas.util.*;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 遅延パースを行う JSONオブジェクト。
+ *
+ * <p>JSON の UTF-8 バイト列と、トップレベルフィールドの位置(オフセット)のインデックスのみを保持し、
+ * 各フィールドの値は最初にアクセスされた時点でパースする。
+ * 全フィールドの走査(entrySet 等)が行われた場合は、全体をパースして通常の NbJSONObject に切り替える。</p>
+ *
+ * <p>本オブジェクトは常に Immutable である。書き込みを行う場合は
+ * {@link #getMutableInstance()} でコピーを取得すること。</p>
+ *
+ * <p>本クラスのインスタンスはスレッドセーフである。</p>
+ */
+public class NbLazyJSONObject extends NbJSONObject {
+    private static final NbLogger log = NbLogger.getLogger(NbLazyJSONObject.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** 未パースであることを表す特殊値 */
+    private static final Object UNPARSED = new Object();
+
+    /** JSON の UTF-8 バイト列。全体パース後は null。 */
+    private byte[] mRaw;
+
+    /** トップレベルのフィールド名 */
+    private String[] mNames;
+
+    /** 各フィールド値の開始位置 */
+    private int[] mStarts;
+
+    /** 各フィールド値の終了位置 (この位置は含まない) */
+    private int[] mEnds;
+
+    /** パース済みのフィールド値。未パースのものは UNPARSED。 */
+    private Object[] mValues;
+
+    /** 全体パース済みの JSON。null の間は遅延パース中。 */
+    private volatile NbJSONObject mFull;
+
+    /*package*/ NbLazyJSONObject(byte[] raw, String[] names, int[] starts, int[] ends) {
+        super(0);
+        mRaw = raw;
+        mNames = names;
+        mStarts = starts;
+        mEnds = ends;
+        mValues = new Object[names.length];
+        for (int i = 0; i < mValues.length; i++) {
+            mValues[i] = UNPARSED;
+        }
+    }
+
+    /**
+     * 常に true を返す。
+     * @return true
+     */
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    /**
+     * 本オブジェクトは常に Immutable であるため、何もしない。
+     */
+    @Override
+    public void setImmutable() {
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < mNames.length; i++) {
+            if (mNames[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object parseValue(int index) {
+        Object value = mValues[index];
+        if (value == UNPARSED) {
+            try {
+                value = NbJSONParserJackson.parseValue(mRaw, mStarts[index], mEnds[index] - mStarts[index]);
+            } catch (IOException e) {
+                // インデックス作成時に構文チェック済みのため、通常発生しない
+                log.warning("NbLazyJSONObject.parseValue: {0}", e.getMessage());
+                throw new IllegalStateException(e);
+            }
+            if (value instanceof NbJSONObject) {
+                ((NbJSONObject) value).setImmutable();
+            } else if (value instanceof NbJSONArray) {
+                ((NbJSONArray) value).setImmutable();
+            }
+            mValues[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * 全体をパースした NbJSONObject を返す。
+     * パース後は UTF-8 バイト列およびインデックスを解放する。
+     * @return 全体パース済み JSON (Immutable)
+     */
+    private NbJSONObject full() {
+        NbJSONObject full = mFull;
+        if (full != null) {
+            return full;
+        }
+        synchronized (this) {
+            if (mFull == null) {
+                full = new NbJSONObject(mNames.length);
+                for (int i = 0; i < mNames.length; i++) {
+                    full.put(mNames[i], parseValue(i));
+                }
+                full.setImmutable();
+                mFull = full;
+
+                mRaw = null;
+                mNames = null;
+                mStarts = null;
+                mEnds = null;
+                mValues = null;
+            }
+            return mFull;
+        }
+    }
+
+    @Override
+    public int size() {
+        NbJSONObject full = mFull;
+        if (full != null) {
+            return full.size();
+        }
+        synchronized (this) {
+            return mFull != null ? mFull.size() : mNames.length;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        NbJSONObject full = mFull;
+        if (full != null) {
+            return full.containsKey(key);
+        }
+        synchronized (this) {
+            return mFull != null ? mFull.containsKey(key) : indexOf(key) >= 0;
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        NbJSONObject full = mFull;
+        if (full != null) {
+            return full.get(key);
+        }
+        synchronized (this) {
+            if (mFull != null) {
+                return mFull.get(key);
+            }
+            int index = indexOf(key);
+            return index >= 0 ? parseValue(index) : null;
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return full().containsValue(value);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return full().keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return full().values();
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        return full().entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        full().forEach(action);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return full().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return full().hashCode();
+    }
+
+    @Override
+    public String toJSONString() {
+        NbJSONObject full = mFull;
+        if (full != null) {
+            return full.toJSONString();
+        }
+        synchronized (this) {
+            return mFull != null ? mFull.toJSONString() : new String(mRaw, UTF8);
+        }
+    }
+
+    @Override
+    protected Object writeReplace() {
+        return full();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.json.internal;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.nec.baas.json.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * JSON オブジェクトのバイナリ(Smile)形式への変換・復元を行う。
+ *
+ * <p>Smile ヘッダは出力しない。データ形式の識別は呼び出し元で行うこと。</p>
+ *
+ * <p>本クラスの全メソッドはスレッドセーフである。</p>
+ */
+public class NbSmileCodec {
+    private static final SmileFactory sSmileFactory = new SmileFactory()
+            .disable(SmileGenerator.Feature.WRITE_HEADER)
+            .disable(SmileParser.Feature.REQUIRE_HEADER);
+
+    /**
+     * JSON オブジェクトを Smile 形式に変換する。
+     * @param json JSON オブジェクト (NbJSONObject または Map)
+     * @return Smile データ
+     * @throws IllegalArgumentException 変換できない型の値が含まれている
+     */
+    public static byte[] encode(Map<String, ?> json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            encode(json, out);
+        } catch (IOException e) {
+            // ByteArrayOutputStream への書き込みのため、通常発生しない
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * JSON オブジェクトを Smile 形式に変換し、ストリームに書き込む。
+     * ストリームは close されない。
+     * @param json JSON オブジェクト (NbJSONObject または Map)
+     * @param out 出力先ストリーム
+     * @throws IOException 書き込みエラー
+     * @throws IllegalArgumentException 変換できない型の値が含まれている
+     */
+    public static void encode(Map<String, ?> json, OutputStream out) throws IOException {
+        try (JsonGenerator generator = sSmileFactory.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeObject(generator, json);
+        }
+    }
+
+    /**
+     * Smile 形式のデータを JSON オブジェクトに変換する。パース失敗時は例外をスローする。
+     * @param data Smile データ
+     * @param offset 開始位置
+     * @param length 長さ
+     * @return JSONオブジェクト
+     * @throws IOException パースエラー
+     */
+    public static NbJSONObject decodeWithException(byte[] data, int offset, int length) throws IOException {
+        JsonParser parser = null;
+        try {
+            parser = sSmileFactory.createParser(data, offset, length);
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Not JSON Object");
+            }
+            return NbJSONParserJackson.readJsonObject(parser);
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
+
+    private static void writeObject(JsonGenerator generator, Map<String, ?> json) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, ?> entry : json.entrySet()) {
+            generator.writeFieldName(entry.getKey());
+            writeValue(generator, entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeArray(JsonGenerator generator, Collection<?> array) throws IOException {
+        generator.writeStartArray();
+        for (Object value : array) {
+            writeValue(generator, value);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Float) {
+            // JSON テキスト経由の場合と同じく、10進表記の値を double として格納する
+            generator.writeNumber(Double.parseDouble(value.toString()));
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Character) {
+            generator.writeString(value.toString());
+        } else if (value instanceof Map) {
+            writeObject(generator, (Map<String, ?>) value);
+        } else if (value instanceof Collection) {
+            writeArray(generator, (Collection<?>) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported Type: " + value.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.object;
+
+import com.nec.baas.core.NbResultCallback;
+
+/**
+ * ローカルDBのドキュメント格納形式
+ * @see NbOfflineObjectBucket#setLocalDocumentFormat(NbDocumentFormat, NbResultCallback)
+ * @see NbOfflineObjectBucket#getLocalDocumentFormat()
+ * @since 7.5.2
+ */
+public enum NbDocumentFormat {
+    /**
+     * JSON テキスト (デフォルト)。
+     */
+    JSON("JSON"),
+
+    /**
+     * バイナリ形式 (Smile)。
+     * JSON テキストに比べ、読み込み時のパース負荷とデータサイズが小さい。
+     */
+    BINARY("BINARY");
+
+    public final String type;
+
+    NbDocumentFormat(final String type) {
+        this.type = type;
+    }
+
+    /**
+     * 対応する格納形式(文字列)を返す
+     * @return 格納形式
+     */
+    public String type() {
+        return this.type;
+    }
+
+    /**
+     * type(文字列)に対応する格納形式を返す。
+     * null の場合は JSON を返す。
+     * @param type 格納形式(文字列)
+     * @return 格納形式
+     */
+    public static NbDocumentFormat fromString(String type) {
+        if (type == null) {
+            return JSON;
+        }
+        for (NbDocumentFormat t : values()) {
+            if (t.type.equals(type)) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Invalid document format:" + type);
+    }
+}
@@ -117,4 +117,23 @@ public interface NbOfflineObjectBucket {
      * @since 1.2.2
      */
     Map<String, NbIndexType> getIndexFromLocal();
+
+    /**
+     * ローカルDBのドキュメント格納形式を設定する。<br>
+     * <ul>
+     *     <li>既定値は {@link NbDocumentFormat#JSON} である。</li>
+     *     <li>格納形式を変更すると、ローカルDB内の既存データはすべて新しい形式に変換される。</li>
+     * </ul>
+     * @param format ドキュメント格納形式
+     * @param callback 設定結果を取得するコールバック
+     * @since 7.5.2
+     */
+    void setLocalDocumentFormat(final NbDocumentFormat format, final NbResultCallback callback);
+
+    /**
+     * ローカルDBのドキュメント格納形式を取得する。
+     * @return ドキュメント格納形式
+     * @since 7.5.2
+     */
+    NbDocumentFormat getLocalDocumentFormat();
 }
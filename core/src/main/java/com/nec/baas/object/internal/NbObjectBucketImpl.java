@@ -776,6 +776,48 @@ public class NbObjectBucketImpl extends NbBaseBucketImpl<NbObjectBucket> impleme
         return  mOfflineService.objectService().getIndexFromLocalData(mBucketName);
     }
 
+    @Override
+    public void setLocalDocumentFormat(@NonNull final NbDocumentFormat format, @NonNull final NbResultCallback callback) {
+        log.fine("setLocalDocumentFormat() <start> format=" + format);
+
+        if (mMode == NbBucketMode.ONLINE) {
+            throw new IllegalStateException(INVALID_BUCKET_MODE + mMode);
+        }
+
+        // 既に同じ格納形式であれば即OKを返して終了
+        if (mOfflineService.objectService().getDocumentFormatFromLocalData(mBucketName) == format) {
+            log.info("Same as current document format, skip!");
+            callback.onSuccess();
+            return;
+        }
+
+        // 非同期で実行
+        NbUtil.runInBackground(new Runnable() {
+            public void run() {
+                NbOfflineResult result = mOfflineService.objectService().setDocumentFormatToLocalData(format, mBucketName);
+                if (NbStatus.isSuccessful(result.getStatusCode())) {
+                    callback.onSuccess();
+                } else {
+                    callback.onFailure(result.getStatusCode(), new NbErrorInfo("failed to set document format to local data."));
+                }
+            }
+        });
+
+        log.fine("setLocalDocumentFormat() <end>");
+    }
+
+    @Override
+    public NbDocumentFormat getLocalDocumentFormat() {
+        log.fine("getLocalDocumentFormat() <start>");
+
+        if (mMode == NbBucketMode.ONLINE) {
+            throw new IllegalStateException(INVALID_BUCKET_MODE + mMode);
+        }
+
+        log.fine("getLocalDocumentFormat() <end>");
+        return mOfflineService.objectService().getDocumentFormatFromLocalData(mBucketName);
+    }
+
     /**
      * ローカル用にフィールド名が正しいかチェックする。
      * nullチェック、使用可能文字チェックを行う。
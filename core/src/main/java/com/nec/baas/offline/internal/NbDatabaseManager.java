@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.Getter;
 import lombok.NonNull;
@@ -46,6 +47,7 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
     private static final String CONTENT_ACL_COLUMN = "contentAcl";
     private static final String POLICY_COLUMN = "policy";
     private static final String BUCKET_MODE_COLUMN = "bucketMode";
+    private static final String DOCUMENT_FORMAT_COLUMN = "documentFormat";
 
     // オブジェクトカラム
     private static final String OBJECT_ID_COLUMN = "objectId";
@@ -92,6 +94,10 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
     private static final String META_ID_COLUMN = "metaId";
     private static final String ID_COLUMN = "_id";
 
+    // ファイルキャッシュカラム
+    private static final String CACHE_KEY_COLUMN = "cacheKey";
+    private static final String LAST_ACCESS_COLUMN = "lastAccess";
+
 //    // 同期管理カラム
 //    private static final String INTERVAL_COLUMN = "interval";
 
@@ -103,6 +109,8 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
     private static final String LOGINCACHE_TABLE = "loginCache";
     /** 同期状態テーブル名 */
     private static final String SYNC_CONDITION_TABLE = "syncCondition";
+    /** ファイルキャッシュテーブル名 */
+    private static final String FILE_CACHE_TABLE = "fileCache";
 //    /** 同期管理テーブル名 */
 //    private static final String SYNC_MANAGE_TABLE = "syncManage";
 
@@ -204,6 +212,7 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
             put(CONTENT_ACL_COLUMN, TEXT);
             put(POLICY_COLUMN, TEXT);
             put(BUCKET_MODE_COLUMN, TEXT);
+            put(DOCUMENT_FORMAT_COLUMN, TEXT);
         }
     };
 
@@ -251,6 +260,25 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
         }
     };
 
+    /** ファイルキャッシュテーブル(fileCache)のカラム定義 */
+    protected static final LinkedHashMap<String,String> FILE_CACHE_TABLE_COLUMNS_DEF
+            = new LinkedHashMap<String,String>() {
+        {
+            put(ID_COLUMN, TYPE_PRIMARY_KEY);
+            put(CACHE_KEY_COLUMN, TEXT_UNIQUE);
+            put(BUCKET_NAME_COLUMN, TEXT);
+            put(FILENAME_COLUMN, TEXT);
+            put(FILE_ETAG_COLUMN, TEXT);
+            put(FILESIZE_COLUMN, TEXT);
+            put(LAST_ACCESS_COLUMN, TEXT);
+            put(CACHE_DISABLE_COLUMN, TEXT);
+        }
+    };
+
+    /** ファイルキャッシュテーブルのカラムリスト */
+    private static final String[] FILE_CACHE_TABLE_COLUMNS =
+            FILE_CACHE_TABLE_COLUMNS_DEF.keySet().toArray(new String[1]);
+
 //    /** 同期管理テーブル(syncManage)のカラム定義 */
 //    protected static final LinkedHashMap<String,String> SYNC_MANAGE_TABLE_COLUMNS_DEF
 //            = new LinkedHashMap<String,String>() {
@@ -265,6 +293,9 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
 //            SYNC_MANAGE_TABLE_COLUMNS_DEF.keySet().toArray(new String[1]);
 
     static final long INSERT_ERROR_CODE = -1;
+
+    /** ドキュメント圧縮閾値のデフォルト値(バイト) */
+    public static final int DEFAULT_DOCUMENT_COMPRESS_THRESHOLD = 16 * 1024;
     //private final static int QUERY_ALL_GET = -1;
 
     /**
@@ -277,6 +308,20 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
 
     private DatabaseHook mDataSecurityHook = null;
 
+    /**
+     * バケット毎のドキュメント格納形式のキャッシュ
+     */
+    private final Map<String, NbDocumentFormat> mDocumentFormatCache = new ConcurrentHashMap<>();
+
+    /**
+     * ドキュメント圧縮閾値(バイト)。
+     * "document" カラムのサイズがこの値以上の場合、deflate 圧縮して BLOB で格納する。
+     * 0 以下の場合は圧縮しない。
+     * @since 7.5.2
+     */
+    @Getter @Setter
+    private volatile int mDocumentCompressThreshold = DEFAULT_DOCUMENT_COMPRESS_THRESHOLD;
+
     /**
      * デフォルトコンストラクタ
      */
@@ -328,12 +373,18 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
         //ファイルバケット管理テーブル作成
         tryCreateTable(FILE_BUCKET_MANAGE_TABLE, BUCKET_MANAGE_TABLE_COLUMNS_DEF);
 
+        //旧バージョンで作成されたバケット管理テーブルにドキュメント格納形式カラムを追加
+        tryAddColumn(BUCKET_MANAGE_TABLE, DOCUMENT_FORMAT_COLUMN, TEXT);
+
         //ログインキャッシュテーブル作成
         tryCreateTable(LOGINCACHE_TABLE, LOGINCACHE_TABLE_COLUMNS_DEF);
 
         //同期条件テーブル作成（同期範囲、同期対象）
         tryCreateTable(SYNC_CONDITION_TABLE, SYNC_CONDITION_TABLE_COLUMNS_DEF);
 
+        //ファイルキャッシュテーブル作成
+        tryCreateTable(FILE_CACHE_TABLE, FILE_CACHE_TABLE_COLUMNS_DEF);
+
 //        //同期管理テーブル作成（同期間隔、前回同期時刻）
 //        tryCreateTable(SYNC_MANAGE_TABLE, SYNC_MANAGE_TABLE_COLUMNS_DEF);
     }
@@ -346,6 +397,14 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
         }
     }
 
+    private void tryAddColumn(String tableName, String columnName, String columnDef) {
+        try {
+            execSQL(ALTER_TABLE_SQL + tableName + " ADD COLUMN " + columnName + " " + columnDef);
+        } catch (Exception e) {
+            //すでにカラムが存在する場合発生する
+        }
+    }
+
     /**
      * テーブルを作成する
      * @param tableName テーブル名
@@ -432,10 +491,12 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
             ObjectQueryResults result = queryObjects(bucketName, query);
 
             // 新テーブルへ登録(パースしてインデックスカラムの作成も行う)
+            // ドキュメント格納形式は旧テーブルのものを引き継ぐ
+            NbDocumentFormat format = getDocumentFormat(bucketName);
             for (int i = 0; i < result.getResults().size(); i++) {
                 NbObjectEntity objectEntity = result.getResults().get(i);
                 log.fine("objectEntity.getObjectId(): " + objectEntity.getObjectId());
-                createObject(tempBucketName, objectEntity);
+                createObject(objectEntity.getObjectId(), tempBucketName, objectEntity, format);
             }
 
             // 旧テーブルを削除(バケット管理テーブルは操作不要)
@@ -496,6 +557,73 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
         }
     }
 
+    /**
+     * オブジェクトバケットのドキュメント格納形式を設定する。
+     *
+     * <p>格納形式が変更された場合、既存のオブジェクトはすべて新しい形式で書き直される。
+     * @param bucketName バケット名
+     * @param format ドキュメント格納形式
+     * @throws NbDatabaseException DB操作に失敗した
+     * @since 7.5.2
+     */
+    public void setDocumentFormat(@NonNull String bucketName, @NonNull NbDocumentFormat format) {
+        if (getDocumentFormat(bucketName) == format) {
+            return;
+        }
+
+        try {
+            // トランザクション開始
+            begin();
+
+            // バケット管理テーブルを更新
+            Map<String, String> values = new HashMap<>();
+            values.put(DOCUMENT_FORMAT_COLUMN, format.type());
+            String where = BUCKET_NAME_COLUMN + WHERE_SQL;
+            update(BUCKET_MANAGE_TABLE, values, where, new String[]{bucketName});
+
+            // 既存データを新しい形式で書き直す
+            String table = getObjectTableName(bucketName);
+            for (NbObjectEntity objectEntity : selectObjects(table, null, null)) {
+                ObjectTuple tuple = makeObjectTuple(objectEntity.getObjectId(), objectEntity, format);
+                update(table, tuple.values, tuple.blobValues, OBJECT_ID_COLUMN + WHERE_SQL,
+                        new String[]{objectEntity.getObjectId()});
+            }
+
+            // トランザクション終了(DBへ反映)
+            commit();
+        } catch (Exception e) {
+            log.severe("set document format error: " + e);
+            rollback();
+            mDocumentFormatCache.remove(bucketName);
+            throw new NbDatabaseException(e);
+        }
+        mDocumentFormatCache.put(bucketName, format);
+    }
+
+    /**
+     * オブジェクトバケットのドキュメント格納形式を取得する。
+     * @param bucketName バケット名
+     * @return ドキュメント格納形式。バケットが存在しない場合は JSON。
+     * @since 7.5.2
+     */
+    public NbDocumentFormat getDocumentFormat(@NonNull String bucketName) {
+        NbDocumentFormat format = mDocumentFormatCache.get(bucketName);
+        if (format != null) {
+            return format;
+        }
+
+        String where = BUCKET_NAME_COLUMN + WHERE_SQL;
+        List<Map<String, String>> result = select(BUCKET_MANAGE_TABLE, new String[]{DOCUMENT_FORMAT_COLUMN},
+                where, new String[]{bucketName}, null, 0, 1);
+        if (result.isEmpty()) {
+            // バケット未作成。作成後に再度読み込むため、キャッシュしない
+            return NbDocumentFormat.JSON;
+        }
+        format = NbDocumentFormat.fromString(result.get(0).get(DOCUMENT_FORMAT_COLUMN));
+        mDocumentFormatCache.put(bucketName, format);
+        return format;
+    }
+
     public Map<String, NbIndexType> getIndex(@NonNull String bucketName) {
         return getIndexWithTable(getObjectTableName(bucketName));
     }
@@ -727,6 +855,10 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
         String sql = DROP_TABLE_SQL + (tablePrefix + bucketName) + ";";
         execSQL(sql);
 
+        if (manageTableName.equals(BUCKET_MANAGE_TABLE)) {
+            mDocumentFormatCache.remove(bucketName);
+        }
+
         //DataSecurity
         if (mDataSecurityHook != null) {
             mDataSecurityHook.deleteBucket(bucketName);
@@ -805,11 +937,15 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
      * @return 作成したデータのId
      */
     public long createObject(@NonNull String objectId, @NonNull String bucketName, @NonNull NbObjectEntity data) {
+        return createObject(objectId, bucketName, data, getDocumentFormat(bucketName));
+    }
+
+    private long createObject(String objectId, String bucketName, NbObjectEntity data, NbDocumentFormat format) {
         log.finest("createObject() objectId={0} bucketName={1}", objectId, bucketName);
 
-        Map<String, String> createData = makeObjectTuple(objectId, data);
+        ObjectTuple createData = makeObjectTuple(objectId, data, format);
 
-        long result = insert(getObjectTableName(bucketName), createData);
+        long result = insert(getObjectTableName(bucketName), createData.values, createData.blobValues);
 
         //DataSecurity
         if (mDataSecurityHook != null) {
@@ -828,12 +964,10 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
 
         String where = OBJECT_ID_COLUMN + WHERE_SQL;
         String[] whereArg = new String[]{objectId};
-        List<Map<String, String>> result = select(getObjectTableName(bucketName),
-                OBJECT_TABLE_COLUMNS, where, whereArg, null, 0, 0);
+        List<NbObjectEntity> result = selectObjects(getObjectTableName(bucketName), where, whereArg);
         NbObjectEntity data = null;
         if (!result.isEmpty()) {
-            Map<String, String> resultMap = result.get(0);
-            data = makeObjectDataInfo(resultMap);
+            data = result.get(0);
         }
         return data;
     }
@@ -862,11 +996,12 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
      * @return 更新を行った行の数
      */
     public int updateObject(@NonNull String objectId, @NonNull String bucketName, @NonNull NbObjectEntity data) {
-        Map<String, String> updateData = makeObjectTuple(data.getObjectId(), data);
+        ObjectTuple updateData = makeObjectTuple(data.getObjectId(), data, getDocumentFormat(bucketName));
 
         String where = OBJECT_ID_COLUMN + WHERE_SQL;
         String[] whereArg = new String[]{objectId};
-        int result = update(getObjectTableName(bucketName), updateData, where, whereArg);
+        int result = update(getObjectTableName(bucketName), updateData.values, updateData.blobValues,
+                where, whereArg);
 
         //DataSecurity
         if (mDataSecurityHook != null) {
@@ -957,8 +1092,7 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
     public List<NbObjectEntity> readDirtyObjects(@NonNull String bucketName, NbWhere extConditions) {
         log.finest("readDirtyObjects() <start> bucketName={0}", bucketName);
 
-        List<NbObjectEntity> resultList = new ArrayList<>();
-        List<Map<String, String>> result;
+        List<NbObjectEntity> resultList;
 
         String conditions = READ_DIRTY_SQL;
         List<String> args = new ArrayList<>(Arrays.asList(READ_DIRTY_ARGS));
@@ -970,19 +1104,16 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
         }
 
         try {
-            result = select(getObjectTableName(bucketName), OBJECT_TABLE_COLUMNS,
-                    conditions, args.toArray(new String[args.size()]), null, 0, 0);
+            resultList = selectObjects(getObjectTableName(bucketName),
+                    conditions, args.toArray(new String[args.size()]));
         } catch (NbDatabaseException e) {
             log.severe("readDirtyObjects() db select error. " + e.getMessage());
-            return resultList;
+            return new ArrayList<>();
         }
 
-        for (Map<String, String> resultMap : result) {
-            NbObjectEntity data = makeObjectDataInfo(resultMap);
-
+        for (NbObjectEntity data : resultList) {
             log.finest("readDirtyObjects() objectId={0} state={1}",
                     data.getObjectId(), data.getState());
-            resultList.add(data);
         }
         log.finest("readDirtyObjects() <end> resultList={0}", resultList);
 
@@ -1027,7 +1158,19 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
      * @return マッチした場合は マッチしたJSON、マッチしなかった場合は null。JSON は Immutable なので注意すること。
      */
     protected NbJSONObject matchJsonWithQuery(String jsonString, NbJSONObject expr) {
-        NbJSONObject document = NbJSONParser.parseWithCache(jsonString, false);
+        // クエリ評価・ソートで参照されるのは一部のフィールドのみであることが多いため、遅延パースする
+        return matchJsonWithQuery(NbJSONParser.parseWithCache(jsonString, false, true), expr);
+    }
+
+    /**
+     * デコード済みのドキュメントに対しMongoDBのwhere句チェックを行う。<br>
+     * whereが無い場合は検索条件なしなのでtrueを返す
+     *
+     * @param document JSONドキュメント。変換失敗時は null。
+     * @param expr MongoDBのクエリ式(JSON)
+     * @return マッチした場合は マッチしたJSON、マッチしなかった場合は null。
+     */
+    protected NbJSONObject matchJsonWithQuery(NbJSONObject document, NbJSONObject expr) {
         if (document == null) {
             //変換不可
             log.finest("matchJsonWithQuery() Invalid JSON.");
@@ -1052,24 +1195,100 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
 
     private static NbMongoQueryEvaluator mMongoQueryEvaluator = new NbMongoQueryEvaluator();
 
+    /**
+     * オブジェクトテーブル INSERT / UPDATE 用の値のタプル(組)
+     */
+    private static class ObjectTuple {
+        /** 文字列カラムの値 */
+        final Map<String, String> values = new HashMap<>();
+        /** BLOB カラムの値。BLOB カラムがない場合は null。 */
+        Map<String, byte[]> blobValues;
+    }
+
     /**
      * オブジェクトテーブル INSERT / UPDATE 用の値のタプル(組)を作成する
      * @param objectId オブジェクトID
      * @param data NbObjectEntity
+     * @param format ドキュメント格納形式
      * @return タプル
      * @see #makeObjectDataInfo
      */
-    private Map<String, String> makeObjectTuple(String objectId, NbObjectEntity data) {
-        Map<String, String> tuple = new HashMap<>();
-        tuple.put(OBJECT_ID_COLUMN, objectId);
-        tuple.put(STATE_COLUMN, data.getState().idString);
-        tuple.put(DOCUMENT_COLUMN, data.getJsonString());
-        tuple.put(TIMESTAMP_COLUMN, data.getTimestamp());
-        tuple.put(ETAG_COLUMN, data.getETag());
-        tuple.put(PERMISSION_COLUMN, data.getAclString());
+    private ObjectTuple makeObjectTuple(String objectId, NbObjectEntity data, NbDocumentFormat format) {
+        ObjectTuple tuple = new ObjectTuple();
+        tuple.values.put(OBJECT_ID_COLUMN, objectId);
+        tuple.values.put(STATE_COLUMN, data.getState().idString);
+        byte[] document = null;
+        if (format == NbDocumentFormat.JSON) {
+            // 閾値以上のサイズの場合は圧縮して BLOB で格納する
+            document = NbDocumentCodec.encodeText(data.getJsonString(), mDocumentCompressThreshold);
+        } else {
+            NbJSONObject json = data.getImmutableJsonObject();
+            if (json != null) {
+                document = NbDocumentCodec.encode(json, format, mDocumentCompressThreshold);
+            }
+        }
+        if (document == null) {
+            // 圧縮対象外、またはドキュメントが JSON として不正な場合はテキストのまま格納する
+            tuple.values.put(DOCUMENT_COLUMN, data.getJsonString());
+        } else {
+            tuple.blobValues = new HashMap<>();
+            tuple.blobValues.put(DOCUMENT_COLUMN, document);
+        }
+        tuple.values.put(TIMESTAMP_COLUMN, data.getTimestamp());
+        tuple.values.put(ETAG_COLUMN, data.getETag());
+        tuple.values.put(PERMISSION_COLUMN, data.getAclString());
         return tuple;
     }
 
+    /**
+     * オブジェクトテーブルを検索し、NbObjectEntity のリストを返す。
+     * BLOB 格納されたドキュメントはデコードして格納する。
+     * @param table テーブル名
+     * @param where 検索条件(WHERE)
+     * @param whereArgs 検索条件プレースホルダに指定する引数配列
+     * @return 検索結果
+     */
+    private List<NbObjectEntity> selectObjects(String table, String where, String[] whereArgs) {
+        List<NbObjectEntity> results = new ArrayList<>();
+        CursorWrapper cursor = selectForCursor(table, OBJECT_TABLE_COLUMNS, where, whereArgs, null, 0, 0);
+        try {
+            final int columnCount = cursor.getColumnCount();
+            for (boolean hasNext = cursor.moveToFirst(); hasNext; hasNext = cursor.moveToNext()) {
+                Map<String, String> tuple = new HashMap<>();
+                NbJSONObject json = null;
+                for (int i = 0; i < columnCount; i++) {
+                    String name = cursor.getColumnName(i);
+                    if (cursor.isBlob(i)) {
+                        if (name.equals(DOCUMENT_COLUMN)) {
+                            json = NbDocumentCodec.decode(cursor.getBlob(i));
+                        }
+                        tuple.put(name, null);
+                    } else {
+                        tuple.put(name, cursor.getString(i));
+                    }
+                }
+                results.add(makeObjectDataInfo(tuple, json));
+            }
+        } finally {
+            cursor.close();
+        }
+        return results;
+    }
+
+    /**
+     * INSERT / UPDATE 対象の値から "document" カラムの JSON を取得する。
+     * BLOB 格納されている場合はデコードする。
+     * @param values 値 (カラム名-値のマップ)
+     * @param blobValues BLOB 値 (カラム名-値のマップ)。null 可。
+     * @return JSON。変換失敗時は null。
+     */
+    protected NbJSONObject parseDocumentColumn(Map<String, String> values, Map<String, byte[]> blobValues) {
+        if (blobValues != null && blobValues.containsKey(DOCUMENT_COLUMN)) {
+            return NbDocumentCodec.decode(blobValues.get(DOCUMENT_COLUMN));
+        }
+        return NbJSONParser.parse(values.get(DOCUMENT_COLUMN));
+    }
+
     /**
      * タプルから NbObjectEntity への変換
      * @param tuple タプル
@@ -1093,7 +1312,8 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
         if (jsonDocument == null) {
             info.setJsonString(tuple.get(DOCUMENT_COLUMN));
         } else {
-            info.setJsonObjectAsImmutable(jsonDocument);
+            // 共有元が Immutable であれば、コピーせずにそのまま格納する
+            info.setJsonObjectAsImmutable(jsonDocument.getImmutableInstance());
             info.setJsonStringDontClearObject(tuple.get(DOCUMENT_COLUMN));
         }
         info.setState(NbSyncState.fromObject(tuple.get(STATE_COLUMN)));
@@ -2036,6 +2256,80 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
     }
     */
 
+    //------------------------------------------------------------------------------------
+    // FileCache DAO
+    //------------------------------------------------------------------------------------
+
+    /**
+     * ファイルキャッシュのインデックス情報の全件取得を行う。
+     * @return インデックス情報リスト
+     * @since 7.5.2
+     */
+    public List<NbFileCacheEntity> readFileCacheList() {
+        List<Map<String, String>> result = select(FILE_CACHE_TABLE, FILE_CACHE_TABLE_COLUMNS,
+                null, null, null, 0, 0);
+        List<NbFileCacheEntity> dataList = new ArrayList<>(result.size());
+        for (Map<String, String> tuple : result) {
+            NbFileCacheEntity data = new NbFileCacheEntity();
+            data.setCacheKey(tuple.get(CACHE_KEY_COLUMN));
+            data.setBucketName(tuple.get(BUCKET_NAME_COLUMN));
+            data.setFileName(tuple.get(FILENAME_COLUMN));
+            data.setFileETag(tuple.get(FILE_ETAG_COLUMN));
+            data.setFileSize(Long.parseLong(tuple.get(FILESIZE_COLUMN)));
+            data.setLastAccess(Long.parseLong(tuple.get(LAST_ACCESS_COLUMN)));
+            data.setCacheDisabled(Boolean.parseBoolean(tuple.get(CACHE_DISABLE_COLUMN)));
+            dataList.add(data);
+        }
+        return dataList;
+    }
+
+    /**
+     * ファイルキャッシュのインデックス情報を保存する。存在しない場合は作成する。
+     * @param data インデックス情報
+     * @since 7.5.2
+     */
+    public void saveFileCache(@NonNull NbFileCacheEntity data) {
+        Map<String, String> values = new HashMap<>();
+        values.put(BUCKET_NAME_COLUMN, data.getBucketName());
+        values.put(FILENAME_COLUMN, data.getFileName());
+        values.put(FILE_ETAG_COLUMN, data.getFileETag());
+        values.put(FILESIZE_COLUMN, String.valueOf(data.getFileSize()));
+        values.put(LAST_ACCESS_COLUMN, String.valueOf(data.getLastAccess()));
+        values.put(CACHE_DISABLE_COLUMN, String.valueOf(data.isCacheDisabled()));
+
+        String where = CACHE_KEY_COLUMN + WHERE_SQL;
+        String[] whereArgs = new String[]{data.getCacheKey()};
+        if (update(FILE_CACHE_TABLE, values, where, whereArgs) == 0) {
+            values.put(CACHE_KEY_COLUMN, data.getCacheKey());
+            insert(FILE_CACHE_TABLE, values);
+        }
+    }
+
+    /**
+     * ファイルキャッシュの最終参照時刻を更新する。
+     * @param cacheKey キャッシュキー
+     * @param lastAccess 最終参照時刻 (ms)
+     * @since 7.5.2
+     */
+    public void updateFileCacheLastAccess(@NonNull String cacheKey, long lastAccess) {
+        Map<String, String> values = new HashMap<>();
+        values.put(LAST_ACCESS_COLUMN, String.valueOf(lastAccess));
+        update(FILE_CACHE_TABLE, values, CACHE_KEY_COLUMN + WHERE_SQL, new String[]{cacheKey});
+    }
+
+    /**
+     * ファイルキャッシュのインデックス情報を削除する。
+     * @param cacheKey キャッシュキー。null の場合は全件削除する。
+     * @return 削除した件数
+     * @since 7.5.2
+     */
+    public int deleteFileCache(String cacheKey) {
+        if (cacheKey == null) {
+            return delete(FILE_CACHE_TABLE, null, null);
+        }
+        return delete(FILE_CACHE_TABLE, CACHE_KEY_COLUMN + WHERE_SQL, new String[]{cacheKey});
+    }
+
     //------------------------------------------------------------------------------------
     // Utilities
     //------------------------------------------------------------------------------------
@@ -2162,7 +2456,7 @@ public abstract class NbDatabaseManager implements NbDatabaseWrapper {
 
             for (int i = 0; i < n; i++) {
                 if (i > 0) sb.append("|");
-                sb.append(cursor.getString(i));
+                sb.append(cursor.isBlob(i) ? "(BLOB)" : cursor.getString(i));
             }
             log.fine(sb.toString());
             hasNext = cursor.moveToNext();
@@ -208,14 +208,21 @@ public class NbDatabaseQueryStrategyImpl implements NbDatabaseQueryStrategy {
                 }
             }
 
-            // ドキュメント取得
-            String jsonString = cursor.getString(documentColumnIdx);
-            NbJSONObject json = mManager.matchJsonWithQuery(jsonString, expr);
+            // ドキュメント取得 (BLOB 格納の場合はデコードする)
+            NbJSONObject json;
+            if (cursor.isBlob(documentColumnIdx)) {
+                NbJSONObject document = NbDocumentCodec.decode(cursor.getBlob(documentColumnIdx));
+                json = mManager.matchJsonWithQuery(document, expr);
+            } else {
+                String jsonString = cursor.getString(documentColumnIdx);
+                json = mManager.matchJsonWithQuery(jsonString, expr);
+            }
             if (json != null) {
                 // マッチ
                 Map<String, String> data = new HashMap<>();
                 for (int i = 0; i < columnCount; i++) {
-                    data.put(cursor.getColumnName(i), cursor.getString(i));
+                    // BLOB カラムは文字列として取得できないため、null とする
+                    data.put(cursor.getColumnName(i), cursor.isBlob(i) ? null : cursor.getString(i));
                 }
                 // この JSON データはキャッシュで不変の場合があるので注意
                 results.addResult(json, data);
@@ -28,6 +28,21 @@ public interface NbDatabaseWrapper {
         String getColumnName(int idx);
         String getString(int idx);
         int getInt(int idx);
+
+        /**
+         * 指定カラムの値が BLOB かどうかを返す。
+         * BLOB の場合、{@link #getString(int)} で値を取得することはできない。
+         * @param idx カラム位置
+         * @return BLOB であれば true
+         */
+        boolean isBlob(int idx);
+
+        /**
+         * 指定カラムの値を BLOB として取得する。
+         * @param idx カラム位置
+         * @return 値
+         */
+        byte[] getBlob(int idx);
     }
 
     /**
@@ -75,6 +90,26 @@ public interface NbDatabaseWrapper {
 
     long insert(String table, Map<String, String> values);
     int update(String table, Map<String, String> values, String where, String[] whereArgs);
+
+    /**
+     * BLOB 値を含む INSERT を行う。
+     * @param table テーブル名
+     * @param values 値 (カラム名-値のマップ)
+     * @param blobValues BLOB 値 (カラム名-値のマップ)。null 可。
+     * @return 行ID
+     */
+    long insert(String table, Map<String, String> values, Map<String, byte[]> blobValues);
+
+    /**
+     * BLOB 値を含む UPDATE を行う。
+     * @param table テーブル名
+     * @param values 値 (カラム名-値のマップ)
+     * @param blobValues BLOB 値 (カラム名-値のマップ)。null 可。
+     * @param where 更新条件(WHERE)
+     * @param whereArgs 更新条件プレースホルダに指定する引数配列
+     * @return 更新した行の数
+     */
+    int update(String table, Map<String, String> values, Map<String, byte[]> blobValues, String where, String[] whereArgs);
     int delete(String table, String where, String[] whereArgs);
     void begin();
     void commit();
@@ -0,0 +1,200 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.offline.internal;
+
+import com.nec.baas.json.*;
+import com.nec.baas.json.internal.*;
+import com.nec.baas.object.*;
+import com.nec.baas.util.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * オブジェクトテーブルの "document" カラムのバイナリ格納形式の変換を行う。
+ *
+ * <p>"document" カラムが TEXT で格納されている場合は、従来どおりの JSON テキストである。
+ * BLOB で格納されている場合は、先頭 1 バイトがヘッダ、以降がペイロードとなる。
+ * ヘッダの下位 7 bit はペイロードのデータ形式、最上位 bit は deflate 圧縮の有無を表す。</p>
+ *
+ * <p>本クラスの全メソッドはスレッドセーフである。</p>
+ */
+public class NbDocumentCodec {
+    private static final NbLogger log = NbLogger.getLogger(NbDocumentCodec.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** ヘッダ: Smile */
+    /*package*/ static final byte HEADER_SMILE = 0x01;
+
+    /** ヘッダ: JSON テキスト (UTF-8)。圧縮時のみ使用する。 */
+    /*package*/ static final byte HEADER_JSON = 0x02;
+
+    /** ヘッダフラグ: deflate 圧縮 */
+    /*package*/ static final byte FLAG_DEFLATE = (byte) 0x80;
+
+    /** ヘッダのデータ形式部分のマスク */
+    private static final int HEADER_TYPE_MASK = 0x7f;
+
+    /**
+     * 圧縮レベル。
+     * 読み込み(展開)速度は圧縮レベルにほとんど依存しないため、書き込み速度を優先する。
+     */
+    private static final int DEFLATE_LEVEL = Deflater.BEST_SPEED;
+
+    /**
+     * JSON オブジェクトを BLOB 格納用のバイト列に変換する。圧縮は行わない。
+     * @param json JSON オブジェクト
+     * @param format 格納形式。JSON 以外であること。
+     * @return バイト列
+     */
+    public static byte[] encode(NbJSONObject json, NbDocumentFormat format) {
+        return encode(json, format, 0);
+    }
+
+    /**
+     * JSON オブジェクトを BLOB 格納用のバイト列に変換する。
+     * @param json JSON オブジェクト
+     * @param format 格納形式。JSON 以外であること。
+     * @param compressThreshold 圧縮を行うペイロードサイズ(バイト)の閾値。0 以下の場合は圧縮しない。
+     * @return バイト列
+     */
+    public static byte[] encode(NbJSONObject json, NbDocumentFormat format, int compressThreshold) {
+        if (format != NbDocumentFormat.BINARY) {
+            throw new IllegalArgumentException("Unsupported document format: " + format);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            out.write(HEADER_SMILE);
+            NbSmileCodec.encode(json, out);
+        } catch (IOException e) {
+            // ByteArrayOutputStream への書き込みのため、通常発生しない
+            throw new IllegalStateException(e);
+        }
+        byte[] data = out.toByteArray();
+
+        if (compressThreshold > 0 && data.length - 1 >= compressThreshold) {
+            byte[] compressed = deflate(HEADER_SMILE, data, 1, data.length - 1);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * JSON テキストを圧縮し、BLOB 格納用のバイト列に変換する。
+     * @param jsonString JSON テキスト
+     * @param compressThreshold 圧縮を行うサイズ(バイト)の閾値。0 以下の場合は圧縮しない。
+     * @return バイト列。閾値未満、または圧縮してもサイズが小さくならない場合は null (TEXT のまま格納すること)。
+     */
+    public static byte[] encodeText(String jsonString, int compressThreshold) {
+        // UTF-8 のバイト数は文字数以上であるため、文字数が閾値未満であればエンコードせずに判定できる
+        if (jsonString == null || compressThreshold <= 0 || jsonString.length() < compressThreshold) {
+            return null;
+        }
+        byte[] data = jsonString.getBytes(UTF8);
+        return deflate(HEADER_JSON, data, 0, data.length);
+    }
+
+    /**
+     * BLOB 格納されたバイト列を JSON オブジェクトに変換する。
+     * @param data バイト列
+     * @return JSON オブジェクト (Immutable)。変換失敗時は null。
+     */
+    public static NbJSONObject decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try {
+            byte[] payload = data;
+            int offset = 1;
+            int length = data.length - 1;
+            if ((data[0] & FLAG_DEFLATE) != 0) {
+                payload = inflate(data, 1, data.length - 1);
+                offset = 0;
+                length = payload.length;
+            }
+
+            NbJSONObject json;
+            switch (data[0] & HEADER_TYPE_MASK) {
+                case HEADER_SMILE:
+                    json = NbSmileCodec.decodeWithException(payload, offset, length);
+                    break;
+                case HEADER_JSON:
+                    // クエリ評価で参照されるのは一部のフィールドのみであることが多いため、遅延パースする
+                    if (offset != 0 || length != payload.length) {
+                        payload = Arrays.copyOfRange(payload, offset, offset + length);
+                    }
+                    json = NbJSONParserJackson.parseLazyWithException(payload);
+                    break;
+                default:
+                    log.warning("NbDocumentCodec.decode: unknown header {0}", data[0]);
+                    return null;
+            }
+            json.setImmutable();
+            return json;
+        } catch (Exception e) {
+            log.warning("NbDocumentCodec.decode: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * ペイロードを deflate 圧縮し、ヘッダを付与する。
+     * @return 圧縮後のバイト列。圧縮してもサイズが小さくならない場合は null。
+     */
+    private static byte[] deflate(byte header, byte[] data, int offset, int length) {
+        Deflater deflater = new Deflater(DEFLATE_LEVEL);
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+
+            // 圧縮後のサイズが元サイズ以上となる場合は圧縮しない
+            byte[] out = new byte[length];
+            out[0] = (byte) (header | FLAG_DEFLATE);
+            int size = 1;
+            while (!deflater.finished()) {
+                if (size == out.length) {
+                    return null;
+                }
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            return Arrays.copyOf(out, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+
+            byte[] out = new byte[Math.max(length * 4, 256)];
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int n = inflater.inflate(out, size, out.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated deflate data");
+                }
+                size += n;
+            }
+            return size == out.length ? out : Arrays.copyOf(out, size);
+        } finally {
+            inflater.end();
+        }
+    }
+}
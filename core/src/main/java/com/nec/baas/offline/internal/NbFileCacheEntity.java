@@ -0,0 +1,29 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.offline.internal;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * ファイルキャッシュのインデックス情報のデータクラス。
+ * @since 7.5.2
+ */
+@Getter
+@Setter
+public class NbFileCacheEntity {
+    /** キャッシュキー (テナント・バケット・ファイル名) */
+    private String cacheKey;
+    private String bucketName;
+    private String fileName;
+    private String fileETag;
+    private long fileSize;
+    /** 最終参照時刻 (ms) */
+    private long lastAccess;
+    /** メタデータの cacheDisable が設定されている場合は true。ファイル本体は保持しない。 */
+    private boolean cacheDisabled;
+}
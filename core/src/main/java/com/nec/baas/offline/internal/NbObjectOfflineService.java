@@ -225,4 +225,20 @@ public interface NbObjectOfflineService extends NbBaseOfflineService {
      * @return ローカルDBにインデックスされているキーの一覧
      */
     Map<String, NbIndexType> getIndexFromLocalData(String bucketName);
+
+    /**
+     * ローカルDBのドキュメント格納形式を設定する。
+     * @param format ドキュメント格納形式
+     * @param bucketName 設定を行うバケットの名前
+     * @since 7.5.2
+     */
+    NbOfflineResult setDocumentFormatToLocalData(NbDocumentFormat format, String bucketName);
+
+    /**
+     * ローカルDBのドキュメント格納形式を取得する。
+     * @param bucketName 取得したいバケットの名前
+     * @return ドキュメント格納形式
+     * @since 7.5.2
+     */
+    NbDocumentFormat getDocumentFormatFromLocalData(String bucketName);
 }
@@ -834,6 +834,43 @@ public class NbObjectOfflineServiceImpl extends NbBaseOfflineServiceImpl impleme
         return result;
     }
 
+    @Override
+    public NbOfflineResult setDocumentFormatToLocalData(@NonNull NbDocumentFormat format, @NonNull String bucketName) {
+        log.fine("setDocumentFormatToLocalData() <start>"
+                + "format=" + format + " bucketName=" + bucketName);
+        NbOfflineResult container = new NbOfflineResult();
+
+        try {
+            databaseManager().setDocumentFormat(bucketName, format);
+        } catch (NbDatabaseException e) {
+            log.severe("setDocumentFormatToLocalData() <end>"
+                    + " ERR container=" + container);
+            container.setStatusCode(NbStatus.INTERNAL_SERVER_ERROR);
+            return container;
+        }
+
+        container.setStatusCode(NbStatus.OK);
+        log.fine("setDocumentFormatToLocalData() <end>");
+        return container;
+    }
+
+    @Override
+    public NbDocumentFormat getDocumentFormatFromLocalData(String bucketName) {
+        log.fine("getDocumentFormatFromLocalData() <start>");
+        NbDocumentFormat result;
+
+        try {
+            result = databaseManager().getDocumentFormat(bucketName);
+        } catch (NbDatabaseException e) {
+            log.severe("getDocumentFormatFromLocalData() <end>"
+                    + " ERR " + e);
+            throw new IllegalStateException("getDocumentFormatFromLocalData() db select error.");
+        }
+
+        log.fine("getDocumentFormatFromLocalData() <end>");
+        return result;
+    }
+
     /**
      * フィールド名に"$"が無いか探す。<br>
      * 見つかればtrueを返す。
@@ -237,6 +237,8 @@ public abstract class NbObjectSyncManager implements NbObjectConflictResolver {
     }
 
     private void executeRequest(Request request, NbRestResponseHandler handler) {
+        // 同期処理のリクエストは、流量制限時に対話的なリクエストより後に実行する
+        request = request.newBuilder().tag(NbRequestPriority.class, NbRequestPriority.BACKGROUND).build();
         getRestExecutorFactory().create().executeRequest(request, handler);
     }
 
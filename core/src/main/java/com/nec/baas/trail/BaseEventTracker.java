@@ -8,13 +8,17 @@ package com.nec.baas.trail;
 
 import com.nec.baas.core.*;
 import com.nec.baas.core.internal.*;
+import com.nec.baas.json.*;
 import com.nec.baas.object.*;
 import com.nec.baas.user.*;
 import com.nec.baas.util.*;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import lombok.Getter;
 import lombok.NonNull;
@@ -29,7 +33,7 @@ public abstract class BaseEventTracker {
 
     @Getter @Setter
     private String trackerName;
-    private NbAcl mAcl = new NbAcl();
+    private NbAcl mAcl = makeAcl();
     private NbServiceImpl mNebulaService;
 
     private static final String APP_ID_KEY = "appId";
@@ -37,11 +41,19 @@ public abstract class BaseEventTracker {
     private static final String EVENTS_KEY = "events";
     private static final String DEVICE_ID_KEY = "deviceId";
     private static final String USER_ID_KEY = "userId";
-    private static final String DATE_KEY = "date";
+    /*package*/ static final String DATE_KEY = "date";
     private static final String EMERGENCY_KEY = "emergency";
     private static final String CUSTOM_KEY = "custom";
 
-    private static final String TRAIL_BUCKET_NAME = "trailer_log";
+    /*package*/ static final String TRAIL_BUCKET_NAME = "trailer_log";
+
+    /** 日時のフォーマッタ。SimpleDateFormat はスレッドセーフでないため、スレッド毎に保持する。 */
+    private static final ThreadLocal<DateFormat> sDateFormat = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat(NbConsts.TIMESTAMP_FORMAT);
+        }
+    };
 
     /**
      * Eventの記録用メソッド
@@ -71,39 +83,69 @@ public abstract class BaseEventTracker {
     }
 
     private NbObject makeObjectBody(Event event, NbObject obj) {
+        NbJSONObject json = makeEventJson(mNebulaService, event);
+        json.put(DATE_KEY, formatDate(System.currentTimeMillis()));
+        for (Map.Entry<String, Object> entry : json.entrySet()) {
+            obj.put(entry.getKey(), entry.getValue());
+        }
+        obj.putAcl(mAcl);
+
+        return obj;
+    }
+
+    /**
+     * 証跡ログの内容 (日時・ACL を除く) を生成する。
+     * 送信までに呼び出し元が Event を変更しても影響しないよう、イベント名リスト・カスタム項目は複製する。
+     * @param service NbServiceImpl
+     * @param event 記録する証跡イベント
+     * @return 証跡ログの JSON
+     */
+    /*package*/ NbJSONObject makeEventJson(NbServiceImpl service, Event event) {
+        NbJSONObject json = new NbJSONObject();
         //set appId
-        if (mNebulaService.getAppId() != null) {
-            obj.put(APP_ID_KEY, mNebulaService.getAppId());
+        if (service.getAppId() != null) {
+            json.put(APP_ID_KEY, service.getAppId());
         }
         //set tracker
-        obj.put(TRACKER_NAME_KEY, trackerName);
+        json.put(TRACKER_NAME_KEY, trackerName);
         //set events
-        obj.put(EVENTS_KEY, event.eventNameList);
+        json.put(EVENTS_KEY, new ArrayList<>(event.eventNameList));
         //set deviceid
-        if (mNebulaService.getDeviceId() != null) {
-            obj.put(DEVICE_ID_KEY, mNebulaService.getDeviceId());
+        if (service.getDeviceId() != null) {
+            json.put(DEVICE_ID_KEY, service.getDeviceId());
         }
         //set userid
-        if (NbUser.isLoggedIn(mNebulaService)) {
-            obj.put(USER_ID_KEY, NbUser.getCurrentUser(mNebulaService).getUserId());
+        if (NbUser.isLoggedIn(service)) {
+            json.put(USER_ID_KEY, NbUser.getCurrentUser(service).getUserId());
         }
-
-        //set date
-        Calendar cal = Calendar.getInstance();
-        DateFormat df = new SimpleDateFormat(NbConsts.TIMESTAMP_FORMAT);
-        String currentTime = df.format(cal.getTime());
-        obj.put(DATE_KEY, currentTime);
-
         //set emergency
-        obj.put(EMERGENCY_KEY, event.emergency);
-
+        json.put(EMERGENCY_KEY, event.emergency);
         //set custom
-        obj.put(CUSTOM_KEY, event.customMap);
+        json.put(CUSTOM_KEY, new HashMap<>(event.customMap));
+        return json;
+    }
 
-        mAcl.addEntry(NbAclPermission.READ, NbConsts.GROUP_NAME_ANONYMOUS);
-        mAcl.addEntry(NbAclPermission.WRITE, NbConsts.GROUP_NAME_ANONYMOUS);
-        obj.putAcl(mAcl);
+    /**
+     * 証跡ログの日時文字列を生成する
+     * @param timeMillis 日時 (ミリ秒)
+     * @return 日時文字列
+     */
+    /*package*/ static String formatDate(long timeMillis) {
+        return sDateFormat.get().format(new Date(timeMillis));
+    }
 
-        return obj;
+    /**
+     * 証跡ログに設定する ACL を返す
+     * @return ACL
+     */
+    /*package*/ NbAcl getAcl() {
+        return mAcl;
+    }
+
+    private static NbAcl makeAcl() {
+        NbAcl acl = new NbAcl();
+        acl.addEntry(NbAclPermission.READ, NbConsts.GROUP_NAME_ANONYMOUS);
+        acl.addEntry(NbAclPermission.WRITE, NbConsts.GROUP_NAME_ANONYMOUS);
+        return acl;
     }
 }
@@ -0,0 +1,464 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.trail;
+
+import com.nec.baas.core.*;
+import com.nec.baas.core.internal.*;
+import com.nec.baas.json.*;
+import com.nec.baas.object.*;
+import com.nec.baas.object.internal.*;
+import com.nec.baas.util.*;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+import okhttp3.Response;
+
+/**
+ * Eventクラスをログとして、まとめて記録するトラッカークラス。
+ *
+ * <p>{@link #log(Event)} はイベントをキューに格納して即座に戻り、呼び出し元をブロックしない。
+ * キューのイベントはサブスレッドから、trailer_log バケットへのバッチ処理要求
+ * ({@link NbObjectBucket#executeBatchOperation}) でまとめて送信される。
+ * 送信条件・同時に実行するバッチ処理要求の数は {@link BatchEventTrackerConfig} で設定する。</p>
+ *
+ * <p>ネットワークエラーで送信に失敗したバッチは、次回の送信時に再送する。
+ * 再送時はバッチ毎のリクエストトークンを付与し、サーバで処理済みの場合に重複して記録されないようにする。
+ * それ以外のエラーの場合は破棄する。キューが上限に達した場合、新しいイベントは破棄される。</p>
+ *
+ * <p>アプリの終了時などは {@link #shutdown(long)} を呼び出して、キューに残ったイベントを送信すること。</p>
+ * @since 7.5.2
+ */
+public class BatchEventTracker extends BaseEventTracker {
+    private static final NbLogger log = NbLogger.getLogger(BatchEventTracker.class);
+
+    private static BatchEventTracker sBatchEventTracker = null;
+
+    /** バッチ処理要求の個別の処理結果 (成功) */
+    private static final String RESULT_OK = "ok";
+
+    private final BatchEventTrackerConfig mConfig;
+
+    /** 送信待ちのイベント */
+    private final ConcurrentLinkedQueue<Record> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mQueuedCount = new AtomicInteger();
+    private final AtomicLong mQueuedBytes = new AtomicLong();
+
+    /** 実行中のバッチ処理要求の数 */
+    private final AtomicInteger mInFlight = new AtomicInteger();
+
+    /** 送信に失敗し、再送待ちのバッチ */
+    private final ConcurrentLinkedQueue<Batch> mRetryBatches = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean mShutdown = false;
+    private final AtomicBoolean mTimerStarted = new AtomicBoolean(false);
+    private ScheduledThreadPoolExecutor mTimer;
+
+    /** ACL の JSON。全イベントで共通。 */
+    private final NbJSONObject mAclJson;
+    private final int mAclSize;
+
+    private final Object mLock = new Object();
+
+    private final AtomicLong mSentCount = new AtomicLong();
+    private final AtomicLong mBatchCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mFailedCount = new AtomicLong();
+
+    /**
+     * キューに格納するイベント
+     */
+    private static class Record {
+        final NbJSONObject json;
+        final long time;
+        final int size;
+
+        Record(NbJSONObject json, long time, int size) {
+            this.json = json;
+            this.time = time;
+            this.size = size;
+        }
+    }
+
+    /**
+     * バッチ処理要求データと、再送時も同じ値を使用するリクエストトークン
+     */
+    private static class Batch {
+        final NbJSONArray<NbJSONObject> requests;
+        final String requestToken;
+
+        Batch(NbJSONArray<NbJSONObject> requests) {
+            this.requests = requests;
+            this.requestToken = UUID.randomUUID().toString();
+        }
+    }
+
+    private BatchEventTracker(BatchEventTrackerConfig config) {
+        mConfig = config;
+        mAclJson = getAcl().toJsonObject();
+        mAclSize = estimateSize(mAclJson);
+    }
+
+    /**
+     * トラッカーインスタンス取得メソッド。既定の設定を使用する。
+     * @param trackerName トラッカー名
+     */
+    public static synchronized BatchEventTracker getTracker(@NonNull String trackerName) {
+        return getTracker(trackerName, null);
+    }
+
+    /**
+     * トラッカーインスタンス取得メソッド。
+     * <p>
+     * トラッカー名が異なる場合は、既存のトラッカーを {@link #shutdown(long)} して新しいトラッカーを生成する。
+     * 同じトラッカー名の場合は既存のトラッカーを返し、config は使用しない。
+     * @param trackerName トラッカー名
+     * @param config 設定。null の場合は既定の設定。
+     */
+    public static synchronized BatchEventTracker getTracker(@NonNull String trackerName, BatchEventTrackerConfig config) {
+        if (sBatchEventTracker == null || sBatchEventTracker.mShutdown
+                || !trackerName.equals(sBatchEventTracker.getTrackerName())) {
+            if (sBatchEventTracker != null) {
+                sBatchEventTracker.shutdown(0);
+            }
+            sBatchEventTracker = new BatchEventTracker(config != null ? config : new BatchEventTrackerConfig());
+            sBatchEventTracker.setTrackerName(trackerName);
+        }
+
+        return sBatchEventTracker;
+    }
+
+    /**
+     * Eventの記録用メソッド。イベントをキューに格納して即座に戻る。
+     * @param event 記録する証跡イベント。
+     */
+    @Override
+    public void log(@NonNull Event event) {
+        if (!NbConsts.ENABLE_DATA_SECURITY) {
+            return;
+        }
+        if (mShutdown || mQueuedCount.get() >= mConfig.maxQueueSize()) {
+            mDroppedCount.incrementAndGet();
+            log.fine("log() event dropped. shutdown=" + mShutdown);
+            return;
+        }
+        startTimer();
+
+        NbJSONObject json = makeEventJson((NbServiceImpl) NbService.getInstance(), event);
+        Record record = new Record(json, System.currentTimeMillis(), estimateSize(json) + mAclSize);
+        mQueue.add(record);
+        int count = mQueuedCount.incrementAndGet();
+        long bytes = mQueuedBytes.addAndGet(record.size);
+
+        if (count >= mConfig.maxBatchCount() || bytes >= mConfig.maxBatchBytes()) {
+            flush();
+        }
+    }
+
+    /**
+     * キューのイベントの送信を開始する。送信の完了は待たない。
+     * 実行中のバッチ処理要求の数が上限に達している場合は何もしない
+     * (送信完了後、残りのイベントが上限に達していれば続けて送信する)。
+     */
+    public void flush() {
+        int inFlight;
+        do {
+            inFlight = mInFlight.get();
+            if (inFlight >= Math.max(1, mConfig.maxConcurrentRequests())) {
+                return;
+            }
+        } while (!mInFlight.compareAndSet(inFlight, inFlight + 1));
+
+        NbUtil.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                sendBatch();
+            }
+        });
+    }
+
+    /**
+     * 新しいイベントの受け付けを停止し、キューに残ったイベントを送信する。
+     * <p>
+     * timeout が正の場合は、送信が完了するまで最大 timeout ミリ秒待つ。UI スレッドから待たないこと。
+     * タイムアウト後も送信は継続する。シャットダウン後はネットワークエラー時も再送しない。
+     * @param timeout 最大待ち時間(ミリ秒)。0 の場合は待たない。
+     * @return すべてのイベントの送信が完了した場合は true
+     */
+    public boolean shutdown(long timeout) {
+        mShutdown = true;
+        synchronized (mLock) {
+            if (mTimer != null) {
+                mTimer.shutdownNow();
+            }
+        }
+        flush();
+
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (mLock) {
+            while (!isDrained()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    mLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isDrained() {
+        return mQueuedCount.get() == 0 && mRetryBatches.isEmpty() && mInFlight.get() == 0;
+    }
+
+    private void startTimer() {
+        if (mTimerStarted.get() || !mTimerStarted.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (mLock) {
+            if (mShutdown) {
+                return;
+            }
+            mTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "BatchEventTracker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            long interval = mConfig.flushInterval();
+            mTimer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    if (mQueuedCount.get() > 0 || !mRetryBatches.isEmpty()) {
+                        flush();
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * バッチ処理要求を1回実行する。実行枠 (mInFlight) を獲得したスレッドで呼び出される。
+     */
+    private void sendBatch() {
+        Batch retry = mRetryBatches.poll();
+        NbJSONArray<NbJSONObject> requests = (retry != null) ? retry.requests : drain();
+        if (requests.isEmpty()) {
+            finishFlush(false);
+            return;
+        }
+        if (hasMore()) {
+            // 残りのイベントも上限に達していれば、並行して送信する
+            flush();
+        }
+
+        final Batch batch = (retry != null) ? retry : new Batch(requests);
+        NbCallback<NbJSONObject> callback = new NbCallback<NbJSONObject>() {
+            @Override
+            public void onSuccess(NbJSONObject result) {
+                // not used
+            }
+
+            @Override
+            public void onFailure(int statusCode, NbErrorInfo errorInfo) {
+                onBatchComplete(batch, statusCode, 0);
+            }
+        };
+        NbRestResponseHandler handler = new NbSimpleRestResponseHandler(callback, "BatchEventTracker.sendBatch()") {
+            @Override
+            public void onSuccess(Response response, NbJSONObject json) {
+                onBatchComplete(batch, NbStatus.OK, countFailures(json, batch.requests.size()));
+            }
+        };
+
+        try {
+            NbObjectBucketImpl bucket = new NbObjectBucketImpl(NbService.getInstance(), TRAIL_BUCKET_NAME, NbBucketMode.ONLINE);
+            bucket.executeBatchOperation(batch.requests, batch.requestToken, handler);
+        } catch (RuntimeException e) {
+            log.severe("sendBatch() ERR " + e.getMessage());
+            onBatchComplete(batch, NbStatus.INTERNAL_SERVER_ERROR, 0);
+        }
+    }
+
+    /**
+     * バッチ処理要求の結果から、失敗したイベント数を求める
+     * @param json レスポンスボディ
+     * @param count 送信したイベント数
+     * @return 失敗したイベント数。結果を取得できない場合は全件失敗とする。
+     */
+    private static int countFailures(NbJSONObject json, int count) {
+        NbJSONArray<NbJSONObject> results = (json != null) ? json.getJSONArray(NbKey.RESULTS) : null;
+        if (results == null) {
+            return count;
+        }
+        int succeeded = 0;
+        for (NbJSONObject result : results) {
+            if (RESULT_OK.equals(result.get(NbKey.RESULT))) {
+                succeeded++;
+            }
+        }
+        return Math.max(0, count - succeeded);
+    }
+
+    /**
+     * キューから1回分のイベントを取り出し、バッチ処理要求データを生成する
+     */
+    private NbJSONArray<NbJSONObject> drain() {
+        NbJSONArray<NbJSONObject> batch = new NbJSONArray<>();
+        long bytes = 0;
+        Record record;
+        while (batch.size() < mConfig.maxBatchCount()
+                && (batch.isEmpty() || bytes + peekSize() <= mConfig.maxBatchBytes())
+                && (record = mQueue.poll()) != null) {
+            mQueuedCount.decrementAndGet();
+            mQueuedBytes.addAndGet(-record.size);
+            bytes += record.size;
+
+            NbJSONObject data = record.json;
+            data.put(DATE_KEY, formatDate(record.time));
+            data.put(NbKey.ACL, mAclJson);
+
+            NbJSONObject request = new NbJSONObject();
+            request.put(NbKey.OP, NbConsts.INSERT_OP);
+            request.put(NbKey.DATA, data);
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    private int peekSize() {
+        Record record = mQueue.peek();
+        return (record != null) ? record.size : 0;
+    }
+
+    /**
+     * バッチ処理要求の完了時の処理
+     * @param batch バッチ
+     * @param statusCode ステータスコード
+     * @param failedCount 成功時に、個別の処理に失敗したイベント数
+     */
+    private void onBatchComplete(Batch batch, int statusCode, int failedCount) {
+        int count = batch.requests.size();
+        if (NbStatus.isSuccessful(statusCode)) {
+            mSentCount.addAndGet(count - failedCount);
+            mBatchCount.incrementAndGet();
+            if (failedCount > 0) {
+                log.severe("onBatchComplete() events failed. count=" + failedCount);
+                mFailedCount.addAndGet(failedCount);
+            }
+        } else if (NbUtil.isNetworkError(statusCode) && !mShutdown) {
+            log.warning("onBatchComplete() retry later. status=" + statusCode);
+            mRetryBatches.add(batch);
+            finishFlush(true);
+            return;
+        } else {
+            log.severe("onBatchComplete() events dropped. status=" + statusCode);
+            mFailedCount.addAndGet(count);
+        }
+        finishFlush(false);
+    }
+
+    private void finishFlush(boolean failed) {
+        mInFlight.decrementAndGet();
+        synchronized (mLock) {
+            mLock.notifyAll();
+        }
+
+        // 送信中に上限に達したイベント、またはシャットダウン時の残りのイベント・再送待ちのバッチを続けて送信する。
+        // 失敗した場合は、送信間隔の経過後に再送する (失敗の処理中にシャットダウンされた場合を除く)。
+        if ((!failed || mShutdown) && hasMore()) {
+            flush();
+        }
+    }
+
+    private boolean hasMore() {
+        int count = mQueuedCount.get();
+        return count >= mConfig.maxBatchCount()
+                || mQueuedBytes.get() >= mConfig.maxBatchBytes()
+                || (mShutdown && (count > 0 || !mRetryBatches.isEmpty()));
+    }
+
+    /**
+     * JSON 文字列としての概算サイズを求める
+     */
+    private static int estimateSize(Object value) {
+        if (value instanceof String) {
+            return ((String) value).length() + 2;
+        }
+        if (value instanceof Map) {
+            int size = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 4 + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            int size = 2;
+            for (Object element : (Collection<?>) value) {
+                size += estimateSize(element) + 1;
+            }
+            return size;
+        }
+        return String.valueOf(value).length();
+    }
+
+    /**
+     * 送信待ちのイベント数を返す
+     * @return イベント数 (再送待ちを除く)
+     */
+    public int getPendingCount() {
+        return mQueuedCount.get();
+    }
+
+    /**
+     * 送信したイベント数を返す
+     * @return イベント数
+     */
+    public long getSentCount() {
+        return mSentCount.get();
+    }
+
+    /**
+     * 実行したバッチ処理要求の数を返す
+     * @return バッチ数 (成功したもののみ)
+     */
+    public long getBatchCount() {
+        return mBatchCount.get();
+    }
+
+    /**
+     * キューの上限超過またはシャットダウン後のため、破棄したイベント数を返す
+     * @return イベント数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * 送信に失敗し、破棄したイベント数を返す
+     * @return イベント数 (バッチ処理要求の個別の処理に失敗したものを含む)
+     */
+    public long getFailedCount() {
+        return mFailedCount.get();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.trail;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * {@link BatchEventTracker} の設定。
+ *
+ * <p>キューのイベントは、件数が maxBatchCount に達した場合、推定サイズが maxBatchBytes に
+ * 達した場合、または flushInterval が経過した場合に送信される。</p>
+ * @since 7.5.2
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class BatchEventTrackerConfig {
+    /** 1回のバッチ処理要求で送信するイベントの最大件数 */
+    private int maxBatchCount = 500;
+
+    /** 1回のバッチ処理要求で送信するイベントの最大推定サイズ(バイト) */
+    private long maxBatchBytes = 512 * 1024;
+
+    /** 同時に実行するバッチ処理要求の最大数 */
+    private int maxConcurrentRequests = 2;
+
+    /** 送信間隔(ミリ秒)。件数・サイズが上限に達していなくても、この間隔で送信する。 */
+    private long flushInterval = 10 * 1000;
+
+    /** キューに保持するイベントの最大件数。超過したイベントは破棄する。 */
+    private int maxQueueSize = 10000;
+}
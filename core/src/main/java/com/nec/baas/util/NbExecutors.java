@@ -0,0 +1,117 @@
+/*
+ * NEC Mobile Backend Platform
+ *
+ * Copyright (c) 2013-2018, NEC Corporation.
+ */
+
+package com.nec.baas.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * バックグラウンド処理用 ExecutorService のファクトリ。
+ *
+ * <p>生成した ExecutorService は
+ * {@link com.nec.baas.core.NbServiceBuilder#executorService(ExecutorService)} で設定する。</p>
+ * @since 7.5.2
+ */
+public class NbExecutors {
+    private static final NbLogger log = NbLogger.getLogger(NbExecutors.class);
+
+    /**
+     * スレッドプールの Keep Alive 時間(秒)。
+     */
+    private static final int THREAD_KEEP_ALIVE_TIME = 60;
+
+    private NbExecutors() {
+    }
+
+    /**
+     * 上限付きのスレッドプールを生成する。
+     *
+     * <p>スレッド数が maxPoolSize に達し、かつキューが満杯になった場合は、
+     * 呼び出し元スレッドでタスクを実行する(バックプレッシャ)。
+     * このため、Android の UI スレッドから API を呼び出すアプリケーションでは使用しないこと。</p>
+     *
+     * @param corePoolSize プール内に常時維持されるスレッドの数
+     * @param maxPoolSize 最大スレッド数
+     * @param queueCapacity 実行待ちキューの最大長
+     * @return ExecutorService
+     */
+    public static ExecutorService newBoundedThreadPool(int corePoolSize, int maxPoolSize, int queueCapacity) {
+        return new ThreadPoolExecutor(
+                corePoolSize,
+                maxPoolSize,
+                THREAD_KEEP_ALIVE_TIME,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new DaemonThreadFactory("NbUtilExecutor"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 仮想スレッドが使用可能か調べる。
+     * JDK 21 以上で実行されている場合のみ使用可能である。
+     * @return 使用可能であれば true
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getVirtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * タスク毎に仮想スレッドを生成する ExecutorService を生成する。
+     *
+     * <p>ブロッキングする SDK 呼び出しを数千単位で同時に実行する場合に適している。
+     * JDK 21 以上でのみ使用可能。</p>
+     *
+     * @return ExecutorService
+     * @throws UnsupportedOperationException 仮想スレッドが使用できない
+     * @see #isVirtualThreadSupported()
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method method = getVirtualThreadFactoryMethod();
+        if (method == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported on this runtime.");
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            log.warning("newVirtualThreadPerTaskExecutor: {0}", e.getMessage());
+            throw new UnsupportedOperationException("Failed to create virtual thread executor.", e);
+        }
+    }
+
+    private static Method getVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Daemon thread factory
+     */
+    /*package*/ static class DaemonThreadFactory implements ThreadFactory {
+        private final ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+        private String name;
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName(String.format("%s-%s", name, thread.getId()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
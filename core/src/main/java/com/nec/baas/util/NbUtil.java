@@ -16,9 +16,9 @@ import java.net.URLEncoder;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -48,39 +48,25 @@ public abstract class NbUtil {
      */
     private static final int THREAD_KEEP_ALIVE_TIME = 60;
 
-    /**
-     * Daemon thread factory
-     */
-    private static class DaemonThreadFactory implements ThreadFactory {
-        private final ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
-        private String name;
-
-        DaemonThreadFactory(String name) {
-            this.name = name;
-        }
-
-        @Override
-        public Thread newThread(Runnable runnable) {
-            Thread thread = defaultThreadFactory.newThread(runnable);
-            thread.setName(String.format("%s-%s", name, thread.getId()));
-            thread.setDaemon(true);
-            return thread;
-        }
-    }
-
     /**
      * バックグランド処理実行用スレッドプール
      */
-    private static ExecutorService sExecutorService =
+    private static volatile ExecutorService sExecutorService =
             new ThreadPoolExecutor(
                     CORE_THREAD_POOL_SIZE,
                     MAX_THREAD_POOL_SIZE,
                     THREAD_KEEP_ALIVE_TIME,
                     TimeUnit.SECONDS,
                     new LinkedBlockingQueue<Runnable>(), // Runnableキュー
-                    new DaemonThreadFactory("NbUtilExecutor")
+                    new NbExecutors.DaemonThreadFactory("NbUtilExecutor")
             );
 
+    /** 実行待ちのバックグラウンドタスク数 */
+    private static final AtomicInteger sQueuedTaskCount = new AtomicInteger();
+
+    /** 実行中のバックグラウンドタスク数 */
+    private static final AtomicInteger sActiveTaskCount = new AtomicInteger();
+
     protected NbUtil() {
         //外部非公開のコンストラクタ定義（checkStyle回避）
     }
@@ -90,12 +76,34 @@ public abstract class NbUtil {
     /**
      * ExecutorService を差し替える
      * @param executorService ExecutorService
+     * @see NbExecutors
      */
     public static synchronized void setExecutorService(ExecutorService executorService) {
+        if (executorService == sExecutorService) {
+            return; // not changed
+        }
         sExecutorService.shutdown();
         sExecutorService = executorService;
     }
 
+    /**
+     * 実行待ちのバックグラウンドタスク数を取得する。
+     * @return 実行待ちタスク数
+     * @since 7.5.2
+     */
+    public static int getQueuedBackgroundTaskCount() {
+        return sQueuedTaskCount.get();
+    }
+
+    /**
+     * 実行中のバックグラウンドタスク数を取得する。
+     * @return 実行中タスク数
+     * @since 7.5.2
+     */
+    public static int getActiveBackgroundTaskCount() {
+        return sActiveTaskCount.get();
+    }
+
     /**
      * ライブラリ内バックグランドスレッドで例外が発生したときに、これを無視するかどうかを指定する。
      *
@@ -113,22 +121,41 @@ public abstract class NbUtil {
      * @param runnable Runnable
      */
     public static void runInBackground(final Runnable runnable) {
-        sExecutorService.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    runnable.run();
-                } catch (Exception ex) {
-                    log.severe("Exception occurred in background thread!: {0}", ex.getMessage());
-                    //ex.printStackTrace();
-                    if (!sIgnoreExceptionInBackgroundThread) {
-                        throw new RuntimeException("Exception occurred in runInBackground", ex);
+        ExecutorService executorService = sExecutorService;
+
+        sQueuedTaskCount.incrementAndGet();
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sQueuedTaskCount.decrementAndGet();
+                    sActiveTaskCount.incrementAndGet();
+                    try {
+                        runTask(runnable);
+                    } finally {
+                        sActiveTaskCount.decrementAndGet();
                     }
-                } catch (AssertionError error) {
-                    NbJunitErrorNotifier.notify(error);
                 }
+            });
+        } catch (RuntimeException e) {
+            // RejectedExecutionException 等
+            sQueuedTaskCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private static void runTask(Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (Exception ex) {
+            log.severe("Exception occurred in background thread!: {0}", ex.getMessage());
+            //ex.printStackTrace();
+            if (!sIgnoreExceptionInBackgroundThread) {
+                throw new RuntimeException("Exception occurred in runInBackground", ex);
             }
-        });
+        } catch (AssertionError error) {
+            NbJunitErrorNotifier.notify(error);
+        }
     }
 
     /**